@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+/**
+ * Utilities for populating {@link BenchmarkRow} models with deterministic data
+ */
+final class BenchmarkRows {
+
+    private static final byte[] PAYLOAD = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+    private BenchmarkRows() {
+        // No instantiation
+    }
+
+    static BenchmarkRow populate(BenchmarkRow row, int i) {
+        return row.setName("Row " + i)
+                .setEmail("row" + i + "@example.com")
+                .setCreatedAt(1000000L + i)
+                .setCounter(i)
+                .setScore(i * 0.5)
+                .setIsActive((i & 1) == 0)
+                .setPayload(PAYLOAD);
+    }
+
+    static void insertRows(BenchmarkDatabase database, int count) {
+        BenchmarkRow row = new BenchmarkRow();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                row.clear();
+                database.createNew(populate(row, i));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+}
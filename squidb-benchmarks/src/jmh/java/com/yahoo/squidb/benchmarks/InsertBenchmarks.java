@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link com.yahoo.squidb.data.SquidDatabase#insertRow(com.yahoo.squidb.data.TableModel)} with the
+ * prepared insert cache both enabled and disabled, for single rows and for bulk inserts in one transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InsertBenchmarks {
+
+    private static final int BULK_INSERT_SIZE = 1000;
+
+    @Param({"true", "false"})
+    public boolean preparedInsertCache;
+
+    private BenchmarkDatabase database;
+    private final BenchmarkRow row = new BenchmarkRow();
+    private int counter = 0;
+
+    @Setup(Level.Trial)
+    public void openDatabase() {
+        database = new BenchmarkDatabase();
+        database.setPreparedInsertCacheEnabledForBenchmark(preparedInsertCache);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        database.deleteAll(BenchmarkRow.class);
+        counter = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Benchmark
+    public boolean insertRow() {
+        row.clear();
+        return database.insertRowForBenchmark(BenchmarkRows.populate(row, counter++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_INSERT_SIZE)
+    public int bulkInsertInTransaction() {
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < BULK_INSERT_SIZE; i++) {
+                row.clear();
+                database.insertRowForBenchmark(BenchmarkRows.populate(row, counter++));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return counter;
+    }
+}
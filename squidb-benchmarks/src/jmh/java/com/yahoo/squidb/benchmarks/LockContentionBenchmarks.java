@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.data.SquidDatabase;
+import com.yahoo.squidb.jvm.JDBCOpenHelper;
+import com.yahoo.squidb.sql.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SquidDatabase.LockMode LockModes} under contention. All threads share one database, so every
+ * operation acquires the same non-exclusive lock. Run with e.g. {@code -PjmhInclude=LockContentionBenchmarks} on a
+ * machine with several cores; on one or two cores the lock implementations perform about the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LockContentionBenchmarks {
+
+    @Param({"READ_WRITE", "STRIPED"})
+    public SquidDatabase.LockMode lockMode;
+
+    private BenchmarkDatabase database;
+    private Query lookupQuery;
+
+    @Setup(Level.Trial)
+    public void openDatabase() {
+        database = new BenchmarkDatabase(JDBCOpenHelper.IN_MEMORY, lockMode);
+        BenchmarkRows.insertRows(database, 100);
+        lookupQuery = Query.select(BenchmarkRow.ID).from(BenchmarkRow.TABLE).where(BenchmarkRow.ID.eq(1)).freeze();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void nonExclusiveLockUncontended() {
+        database.lockAndReleaseForBenchmark();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void nonExclusiveLock8Threads() {
+        database.lockAndReleaseForBenchmark();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long simpleQuery8Threads() {
+        return database.simpleQueryForLong(lookupQuery);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.data.SquidCursor;
+import com.yahoo.squidb.sql.CompileContext;
+import com.yahoo.squidb.sql.CompiledStatement;
+import com.yahoo.squidb.sql.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for query compilation, {@link com.yahoo.squidb.data.SquidDatabase#query(Class, Query)}, and reading
+ * results with {@link SquidCursor#get(com.yahoo.squidb.sql.Property)} and
+ * {@link com.yahoo.squidb.data.AbstractModel#readPropertiesFromCursor(SquidCursor)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryBenchmarks {
+
+    @Param({"1000"})
+    public int tableSize;
+
+    @Param({"100"})
+    public int resultSize;
+
+    private BenchmarkDatabase database;
+    private CompileContext compileContext;
+    private Query frozenQuery;
+    private final BenchmarkRow row = new BenchmarkRow();
+    private int counter = 0;
+
+    @Setup(Level.Trial)
+    public void openDatabase() {
+        database = new BenchmarkDatabase();
+        BenchmarkRows.insertRows(database, tableSize);
+        compileContext = database.getCompileContext();
+        frozenQuery = buildQuery().freeze();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() {
+        database.close();
+    }
+
+    private Query buildQuery() {
+        return Query.select(BenchmarkRow.PROPERTIES)
+                .where(BenchmarkRow.CREATED_AT.gte(1000000L).and(BenchmarkRow.IS_ACTIVE.isTrue()))
+                .orderBy(BenchmarkRow.CREATED_AT.asc())
+                .limit(resultSize);
+    }
+
+    @Benchmark
+    public CompiledStatement compileNewQuery() {
+        return buildQuery().from(BenchmarkRow.TABLE).compile(compileContext);
+    }
+
+    @Benchmark
+    public CompiledStatement compileFrozenQuery() {
+        return frozenQuery.compile(compileContext);
+    }
+
+    @Benchmark
+    public void queryAndHydrateModels(Blackhole blackhole) {
+        SquidCursor<BenchmarkRow> cursor = database.query(BenchmarkRow.class, frozenQuery);
+        try {
+            while (cursor.moveToNext()) {
+                row.readPropertiesFromCursor(cursor);
+                blackhole.consume(row.getName());
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Benchmark
+    public void queryAndReadProperties(Blackhole blackhole) {
+        SquidCursor<BenchmarkRow> cursor = database.query(BenchmarkRow.class, frozenQuery);
+        try {
+            while (cursor.moveToNext()) {
+                blackhole.consume(cursor.get(BenchmarkRow.CREATED_AT));
+                blackhole.consume(cursor.get(BenchmarkRow.COUNTER));
+                blackhole.consume(cursor.get(BenchmarkRow.SCORE));
+                blackhole.consume(cursor.get(BenchmarkRow.NAME));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Benchmark
+    public BenchmarkRow fetchById() {
+        return database.fetch(BenchmarkRow.class, (counter++ % tableSize) + 1, BenchmarkRow.PROPERTIES);
+    }
+
+    @Benchmark
+    public int count() {
+        return database.count(BenchmarkRow.class, BenchmarkRow.IS_ACTIVE.isTrue());
+    }
+}
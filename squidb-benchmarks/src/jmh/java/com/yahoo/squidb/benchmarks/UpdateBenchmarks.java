@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link com.yahoo.squidb.data.SquidDatabase#updateRow(com.yahoo.squidb.data.TableModel)} and
+ * deleting rows by id
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UpdateBenchmarks {
+
+    private static final int TABLE_SIZE = 1000;
+
+    private BenchmarkDatabase database;
+    private final BenchmarkRow row = new BenchmarkRow();
+    private int counter = 0;
+
+    @Setup(Level.Trial)
+    public void openDatabase() {
+        database = new BenchmarkDatabase();
+        BenchmarkRows.insertRows(database, TABLE_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Benchmark
+    public boolean updateRow() {
+        int i = counter++;
+        row.clear();
+        row.setRowId((i % TABLE_SIZE) + 1);
+        row.setCounter(i);
+        row.setName("Updated " + i);
+        return database.updateRowForBenchmark(row);
+    }
+
+    @Benchmark
+    public boolean deleteAndReinsertRow() {
+        int i = counter++;
+        long id = (i % TABLE_SIZE) + 1;
+        boolean deleted = database.delete(BenchmarkRow.class, id);
+        row.clear();
+        BenchmarkRows.populate(row, i).setRowId(id);
+        return database.insertRowForBenchmark(row) && deleted;
+    }
+}
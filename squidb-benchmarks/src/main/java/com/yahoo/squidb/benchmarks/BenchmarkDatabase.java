@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLiteOpenHelper;
+import com.yahoo.squidb.data.SquidDatabase;
+import com.yahoo.squidb.jvm.JDBCOpenHelper;
+import com.yahoo.squidb.sql.Index;
+import com.yahoo.squidb.sql.Table;
+
+/**
+ * SquidDatabase used by the benchmark suites. By default it is backed by a private in-memory SQLite database opened
+ * through the JDBC driver, so results measure SquiDB's own overhead rather than disk I/O.
+ */
+public class BenchmarkDatabase extends SquidDatabase {
+
+    private final String databaseDirectory;
+
+    public BenchmarkDatabase() {
+        this(JDBCOpenHelper.IN_MEMORY);
+    }
+
+    public BenchmarkDatabase(String databaseDirectory) {
+        this(databaseDirectory, LockMode.READ_WRITE);
+    }
+
+    public BenchmarkDatabase(String databaseDirectory, LockMode lockMode) {
+        super(lockMode);
+        this.databaseDirectory = databaseDirectory;
+    }
+
+    @Override
+    public String getName() {
+        return "benchmarks.db";
+    }
+
+    @Override
+    protected int getVersion() {
+        return 1;
+    }
+
+    @Override
+    protected Table[] getTables() {
+        return new Table[]{
+                BenchmarkRow.TABLE
+        };
+    }
+
+    @Override
+    protected Index[] getIndexes() {
+        return new Index[]{
+                BenchmarkRow.TABLE.index("benchmark_rows_created_at_idx", BenchmarkRow.CREATED_AT)
+        };
+    }
+
+    @Override
+    protected boolean onUpgrade(ISQLiteDatabase db, int oldVersion, int newVersion) {
+        return true;
+    }
+
+    @Override
+    protected ISQLiteOpenHelper createOpenHelper(String databaseName, OpenHelperDelegate delegate, int version) {
+        return new JDBCOpenHelper(databaseDirectory, databaseName, delegate, version);
+    }
+
+    /**
+     * Exposes {@link #setPreparedInsertCacheEnabled(boolean)} so benchmarks can compare both insert code paths
+     */
+    public void setPreparedInsertCacheEnabledForBenchmark(boolean enabled) {
+        setPreparedInsertCacheEnabled(enabled);
+    }
+
+    /**
+     * Acquires and releases the non-exclusive lock, so benchmarks can measure the cost of the lock alone
+     */
+    public void lockAndReleaseForBenchmark() {
+        acquireNonExclusiveLock();
+        releaseNonExclusiveLock();
+    }
+
+    /**
+     * Exposes {@link #insertRow(com.yahoo.squidb.data.TableModel)} so benchmarks can measure it directly
+     */
+    public boolean insertRowForBenchmark(BenchmarkRow row) {
+        return insertRow(row);
+    }
+
+    /**
+     * Exposes {@link #updateRow(com.yahoo.squidb.data.TableModel)} so benchmarks can measure it directly
+     */
+    public boolean updateRowForBenchmark(BenchmarkRow row) {
+        return updateRow(row);
+    }
+}
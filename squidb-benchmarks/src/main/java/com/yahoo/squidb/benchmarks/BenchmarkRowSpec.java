@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.annotations.ColumnSpec;
+import com.yahoo.squidb.annotations.TableModelSpec;
+
+/**
+ * Model spec for the table exercised by the benchmark suites. Covers each of the basic column types so that binding
+ * and cursor reading code paths are all represented.
+ */
+@TableModelSpec(className = "BenchmarkRow", tableName = "benchmark_rows")
+public class BenchmarkRowSpec {
+
+    @ColumnSpec(constraints = "NOT NULL")
+    String name;
+
+    String email;
+
+    long createdAt;
+
+    @ColumnSpec(defaultValue = "0")
+    int counter;
+
+    double score;
+
+    @ColumnSpec(defaultValue = "true")
+    boolean isActive;
+
+    byte[] payload;
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import com.yahoo.squidb.data.ICursor;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ICursor} implementation backed by the rows of a JDBC {@link ResultSet}. SQLite JDBC result sets are forward
+ * only, so the rows are read into memory when the cursor is constructed, similar to how Android fills a CursorWindow.
+ */
+class JDBCCursor implements ICursor {
+
+    private final String[] columnNames;
+    private final List<Object[]> rows;
+    private int position = -1;
+    private boolean closed = false;
+
+    JDBCCursor(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+        }
+
+        rows = new ArrayList<>();
+        while (resultSet.next()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                Object value = resultSet.getObject(i + 1);
+                if (value instanceof Integer) {
+                    value = ((Integer) value).longValue();
+                } else if (value instanceof Float) {
+                    value = ((Float) value).doubleValue();
+                }
+                row[i] = value;
+            }
+            rows.add(row);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(position + offset);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        int count = rows.size();
+        if (position >= count) {
+            this.position = count;
+            return false;
+        }
+        if (position < 0) {
+            this.position = -1;
+            return false;
+        }
+        this.position = position;
+        return true;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(rows.size() - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(position + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(position - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return position == 0 && rows.size() != 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        int count = rows.size();
+        return position == (count - 1) && count != 0;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return rows.size() == 0 || position == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return rows.size() == 0 || position == rows.size();
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) throws IllegalArgumentException {
+        int index = getColumnIndex(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        }
+        return index;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return columnNames[columnIndex];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    private Object getValue(int columnIndex) {
+        if (position < 0 || position >= rows.size()) {
+            throw new IllegalStateException("Cursor is not positioned on a valid row (position " + position
+                    + ", count " + rows.size() + ")");
+        }
+        return rows.get(position)[columnIndex];
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null || value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        throw new ClassCastException("Value " + value + " at column " + columnIndex + " is not a blob");
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        Object value = getValue(columnIndex);
+        return value == null ? null : String.valueOf(value);
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+        return (short) getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        throw new ClassCastException("Value at column " + columnIndex + " can't be read as a long");
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        return (float) getDouble(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        throw new ClassCastException("Value at column " + columnIndex + " can't be read as a double");
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        } else if (value instanceof Long) {
+            return FIELD_TYPE_INTEGER;
+        } else if (value instanceof Double) {
+            return FIELD_TYPE_FLOAT;
+        } else if (value instanceof byte[]) {
+            return FIELD_TYPE_BLOB;
+        }
+        return FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        return getValue(columnIndex) == null;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        rows.clear();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import com.yahoo.squidb.data.ICursor;
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLitePreparedStatement;
+import com.yahoo.squidb.data.SquidTransactionListener;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of {@link ISQLiteDatabase} over a JDBC {@link Connection} to an embedded SQLite database.
+ * <p>
+ * JDBC connections are not safe for concurrent use, so every operation on the primary connection is serialized on a
+ * connection lock. As with Android's SQLiteDatabase, transactions are bound to the thread that began them: the lock is
+ * held by that thread from the outermost begin until the matching end, and transactions may be nested, with the whole
+ * transaction being rolled back if any nested transaction was not marked successful.
+ * <p>
+ * Each adapter wraps a single connection. To serve queries concurrently from additional read-only connections, enable
+ * SquidDatabase's read connection pool, which opens them through {@link JDBCOpenHelper#openReadOnlyConnection()}.
+ * Compiled statements are cached per connection; the cache size is controlled by {@link #setMaxSqlCacheSize(int)}.
+ */
+public class JDBCDatabaseAdapter implements ISQLiteDatabase {
+
+    private final Connection connection;
+    private final String path;
+    private final ReentrantLock connectionLock = new ReentrantLock(true);
+
+    // Only accessed by the thread holding connectionLock
+    private final Deque<TransactionFrame> transactionStack = new ArrayDeque<>();
+    private final JDBCStatementCache statementCache;
+    private PreparedStatement lastInsertRowIdStatement = null;
+
+    public JDBCDatabaseAdapter(Connection connection, String path) {
+        if (connection == null) {
+            throw new NullPointerException("Can't create JDBCDatabaseAdapter with a null Connection");
+        }
+        this.connection = connection;
+        this.path = path;
+        this.statementCache = new JDBCStatementCache(connection, JDBCStatementCache.DEFAULT_MAX_SIZE);
+    }
+
+    private static class TransactionFrame {
+
+        final SquidTransactionListener listener;
+        boolean markedSuccessful = false;
+        boolean childFailed = false;
+
+        TransactionFrame(SquidTransactionListener listener) {
+            this.listener = listener;
+        }
+    }
+
+    void lockConnection() {
+        connectionLock.lock();
+    }
+
+    void unlockConnection() {
+        connectionLock.unlock();
+    }
+
+    // Must be called while holding the connection lock
+    long lastInsertRowId() throws SQLException {
+        if (lastInsertRowIdStatement == null) {
+            lastInsertRowIdStatement = connection.prepareStatement("SELECT last_insert_rowid()");
+        }
+        ResultSet resultSet = lastInsertRowIdStatement.executeQuery();
+        try {
+            return resultSet.next() ? resultSet.getLong(1) : -1;
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        beginTransactionInternal("BEGIN EXCLUSIVE", null);
+    }
+
+    @Override
+    public void beginTransactionNonExclusive() {
+        beginTransactionInternal("BEGIN IMMEDIATE", null);
+    }
+
+    @Override
+    public void beginTransactionWithListener(SquidTransactionListener listener) {
+        beginTransactionInternal("BEGIN EXCLUSIVE", listener);
+    }
+
+    @Override
+    public void beginTransactionWithListenerNonExclusive(SquidTransactionListener listener) {
+        beginTransactionInternal("BEGIN IMMEDIATE", listener);
+    }
+
+    private void beginTransactionInternal(String beginSql, SquidTransactionListener listener) {
+        connectionLock.lock();
+        boolean success = false;
+        try {
+            if (transactionStack.isEmpty()) {
+                execSqlLocked(beginSql);
+            }
+            transactionStack.push(new TransactionFrame(listener));
+            if (listener != null) {
+                listener.onBegin();
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                connectionLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        TransactionFrame frame = currentTransaction();
+        if (frame.markedSuccessful) {
+            throw new IllegalStateException("setTransactionSuccessful may only be called once per call to "
+                    + "beginTransaction");
+        }
+        frame.markedSuccessful = true;
+    }
+
+    @Override
+    public void endTransaction() {
+        TransactionFrame frame = currentTransaction();
+        try {
+            boolean success = frame.markedSuccessful && !frame.childFailed;
+            if (frame.listener != null) {
+                if (success) {
+                    frame.listener.onCommit();
+                } else {
+                    frame.listener.onRollback();
+                }
+            }
+            transactionStack.pop();
+            TransactionFrame parent = transactionStack.peek();
+            if (parent != null) {
+                if (!success) {
+                    parent.childFailed = true;
+                }
+            } else {
+                execSqlLocked(success ? "COMMIT" : "ROLLBACK");
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private TransactionFrame currentTransaction() {
+        if (!connectionLock.isHeldByCurrentThread() || transactionStack.isEmpty()) {
+            throw new IllegalStateException("No transaction is active on the current thread");
+        }
+        return transactionStack.peek();
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return connectionLock.isHeldByCurrentThread() && !transactionStack.isEmpty();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely() {
+        return yieldIfContendedSafely(0);
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+        if (!inTransaction() || transactionStack.size() != 1 || !connectionLock.hasQueuedThreads()) {
+            return false;
+        }
+        TransactionFrame frame = transactionStack.peek();
+        if (frame.childFailed) {
+            return false;
+        }
+        SquidTransactionListener listener = frame.listener;
+        frame.markedSuccessful = true;
+        endTransaction();
+        if (sleepAfterYieldDelay > 0) {
+            try {
+                Thread.sleep(sleepAfterYieldDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        beginTransactionInternal("BEGIN IMMEDIATE", listener);
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return (int) simpleQueryForLong("PRAGMA user_version", null);
+    }
+
+    @Override
+    public void setVersion(int version) {
+        execSQL("PRAGMA user_version = " + version);
+    }
+
+    @Override
+    public ICursor rawQuery(String sql, Object[] bindArgs) {
+        connectionLock.lock();
+        try {
+            return executeQuery(statementCache, sql, bindArgs);
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute query: " + sql, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private static JDBCCursor executeQuery(JDBCStatementCache cache, String sql, Object[] bindArgs)
+            throws SQLException {
+        PreparedStatement statement = cache.acquire(sql);
+        try {
+            bindArguments(statement, bindArgs);
+            ResultSet resultSet = statement.executeQuery();
+            try {
+                return new JDBCCursor(resultSet);
+            } finally {
+                resultSet.close();
+            }
+        } finally {
+            cache.release(sql, statement);
+        }
+    }
+
+    @Override
+    public String simpleQueryForString(String sql, Object[] bindArgs) {
+        connectionLock.lock();
+        try {
+            PreparedStatement statement = statementCache.acquire(sql);
+            try {
+                bindArguments(statement, bindArgs);
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    if (!resultSet.next()) {
+                        throw new SQLiteJDBCException("Query returned no rows: " + sql);
+                    }
+                    return resultSet.getString(1);
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statementCache.release(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute query: " + sql, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @Override
+    public long simpleQueryForLong(String sql, Object[] bindArgs) {
+        connectionLock.lock();
+        try {
+            PreparedStatement statement = statementCache.acquire(sql);
+            try {
+                bindArguments(statement, bindArgs);
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    if (!resultSet.next()) {
+                        throw new SQLiteJDBCException("Query returned no rows: " + sql);
+                    }
+                    return resultSet.getLong(1);
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statementCache.release(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute query: " + sql, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @Override
+    public long executeInsert(String sql, Object[] bindArgs) {
+        connectionLock.lock();
+        try {
+            PreparedStatement statement = statementCache.acquire(sql);
+            try {
+                bindArguments(statement, bindArgs);
+                int changes = statement.executeUpdate();
+                return changes > 0 ? lastInsertRowId() : -1;
+            } finally {
+                statementCache.release(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute statement: " + sql, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object[] bindArgs) {
+        connectionLock.lock();
+        try {
+            PreparedStatement statement = statementCache.acquire(sql);
+            try {
+                bindArguments(statement, bindArgs);
+                return statement.executeUpdate();
+            } finally {
+                statementCache.release(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute statement: " + sql, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @Override
+    public void execSQL(String sql) {
+        connectionLock.lock();
+        try {
+            execSqlLocked(sql);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private void execSqlLocked(String sql) {
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute(sql);
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute statement: " + sql, e);
+        }
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] bindArgs) {
+        connectionLock.lock();
+        try {
+            PreparedStatement statement = statementCache.acquire(sql);
+            try {
+                bindArguments(statement, bindArgs);
+                statement.execute();
+            } finally {
+                statementCache.release(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute statement: " + sql, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @Override
+    public void ensureSqlCompiles(String sql) {
+        prepareStatement(sql).close();
+    }
+
+    @Override
+    public ISQLitePreparedStatement prepareStatement(String sql) {
+        connectionLock.lock();
+        try {
+            return new JDBCPreparedStatementAdapter(this, connection.prepareStatement(sql), sql);
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to compile statement: " + sql, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private static void bindArguments(PreparedStatement statement, Object[] bindArgs) throws SQLException {
+        if (bindArgs == null) {
+            return;
+        }
+        for (int i = 1; i <= bindArgs.length; i++) {
+            Object value = bindArgs[i - 1];
+            if (value == null) {
+                statement.setObject(i, null);
+            } else if (value instanceof Double || value instanceof Float) {
+                statement.setDouble(i, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                statement.setLong(i, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                statement.setLong(i, (Boolean) value ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                statement.setBytes(i, (byte[]) value);
+            } else {
+                statement.setString(i, value.toString());
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        connectionLock.lock();
+        try {
+            statementCache.clear();
+            if (lastInsertRowIdStatement != null) {
+                lastInsertRowIdStatement.close();
+                lastInsertRowIdStatement = null;
+            }
+            connection.close();
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to close database: " + path, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @Override
+    public void disableWriteAheadLogging() {
+        simpleQueryForString("PRAGMA journal_mode = DELETE", null);
+    }
+
+    @Override
+    public boolean enableWriteAheadLogging() {
+        return "wal".equalsIgnoreCase(simpleQueryForString("PRAGMA journal_mode = WAL", null));
+    }
+
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return "wal".equalsIgnoreCase(simpleQueryForString("PRAGMA journal_mode", null));
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return simpleQueryForLong("PRAGMA max_page_count", null) * getPageSize();
+    }
+
+    @Override
+    public long getPageSize() {
+        return simpleQueryForLong("PRAGMA page_size", null);
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean isDatabaseIntegrityOk() {
+        return "ok".equalsIgnoreCase(simpleQueryForString("PRAGMA integrity_check(1)", null));
+    }
+
+    @Override
+    public boolean isDbLockedByCurrentThread() {
+        return connectionLock.isHeldByCurrentThread();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        try {
+            return connection.isReadOnly();
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to read connection state", e);
+        }
+    }
+
+    @Override
+    public boolean needUpgrade(int newVersion) {
+        return newVersion > getVersion();
+    }
+
+    @Override
+    public void setForeignKeyConstraintsEnabled(boolean enable) {
+        execSQL("PRAGMA foreign_keys = " + (enable ? "ON" : "OFF"));
+    }
+
+    @Override
+    public void setMaxSqlCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size must be >= 0, was " + cacheSize);
+        }
+        connectionLock.lock();
+        try {
+            statementCache.setMaxSize(cacheSize);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @Override
+    public void setMaximumSize(long numBytes) {
+        long pageSize = getPageSize();
+        long numPages = numBytes / pageSize;
+        if ((numBytes % pageSize) != 0) {
+            numPages++;
+        }
+        simpleQueryForLong("PRAGMA max_page_count = " + numPages, null);
+    }
+
+    @Override
+    public void setPageSize(long numBytes) {
+        execSQL("PRAGMA page_size = " + numBytes);
+    }
+
+    @Override
+    public Connection getWrappedObject() {
+        return connection;
+    }
+
+    @Override
+    public String toString() {
+        return "JDBCDatabaseAdapter[" + path + "]";
+    }
+}
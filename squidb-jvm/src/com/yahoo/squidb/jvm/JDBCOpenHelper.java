@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLiteReadConnectionOpenHelper;
+import com.yahoo.squidb.data.SquidDatabase;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * ISQLiteOpenHelper implementation that opens SQLite databases through the SQLite JDBC driver, with the same
+ * configure/create/upgrade/downgrade/open lifecycle as Android's SQLiteOpenHelper. Passing {@link #IN_MEMORY} as the
+ * database directory opens a private in-memory database instead of a file.
+ * <p>
+ * File-backed databases can also be read through additional read-only connections. These are opened on demand by
+ * SquidDatabase's read connection pool when one is enabled with
+ * {@link SquidDatabase#setReadConnectionPoolSize(int)}; otherwise every statement runs on the primary connection.
+ */
+public class JDBCOpenHelper implements ISQLiteReadConnectionOpenHelper {
+
+    /**
+     * Pass this value as the database directory to open a private in-memory database
+     */
+    public static final String IN_MEMORY = ":memory:";
+
+    static final String JDBC_URL_PREFIX = "jdbc:sqlite:";
+
+    private final String databaseDirectory;
+    private final String databaseName;
+    private final SquidDatabase.OpenHelperDelegate delegate;
+    private final int version;
+
+    private JDBCDatabaseAdapter database = null;
+
+    public JDBCOpenHelper(String databaseDirectory, String databaseName, SquidDatabase.OpenHelperDelegate delegate,
+            int version) {
+        if (version < 1) {
+            throw new IllegalArgumentException("Version must be >= 1, was " + version);
+        }
+        this.databaseDirectory = databaseDirectory;
+        this.databaseName = databaseName;
+        this.delegate = delegate;
+        this.version = version;
+    }
+
+    private boolean isInMemory() {
+        return IN_MEMORY.equals(databaseDirectory);
+    }
+
+    @Override
+    public synchronized ISQLiteDatabase openForWriting() {
+        if (database != null && database.isOpen()) {
+            return database;
+        }
+
+        String path = getDatabasePath();
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection(JDBC_URL_PREFIX + path);
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to open database " + path, e);
+        }
+
+        JDBCDatabaseAdapter db = new JDBCDatabaseAdapter(connection, path);
+        boolean success = false;
+        try {
+            delegate.onConfigure(db);
+
+            int currentVersion = db.getVersion();
+            if (currentVersion != version) {
+                db.beginTransaction();
+                try {
+                    if (currentVersion == 0) {
+                        delegate.onCreate(db);
+                    } else if (currentVersion > version) {
+                        delegate.onDowngrade(db, currentVersion, version);
+                    } else {
+                        delegate.onUpgrade(db, currentVersion, version);
+                    }
+                    db.setVersion(version);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            delegate.onOpen(db);
+            success = true;
+        } finally {
+            if (!success) {
+                db.close();
+            }
+        }
+        database = db;
+        return db;
+    }
+
+    @Override
+    public ISQLiteDatabase openReadOnlyConnection() {
+        if (isInMemory()) {
+            // Each connection to :memory: opens a separate, empty database
+            return null;
+        }
+        String path = getDatabasePath();
+        try {
+            Connection connection = DriverManager.getConnection(JDBC_URL_PREFIX + path);
+            boolean success = false;
+            try {
+                Statement statement = connection.createStatement();
+                try {
+                    statement.execute("PRAGMA query_only = 1");
+                } finally {
+                    statement.close();
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    connection.close();
+                }
+            }
+            return new JDBCDatabaseAdapter(connection, path);
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to open read-only connection to " + path, e);
+        }
+    }
+
+    @Override
+    public String getDatabasePath() {
+        if (isInMemory()) {
+            return IN_MEMORY;
+        }
+        return new File(databaseDirectory, databaseName).getAbsolutePath();
+    }
+
+    @Override
+    public synchronized boolean deleteDatabase() {
+        if (isInMemory()) {
+            return true;
+        }
+        String path = getDatabasePath();
+        boolean deleted = new File(path).delete();
+        new File(path + "-journal").delete();
+        new File(path + "-shm").delete();
+        new File(path + "-wal").delete();
+        return deleted;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (database != null) {
+            database.close();
+            database = null;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import com.yahoo.squidb.data.ISQLitePreparedStatement;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Wrapper for a JDBC {@link PreparedStatement} that implements the common {@link ISQLitePreparedStatement} interface.
+ * All executions are serialized on the owning {@link JDBCDatabaseAdapter}'s connection lock.
+ */
+class JDBCPreparedStatementAdapter implements ISQLitePreparedStatement {
+
+    private final JDBCDatabaseAdapter db;
+    private final PreparedStatement statement;
+    private final String sql;
+
+    JDBCPreparedStatementAdapter(JDBCDatabaseAdapter db, PreparedStatement statement, String sql) {
+        this.db = db;
+        this.statement = statement;
+        this.sql = sql;
+    }
+
+    /**
+     * Closes the statement. Like Android's SQLiteStatement, this is safe to call more than once and after the
+     * owning connection has been closed, which already released the statement.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!statement.isClosed() && db.isOpen()) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            // Nothing to do, the statement is being discarded anyways
+        }
+    }
+
+    @Override
+    public void bindNull(int index) {
+        try {
+            statement.setObject(index, null);
+        } catch (SQLException e) {
+            throw bindFailed(index, e);
+        }
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        try {
+            statement.setLong(index, value);
+        } catch (SQLException e) {
+            throw bindFailed(index, e);
+        }
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        try {
+            statement.setDouble(index, value);
+        } catch (SQLException e) {
+            throw bindFailed(index, e);
+        }
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        try {
+            statement.setString(index, value);
+        } catch (SQLException e) {
+            throw bindFailed(index, e);
+        }
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        try {
+            statement.setBytes(index, value);
+        } catch (SQLException e) {
+            throw bindFailed(index, e);
+        }
+    }
+
+    private SQLiteJDBCException bindFailed(int index, SQLException e) {
+        return new SQLiteJDBCException("Failed to bind argument " + index + " for statement: " + sql, e);
+    }
+
+    @Override
+    public void clearBindings() {
+        try {
+            statement.clearParameters();
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to clear bindings for statement: " + sql, e);
+        }
+    }
+
+    @Override
+    public void execute() {
+        db.lockConnection();
+        try {
+            statement.execute();
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute statement: " + sql, e);
+        } finally {
+            db.unlockConnection();
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        db.lockConnection();
+        try {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute statement: " + sql, e);
+        } finally {
+            db.unlockConnection();
+        }
+    }
+
+    @Override
+    public long executeInsert() {
+        db.lockConnection();
+        try {
+            int changes = statement.executeUpdate();
+            return changes > 0 ? db.lastInsertRowId() : -1;
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute statement: " + sql, e);
+        } finally {
+            db.unlockConnection();
+        }
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        db.lockConnection();
+        try {
+            ResultSet resultSet = statement.executeQuery();
+            try {
+                if (!resultSet.next()) {
+                    throw new SQLiteJDBCException("Query returned no rows: " + sql);
+                }
+                return resultSet.getLong(1);
+            } finally {
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute query: " + sql, e);
+        } finally {
+            db.unlockConnection();
+        }
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        db.lockConnection();
+        try {
+            ResultSet resultSet = statement.executeQuery();
+            try {
+                if (!resultSet.next()) {
+                    throw new SQLiteJDBCException("Query returned no rows: " + sql);
+                }
+                return resultSet.getString(1);
+            } finally {
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            throw new SQLiteJDBCException("Failed to execute query: " + sql, e);
+        } finally {
+            db.unlockConnection();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of compiled {@link PreparedStatement PreparedStatements} for a single JDBC {@link Connection}, keyed by
+ * SQL string. This serves the same purpose as the prepared statement cache in Android's SQLiteConnection: repeated
+ * queries and simple statements skip recompiling their SQL. Statements evicted from the cache are closed.
+ * <p>
+ * This class is not thread safe; callers must have exclusive use of the owning connection while using it, and must
+ * finish with a statement acquired from the cache before acquiring another one.
+ */
+class JDBCStatementCache {
+
+    static final int DEFAULT_MAX_SIZE = 25;
+
+    private final Connection connection;
+    private final StatementLruMap statements;
+
+    JDBCStatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.statements = new StatementLruMap(maxSize);
+    }
+
+    /**
+     * @return a compiled statement for the given SQL, reusing a previously compiled one if possible. Parameter
+     * bindings from any previous use of the statement will have been cleared
+     */
+    PreparedStatement acquire(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            if (statements.maxSize > 0) {
+                statements.put(sql, statement);
+            }
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Must be called when the caller is finished with a statement returned by {@link #acquire(String)}. Statements that
+     * were not retained by the cache are closed.
+     */
+    void release(String sql, PreparedStatement statement) throws SQLException {
+        if (statements.get(sql) != statement) {
+            statement.close();
+        }
+    }
+
+    void setMaxSize(int maxSize) {
+        statements.maxSize = maxSize;
+        statements.trimToSize();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Close and remove all cached statements
+     */
+    void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Nothing to do, the statement is being discarded anyways
+        }
+    }
+
+    private static class StatementLruMap extends LinkedHashMap<String, PreparedStatement> {
+
+        /* suppress compiler warning */
+        private static final long serialVersionUID = 3102437518227712513L;
+
+        private int maxSize;
+
+        StatementLruMap(int maxSize) {
+            super(0, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > maxSize) {
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        void trimToSize() {
+            while (size() > maxSize) {
+                Map.Entry<String, PreparedStatement> eldest = entrySet().iterator().next();
+                closeQuietly(eldest.getValue());
+                remove(eldest.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import java.sql.SQLException;
+
+/**
+ * Unchecked wrapper for {@link SQLException SQLExceptions} thrown by the SQLite JDBC driver, since the
+ * {@link com.yahoo.squidb.data.ISQLiteDatabase} interfaces do not declare checked exceptions
+ */
+public class SQLiteJDBCException extends RuntimeException {
+
+    /* suppress compiler warning */
+    private static final long serialVersionUID = 6240537011594622743L;
+
+    public SQLiteJDBCException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    public SQLiteJDBCException(String message) {
+        super(message);
+    }
+}
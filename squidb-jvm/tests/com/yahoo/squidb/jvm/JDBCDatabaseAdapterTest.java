@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import com.yahoo.squidb.data.ICursor;
+import com.yahoo.squidb.data.ISQLitePreparedStatement;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+
+public class JDBCDatabaseAdapterTest extends TestCase {
+
+    private File databaseFile;
+    private JDBCDatabaseAdapter database;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        databaseFile = File.createTempFile("jdbcAdapterTest", ".db");
+        String path = databaseFile.getAbsolutePath();
+        database = new JDBCDatabaseAdapter(DriverManager.getConnection(JDBCOpenHelper.JDBC_URL_PREFIX + path), path);
+        database.execSQL("CREATE TABLE things (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT)");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.close();
+        databaseFile.delete();
+        super.tearDown();
+    }
+
+    private void insertThing(String name) {
+        database.executeInsert("INSERT INTO things (name) VALUES (?)", new Object[]{name});
+    }
+
+    private long countThings() {
+        return database.simpleQueryForLong("SELECT COUNT(*) FROM things", null);
+    }
+
+    public void testNestedTransactionRollbackRollsBackOuterTransaction() {
+        database.beginTransaction();
+        try {
+            insertThing("outer");
+            database.beginTransactionNonExclusive();
+            try {
+                insertThing("inner");
+                // Not marked successful
+            } finally {
+                database.endTransaction();
+            }
+            assertTrue(database.inTransaction());
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        assertFalse(database.inTransaction());
+        assertFalse(database.isDbLockedByCurrentThread());
+        assertEquals(0, countThings());
+    }
+
+    public void testNestedTransactionsCommitTogether() {
+        database.beginTransaction();
+        try {
+            insertThing("outer");
+            database.beginTransaction();
+            try {
+                insertThing("inner");
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        assertEquals(2, countThings());
+    }
+
+    public void testTransactionMethodsRequireATransaction() {
+        try {
+            database.setTransactionSuccessful();
+            fail("setTransactionSuccessful should throw outside of a transaction");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        try {
+            database.endTransaction();
+            fail("endTransaction should throw outside of a transaction");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+    }
+
+    public void testYieldIfContendedSafelyWithoutContention() {
+        assertFalse(database.yieldIfContendedSafely());
+        database.beginTransaction();
+        try {
+            insertThing("a");
+            assertFalse(database.yieldIfContendedSafely());
+            database.beginTransaction();
+            try {
+                // Nested transactions never yield
+                assertFalse(database.yieldIfContendedSafely());
+            } finally {
+                database.endTransaction();
+            }
+            assertTrue(database.inTransaction());
+        } finally {
+            database.endTransaction();
+        }
+        assertEquals(0, countThings());
+    }
+
+    public void testYieldIfContendedSafelyLetsWaitingThreadRun() throws InterruptedException {
+        Thread contender = new Thread() {
+            @Override
+            public void run() {
+                insertThing("contender");
+            }
+        };
+        boolean yielded = false;
+        database.beginTransaction();
+        try {
+            insertThing("beforeYield");
+            contender.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!yielded && System.nanoTime() < deadline) {
+                yielded = database.yieldIfContendedSafely();
+                if (!yielded) {
+                    Thread.sleep(10);
+                }
+            }
+            assertTrue(database.inTransaction());
+            insertThing("afterYield");
+            // Not marked successful, so only the work after the yield is rolled back
+        } finally {
+            database.endTransaction();
+        }
+        contender.join(5000);
+        assertTrue(yielded);
+        assertFalse(contender.isAlive());
+
+        ICursor cursor = database.rawQuery("SELECT name FROM things ORDER BY _id", null);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("beforeYield", cursor.getString(0));
+            assertTrue(cursor.moveToNext());
+            assertEquals("contender", cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testPreparedStatementCloseIsSafeAfterConnectionClosed() {
+        ISQLitePreparedStatement statement = database.prepareStatement("INSERT INTO things (name) VALUES (?)");
+        database.close();
+        statement.close();
+        statement.close();
+    }
+
+    public void testCursorReadsAllRowsAndTypes() {
+        database.execSQL("CREATE TABLE types (i INTEGER, r REAL, t TEXT, b BLOB, n TEXT)");
+        database.execSQL("INSERT INTO types VALUES (?, ?, ?, ?, ?)", new Object[]{42, 1.5, "text", new byte[]{1, 2},
+                null});
+        database.execSQL("INSERT INTO types VALUES (?, ?, ?, ?, ?)", new Object[]{true, 2.5f, "more", new byte[]{3},
+                null});
+
+        ICursor cursor = database.rawQuery("SELECT i, r, t, b, n FROM types ORDER BY i DESC", null);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertEquals(5, cursor.getColumnCount());
+            assertEquals(2, cursor.getColumnIndex("t"));
+            assertTrue(cursor.isBeforeFirst());
+
+            assertTrue(cursor.moveToFirst());
+            assertEquals(ICursor.FIELD_TYPE_INTEGER, cursor.getType(0));
+            assertEquals(42, cursor.getLong(0));
+            assertEquals(ICursor.FIELD_TYPE_FLOAT, cursor.getType(1));
+            assertEquals(1.5, cursor.getDouble(1), 0);
+            assertEquals(ICursor.FIELD_TYPE_STRING, cursor.getType(2));
+            assertEquals("text", cursor.getString(2));
+            assertEquals(ICursor.FIELD_TYPE_BLOB, cursor.getType(3));
+            assertEquals(2, cursor.getBlob(3).length);
+            assertTrue(cursor.isNull(4));
+
+            assertTrue(cursor.moveToNext());
+            assertTrue(cursor.isLast());
+            assertEquals(1, cursor.getInt(0));
+            assertEquals(2.5, cursor.getDouble(1), 0);
+            assertFalse(cursor.moveToNext());
+            assertTrue(cursor.isAfterLast());
+        } finally {
+            cursor.close();
+        }
+        assertTrue(cursor.isClosed());
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLiteOpenHelper;
+import com.yahoo.squidb.data.SquidDatabase;
+import com.yahoo.squidb.sql.Table;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class JDBCReadConnectionTest extends TestCase {
+
+    private static final String COUNT_THINGS = "SELECT COUNT(*) FROM things";
+    private static final String INSERT_THING = "INSERT INTO things (name) VALUES (?)";
+
+    private File databaseDirectory;
+    private WalTestDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        databaseDirectory = File.createTempFile("jdbcReadConnectionTest", "");
+        databaseDirectory.delete();
+        databaseDirectory.mkdir();
+        database = new WalTestDatabase(databaseDirectory.getAbsolutePath());
+        database.setReadConnectionPoolSize(2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.setReadConnectionPoolSize(0);
+        database.clear();
+        databaseDirectory.delete();
+        super.tearDown();
+    }
+
+    public void testQueriesOutsideTransactionsUseReadConnections() {
+        assertTrue(database.tryExecSql(INSERT_THING, new Object[]{"a"}));
+        assertEquals(1, database.simpleQueryForLong(COUNT_THINGS, null));
+        assertTrue(database.getOpenedReadConnectionCount() > 0);
+    }
+
+    public void testReadConnectionsDontWaitForOpenWriteTransaction() throws InterruptedException {
+        assertTrue(database.tryExecSql(INSERT_THING, new Object[]{"committed"}));
+
+        final AtomicLong countSeenByReader = new AtomicLong(-1);
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                countSeenByReader.set(database.simpleQueryForLong(COUNT_THINGS, null));
+            }
+        };
+        database.beginTransactionNonExclusive();
+        try {
+            assertTrue(database.tryExecSql(INSERT_THING, new Object[]{"uncommitted"}));
+            // Reads inside the transaction stay on the primary connection and see its uncommitted changes
+            assertEquals(2, database.simpleQueryForLong(COUNT_THINGS, null));
+
+            // The primary connection is held by this transaction, so the reader can only finish while it is open if
+            // it was routed to a read connection. With WAL, it sees the last committed snapshot.
+            reader.start();
+            reader.join(5000);
+            assertFalse(reader.isAlive());
+            assertEquals(1, countSeenByReader.get());
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            reader.join();
+        }
+        assertEquals(2, database.simpleQueryForLong(COUNT_THINGS, null));
+        assertTrue(database.getOpenedReadConnectionCount() > 0);
+    }
+
+    public void testInMemoryDatabaseHasNoReadConnections() {
+        WalTestDatabase inMemory = new WalTestDatabase(JDBCOpenHelper.IN_MEMORY);
+        inMemory.setReadConnectionPoolSize(2);
+        try {
+            assertTrue(inMemory.tryExecSql(INSERT_THING, new Object[]{"a"}));
+            // Queries fall back to the primary connection, which is the only one that can see the data
+            assertEquals(1, inMemory.simpleQueryForLong(COUNT_THINGS, null));
+            assertEquals(0, inMemory.getOpenedReadConnectionCount());
+        } finally {
+            inMemory.close();
+        }
+    }
+
+    private static class WalTestDatabase extends SquidDatabase {
+
+        private final String databaseDirectory;
+        private final AtomicInteger openedReadConnections = new AtomicInteger();
+
+        WalTestDatabase(String databaseDirectory) {
+            this.databaseDirectory = databaseDirectory;
+        }
+
+        @Override
+        public String getName() {
+            return "jdbcReadConnectionTest.db";
+        }
+
+        @Override
+        protected int getVersion() {
+            return 1;
+        }
+
+        @Override
+        protected Table[] getTables() {
+            return new Table[0];
+        }
+
+        @Override
+        protected void onConfigure(ISQLiteDatabase db) {
+            db.enableWriteAheadLogging();
+        }
+
+        @Override
+        protected void onTablesCreated(ISQLiteDatabase db) {
+            db.execSQL("CREATE TABLE things (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT)");
+        }
+
+        @Override
+        protected boolean onUpgrade(ISQLiteDatabase db, int oldVersion, int newVersion) {
+            return false;
+        }
+
+        @Override
+        protected void setReadConnectionPoolSize(int maxConnections) {
+            super.setReadConnectionPoolSize(maxConnections);
+        }
+
+        @Override
+        protected ISQLiteOpenHelper createOpenHelper(String databaseName, OpenHelperDelegate delegate, int version) {
+            return new JDBCOpenHelper(databaseDirectory, databaseName, delegate, version) {
+                @Override
+                public ISQLiteDatabase openReadOnlyConnection() {
+                    ISQLiteDatabase connection = super.openReadOnlyConnection();
+                    if (connection != null) {
+                        openedReadConnections.incrementAndGet();
+                    }
+                    return connection;
+                }
+            };
+        }
+
+        int getOpenedReadConnectionCount() {
+            return openedReadConnections.get();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jvm;
+
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+public class JDBCStatementCacheTest extends TestCase {
+
+    private Connection connection;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        connection = DriverManager.getConnection(JDBCOpenHelper.JDBC_URL_PREFIX + JDBCOpenHelper.IN_MEMORY);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        connection.close();
+        super.tearDown();
+    }
+
+    private PreparedStatement acquireAndRelease(JDBCStatementCache cache, String sql) throws SQLException {
+        PreparedStatement statement = cache.acquire(sql);
+        cache.release(sql, statement);
+        return statement;
+    }
+
+    public void testStatementsAreReused() throws SQLException {
+        JDBCStatementCache cache = new JDBCStatementCache(connection, 2);
+        PreparedStatement first = acquireAndRelease(cache, "SELECT 1");
+        assertSame(first, acquireAndRelease(cache, "SELECT 1"));
+        assertFalse(first.isClosed());
+        assertEquals(1, cache.size());
+    }
+
+    public void testLeastRecentlyUsedStatementIsEvictedAndClosed() throws SQLException {
+        JDBCStatementCache cache = new JDBCStatementCache(connection, 2);
+        PreparedStatement select1 = acquireAndRelease(cache, "SELECT 1");
+        PreparedStatement select2 = acquireAndRelease(cache, "SELECT 2");
+        // Touch SELECT 1 so that SELECT 2 becomes the eldest entry
+        acquireAndRelease(cache, "SELECT 1");
+        PreparedStatement select3 = acquireAndRelease(cache, "SELECT 3");
+
+        assertEquals(2, cache.size());
+        assertTrue(select2.isClosed());
+        assertFalse(select1.isClosed());
+        assertFalse(select3.isClosed());
+        assertSame(select1, acquireAndRelease(cache, "SELECT 1"));
+        assertNotSame(select2, acquireAndRelease(cache, "SELECT 2"));
+    }
+
+    public void testShrinkingCacheClosesEvictedStatements() throws SQLException {
+        JDBCStatementCache cache = new JDBCStatementCache(connection, 3);
+        PreparedStatement select1 = acquireAndRelease(cache, "SELECT 1");
+        PreparedStatement select2 = acquireAndRelease(cache, "SELECT 2");
+        PreparedStatement select3 = acquireAndRelease(cache, "SELECT 3");
+
+        cache.setMaxSize(1);
+        assertEquals(1, cache.size());
+        assertTrue(select1.isClosed());
+        assertTrue(select2.isClosed());
+        assertFalse(select3.isClosed());
+
+        cache.setMaxSize(0);
+        assertEquals(0, cache.size());
+        assertTrue(select3.isClosed());
+    }
+
+    public void testUncachedStatementsAreClosedOnRelease() throws SQLException {
+        JDBCStatementCache cache = new JDBCStatementCache(connection, 0);
+        PreparedStatement statement = cache.acquire("SELECT 1");
+        assertFalse(statement.isClosed());
+        cache.release("SELECT 1", statement);
+        assertTrue(statement.isClosed());
+        assertEquals(0, cache.size());
+    }
+
+    public void testClearClosesAllStatements() throws SQLException {
+        JDBCStatementCache cache = new JDBCStatementCache(connection, 2);
+        PreparedStatement select1 = acquireAndRelease(cache, "SELECT 1");
+        PreparedStatement select2 = acquireAndRelease(cache, "SELECT 2");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(select1.isClosed());
+        assertTrue(select2.isClosed());
+    }
+}
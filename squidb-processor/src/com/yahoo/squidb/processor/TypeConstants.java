@@ -50,6 +50,10 @@ public class TypeConstants {
     public static final DeclaredTypeName VALUES_STORAGE = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "ValuesStorage");
     public static final DeclaredTypeName MAP_VALUES_STORAGE
             = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "MapValuesStorage");
+    public static final DeclaredTypeName ARRAY_VALUES_STORAGE
+            = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "ArrayValuesStorage");
+    public static final DeclaredTypeName ARRAY_VALUES_STORAGE_SCHEMA
+            = new DeclaredTypeName(ARRAY_VALUES_STORAGE.toString(), "Schema");
     public static final DeclaredTypeName CONTENT_VALUES = new DeclaredTypeName("android.content.ContentValues");
     public static final DeclaredTypeName MAP = new DeclaredTypeName("java.util.Map");
     public static final DeclaredTypeName MAP_VALUES = MAP.clone();
@@ -72,6 +76,8 @@ public class TypeConstants {
     public static final DeclaredTypeName MODEL_CREATOR = new DeclaredTypeName(SQUIDB_ANDROID_PACKAGE,
             "ModelCreator");
     public static final DeclaredTypeName SQUID_CURSOR = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "SquidCursor");
+    public static final DeclaredTypeName PREPARED_STATEMENT
+            = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "ISQLitePreparedStatement");
     public static final DeclaredTypeName QUERY = new DeclaredTypeName(SQUIDB_SQL_PACKAGE, "Query");
     public static final DeclaredTypeName SQL_TABLE = new DeclaredTypeName(SQUIDB_SQL_PACKAGE, "SqlTable");
     public static final DeclaredTypeName TABLE = new DeclaredTypeName(SQUIDB_SQL_PACKAGE, "Table");
@@ -97,9 +97,22 @@ public class PluginEnvironment {
      */
     public static final String OPTIONS_GENERATE_ANDROID_MODELS = "androidModels";
 
+    /**
+     * Option for disabling the generated readFrom and bindForInsert methods that read models from cursors and bind
+     * them to prepared inserts without going through the generic property visitors
+     */
+    public static final String OPTIONS_DISABLE_GENERATED_READERS = "disableGeneratedReaders";
+
+    /**
+     * Option for generating models that store their values in an array-backed
+     * {@link com.yahoo.squidb.data.ArrayValuesStorage} indexed by property ordinal instead of a map. Not compatible
+     * with {@link #OPTIONS_GENERATE_ANDROID_MODELS}, since Android models are parceled using ContentValues.
+     */
+    public static final String OPTIONS_USE_ARRAY_VALUES_STORAGE = "arrayValuesStorage";
+
     private static final Set<String> SQUIDB_SUPPORTED_OPTIONS;
     static {
-        SQUIDB_SUPPORTED_OPTIONS = new HashSet<>(9);
+        SQUIDB_SUPPORTED_OPTIONS = new HashSet<>(11);
         SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_DISABLE_DEFAULT_CONSTRUCTORS);
         SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_DISABLE_DEFAULT_IMPLEMENTS_HANDLING);
         SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_DISABLE_DEFAULT_METHOD_HANDLING);
@@ -109,6 +122,8 @@ public class PluginEnvironment {
         SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_DISABLE_JAVADOC_COPYING);
         SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_DISABLE_ENUM_PROPERTIES);
         SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_GENERATE_ANDROID_MODELS);
+        SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_USE_ARRAY_VALUES_STORAGE);
+        SQUIDB_SUPPORTED_OPTIONS.add(OPTIONS_DISABLE_GENERATED_READERS);
     }
 
     private static final String UNSUPPORTED_OPTIONS_WARNING
@@ -149,6 +164,23 @@ public class PluginEnvironment {
         initializeDefaultPlugins();
         initializePluginsFromEnvironment();
         reportUnsupportedOptions();
+        reportIncompatibleOptions();
+    }
+
+    private void reportIncompatibleOptions() {
+        if (hasSquidbOption(OPTIONS_USE_ARRAY_VALUES_STORAGE) && hasSquidbOption(OPTIONS_GENERATE_ANDROID_MODELS)) {
+            utils.getMessager().printMessage(Diagnostic.Kind.WARNING, "The squidbOption '"
+                    + OPTIONS_USE_ARRAY_VALUES_STORAGE + "' is not supported together with '"
+                    + OPTIONS_GENERATE_ANDROID_MODELS + "' and will be ignored");
+        }
+    }
+
+    /**
+     * @return true if generated models should use {@link com.yahoo.squidb.data.ArrayValuesStorage}
+     */
+    public boolean useArrayValuesStorage() {
+        return hasSquidbOption(OPTIONS_USE_ARRAY_VALUES_STORAGE)
+                && !hasSquidbOption(OPTIONS_GENERATE_ANDROID_MODELS);
     }
 
     private Set<String> parseOptions() {
@@ -55,6 +55,16 @@ public class InheritedModelFileWriter extends ModelFileWriter<InheritedModelSpec
         // The superclass declares this
     }
 
+    @Override
+    protected boolean useArrayValuesStorage() {
+        return false; // The superclass creates the values storage
+    }
+
+    @Override
+    protected boolean shouldGenerateReaders() {
+        return false; // The superclass' generated readers already handle PROPERTIES
+    }
+
     @Override
     protected void emitDefaultValues() throws IOException {
         // Override: do nothing, the superclass should take care of default values
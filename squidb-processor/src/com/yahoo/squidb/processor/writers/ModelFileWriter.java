@@ -7,6 +7,7 @@ package com.yahoo.squidb.processor.writers;
 
 import com.yahoo.aptutils.model.CoreTypes;
 import com.yahoo.aptutils.model.DeclaredTypeName;
+import com.yahoo.aptutils.model.GenericName;
 import com.yahoo.aptutils.utils.AptUtils;
 import com.yahoo.aptutils.writer.JavaFileWriter;
 import com.yahoo.aptutils.writer.JavaFileWriter.Type;
@@ -21,6 +22,7 @@ import com.yahoo.squidb.processor.plugins.defaults.properties.generators.Propert
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -39,14 +41,26 @@ public abstract class ModelFileWriter<T extends ModelSpec<?>> {
 
     public static final String PROPERTIES_ARRAY_NAME = "PROPERTIES";
     protected static final String DEFAULT_VALUES_NAME = "defaultValues";
+    protected static final String VALUES_STORAGE_SCHEMA_NAME = "VALUES_STORAGE_SCHEMA";
+    private static final String READ_ALL_PROPERTIES_NAME = "readAllPropertiesFrom";
+
+    private static final Set<DeclaredTypeName> BASIC_PROPERTY_TYPES = new HashSet<>(Arrays.asList(
+            TypeConstants.LONG_PROPERTY, TypeConstants.INTEGER_PROPERTY, TypeConstants.DOUBLE_PROPERTY,
+            TypeConstants.STRING_PROPERTY, TypeConstants.BOOLEAN_PROPERTY, TypeConstants.BLOB_PROPERTY));
 
     private static final MethodDeclarationParameters GET_DEFAULT_VALUES_PARAMS;
+    private static final MethodDeclarationParameters NEW_VALUES_STORAGE_PARAMS;
 
     static {
         GET_DEFAULT_VALUES_PARAMS = new MethodDeclarationParameters()
                 .setMethodName("getDefaultValues")
                 .setModifiers(Modifier.PUBLIC)
                 .setReturnType(TypeConstants.VALUES_STORAGE);
+
+        NEW_VALUES_STORAGE_PARAMS = new MethodDeclarationParameters()
+                .setMethodName("newValuesStorage")
+                .setModifiers(Modifier.PROTECTED)
+                .setReturnType(TypeConstants.VALUES_STORAGE);
     }
 
     public ModelFileWriter(T modelSpec, PluginEnvironment pluginEnv, AptUtils utils) {
@@ -92,6 +106,7 @@ public abstract class ModelFileWriter<T extends ModelSpec<?>> {
         plugins.afterEmitMethods(writer);
 
         emitModelSpecificHelpers();
+        emitGeneratedReaders();
         plugins.emitAdditionalJava(writer);
 
         writer.finishTypeDefinition();
@@ -104,6 +119,14 @@ public abstract class ModelFileWriter<T extends ModelSpec<?>> {
     private void emitImports() throws IOException {
         Set<DeclaredTypeName> imports = new HashSet<>();
         modelSpec.addRequiredImports(imports);
+        if (useArrayValuesStorage()) {
+            imports.add(TypeConstants.ARRAY_VALUES_STORAGE);
+            imports.add(TypeConstants.ARRAY_VALUES_STORAGE_SCHEMA);
+        }
+        if (shouldGenerateReaders()) {
+            imports.add(TypeConstants.SQUID_CURSOR);
+            addGeneratedReaderImports(imports);
+        }
         writer.writeImports(imports);
         writer.registerOtherKnownNames(TypeConstants.CREATOR,
                 TypeConstants.TABLE_MAPPING_VISITORS, modelSpec.getModelSpecName());
@@ -167,7 +190,26 @@ public abstract class ModelFileWriter<T extends ModelSpec<?>> {
         }
     }
 
+    /**
+     * @return true if this model should store its values in an ArrayValuesStorage. Table and view models do if the
+     * {@link PluginEnvironment#OPTIONS_USE_ARRAY_VALUES_STORAGE} option is set; inherited models use their superclass'
+     * storage
+     */
+    protected boolean useArrayValuesStorage() {
+        return pluginEnv.useArrayValuesStorage();
+    }
+
     protected void emitDefaultValues() throws IOException {
+        if (useArrayValuesStorage()) {
+            // Must be declared after the properties array is initialized and before the default values are created.
+            // Each property's ordinal is its index in the properties array.
+            writer.writeComment("--- values storage schema");
+            writer.writeFieldDeclaration(TypeConstants.ARRAY_VALUES_STORAGE_SCHEMA, VALUES_STORAGE_SCHEMA_NAME,
+                    Expressions.callConstructor(TypeConstants.ARRAY_VALUES_STORAGE_SCHEMA, PROPERTIES_ARRAY_NAME),
+                    Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+            writer.writeNewline();
+        }
+
         writer.writeComment("--- default values");
         writer.writeFieldDeclaration(TypeConstants.VALUES_STORAGE, DEFAULT_VALUES_NAME,
                 Expressions.callMethodOn(
@@ -188,6 +230,14 @@ public abstract class ModelFileWriter<T extends ModelSpec<?>> {
                 .beginMethodDefinition(GET_DEFAULT_VALUES_PARAMS)
                 .writeStringStatement("return " + DEFAULT_VALUES_NAME)
                 .finishMethodDefinition();
+
+        if (useArrayValuesStorage()) {
+            writer.writeAnnotation(CoreTypes.OVERRIDE)
+                    .beginMethodDefinition(NEW_VALUES_STORAGE_PARAMS)
+                    .writeStatement(Expressions.callConstructor(TypeConstants.ARRAY_VALUES_STORAGE,
+                            VALUES_STORAGE_SCHEMA_NAME).returnExpr())
+                    .finishMethodDefinition();
+        }
     }
 
     protected abstract void emitDefaultValuesInitializationBlock() throws IOException;
@@ -207,4 +257,72 @@ public abstract class ModelFileWriter<T extends ModelSpec<?>> {
     protected void emitModelSpecificHelpers() throws IOException {
         // Subclasses can override
     }
+
+    /**
+     * @return true if straight-line readFrom (and for table models, bindForInsert) methods should be generated for
+     * this model. They can only be generated if every property is one of the basic property types, since the
+     * generated code calls a type-specific helper for each property
+     */
+    protected boolean shouldGenerateReaders() {
+        if (pluginEnv.hasSquidbOption(PluginEnvironment.OPTIONS_DISABLE_GENERATED_READERS)) {
+            return false;
+        }
+        for (PropertyGenerator generator : modelSpec.getPropertyGenerators()) {
+            if (!BASIC_PROPERTY_TYPES.contains(generator.getPropertyType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void addGeneratedReaderImports(Set<DeclaredTypeName> imports) {
+        // Subclasses can override
+    }
+
+    private void emitGeneratedReaders() throws IOException {
+        if (!shouldGenerateReaders()) {
+            return;
+        }
+        writer.writeComment("--- generated readers");
+        emitReadFrom();
+        emitAdditionalGeneratedReaders();
+    }
+
+    private void emitReadFrom() throws IOException {
+        String cursorName = "cursor";
+        DeclaredTypeName squidCursorType = TypeConstants.SQUID_CURSOR.clone();
+        squidCursorType.setTypeArgs(Collections.singletonList(GenericName.DEFAULT_WILDCARD));
+
+        // readFrom only handles cursors whose fields are exactly PROPERTIES; readAllPropertiesFrom does the work
+        MethodDeclarationParameters readFromParams = new MethodDeclarationParameters()
+                .setMethodName("readFrom")
+                .setModifiers(Modifier.PROTECTED)
+                .setReturnType(CoreTypes.PRIMITIVE_BOOLEAN)
+                .setArgumentTypes(squidCursorType)
+                .setArgumentNames(cursorName);
+        writer.writeAnnotation(CoreTypes.OVERRIDE)
+                .beginMethodDefinition(readFromParams)
+                .writeStringStatement("return " + cursorName + ".hasFields(" + PROPERTIES_ARRAY_NAME + ") && "
+                        + READ_ALL_PROPERTIES_NAME + "(" + cursorName + ")")
+                .finishMethodDefinition();
+
+        MethodDeclarationParameters readAllParams = new MethodDeclarationParameters()
+                .setMethodName(READ_ALL_PROPERTIES_NAME)
+                .setModifiers(Modifier.PRIVATE)
+                .setReturnType(CoreTypes.PRIMITIVE_BOOLEAN)
+                .setArgumentTypes(squidCursorType)
+                .setArgumentNames(cursorName);
+        writer.beginMethodDefinition(readAllParams);
+        List<PropertyGenerator> generators = modelSpec.getPropertyGenerators();
+        for (int i = 0; i < generators.size(); i++) {
+            writer.writeStatement(Expressions.callMethod("readValueFromCursor", cursorName, i,
+                    generators.get(i).getPropertyName()));
+        }
+        writer.writeStringStatement("return true")
+                .finishMethodDefinition();
+    }
+
+    protected void emitAdditionalGeneratedReaders() throws IOException {
+        // Subclasses can override
+    }
 }
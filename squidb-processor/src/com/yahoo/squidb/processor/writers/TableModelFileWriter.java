@@ -5,17 +5,23 @@
  */
 package com.yahoo.squidb.processor.writers;
 
+import com.yahoo.aptutils.model.CoreTypes;
+import com.yahoo.aptutils.model.DeclaredTypeName;
 import com.yahoo.aptutils.utils.AptUtils;
 import com.yahoo.aptutils.writer.expressions.Expressions;
+import com.yahoo.aptutils.writer.parameters.MethodDeclarationParameters;
 import com.yahoo.squidb.processor.TypeConstants;
 import com.yahoo.squidb.processor.data.TableModelSpecWrapper;
 import com.yahoo.squidb.processor.plugins.PluginEnvironment;
 import com.yahoo.squidb.processor.plugins.defaults.properties.generators.PropertyGenerator;
+import com.yahoo.squidb.processor.plugins.defaults.properties.generators.RowidPropertyGenerator;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic.Kind;
 
@@ -80,6 +86,37 @@ public class TableModelFileWriter extends ModelFileWriter<TableModelSpecWrapper>
         }
     }
 
+    @Override
+    protected void addGeneratedReaderImports(Set<DeclaredTypeName> imports) {
+        imports.add(TypeConstants.PREPARED_STATEMENT);
+    }
+
+    @Override
+    protected void emitAdditionalGeneratedReaders() throws IOException {
+        // Bind each property at its position in PROPERTIES, which is the column order of the model's prepared insert
+        String statementName = "statement";
+        MethodDeclarationParameters params = new MethodDeclarationParameters()
+                .setMethodName("bindForInsert")
+                .setModifiers(Modifier.PROTECTED)
+                .setReturnType(CoreTypes.PRIMITIVE_BOOLEAN)
+                .setArgumentTypes(TypeConstants.PREPARED_STATEMENT)
+                .setArgumentNames(statementName);
+        writer.writeAnnotation(CoreTypes.OVERRIDE)
+                .beginMethodDefinition(params);
+        List<PropertyGenerator> generators = modelSpec.getPropertyGenerators();
+        for (int i = 0; i < generators.size(); i++) {
+            PropertyGenerator generator = generators.get(i);
+            if (generator instanceof RowidPropertyGenerator) {
+                writer.writeStatement(Expressions.callMethod("bindRowIdForInsert", statementName, i + 1));
+            } else {
+                writer.writeStatement(Expressions.callMethod("bindValueForInsert", statementName, i + 1,
+                        generator.getPropertyName()));
+            }
+        }
+        writer.writeStringStatement("return true")
+                .finishMethodDefinition();
+    }
+
     @Override
     protected void emitDefaultValuesInitializationBlock() throws IOException {
         for (PropertyGenerator generator : modelSpec.getPropertyGenerators()) {
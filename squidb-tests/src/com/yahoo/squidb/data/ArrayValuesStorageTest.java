@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Property.IntegerProperty;
+import com.yahoo.squidb.test.SquidTestCase;
+import com.yahoo.squidb.test.Thing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+public class ArrayValuesStorageTest extends SquidTestCase {
+
+    private static final ArrayValuesStorage.Schema SCHEMA = new ArrayValuesStorage.Schema(Thing.PROPERTIES);
+
+    public void testPutAndGetPreserveTypes() {
+        ArrayValuesStorage storage = new ArrayValuesStorage(SCHEMA);
+        storage.put(Thing.ID.getName(), 1L);
+        storage.put(Thing.FOO.getName(), "foo");
+        storage.put(Thing.BAR.getName(), 7);
+        storage.put(Thing.QUX.getName(), 2.5);
+        storage.put(Thing.IS_ALIVE.getName(), true);
+        storage.putNull(Thing.BAZ.getName());
+
+        assertEquals(6, storage.size());
+        assertEquals(Long.valueOf(1), storage.get(Thing.ID.getName()));
+        assertEquals("foo", storage.get(Thing.FOO.getName()));
+        assertEquals(Integer.valueOf(7), storage.get(Thing.BAR.getName()));
+        assertEquals(Double.valueOf(2.5), storage.get(Thing.QUX.getName()));
+        assertEquals(Boolean.TRUE, storage.get(Thing.IS_ALIVE.getName()));
+        assertTrue(storage.containsKey(Thing.BAZ.getName()));
+        assertNull(storage.get(Thing.BAZ.getName()));
+
+        // Values can change type, e.g. when a string is stored for an integer column
+        storage.put(Thing.BAR.getName(), "8");
+        assertEquals("8", storage.get(Thing.BAR.getName()));
+
+        storage.remove(Thing.FOO.getName());
+        assertFalse(storage.containsKey(Thing.FOO.getName()));
+        assertNull(storage.get(Thing.FOO.getName()));
+        assertEquals(5, storage.size());
+    }
+
+    public void testKeysOutsideSchema() {
+        ArrayValuesStorage storage = new ArrayValuesStorage(SCHEMA);
+        storage.put("not_a_column", 3);
+        storage.put(Thing.FOO.getName(), "foo");
+        assertTrue(storage.containsKey("not_a_column"));
+        assertEquals(Integer.valueOf(3), storage.get("not_a_column"));
+        assertEquals(new HashSet<>(Arrays.asList("not_a_column", Thing.FOO.getName())), storage.keySet());
+        assertEquals(2, storage.size());
+    }
+
+    public void testPutAllMatchesMapValuesStorage() {
+        ArrayValuesStorage first = new ArrayValuesStorage(SCHEMA);
+        first.put(Thing.FOO.getName(), "foo");
+        first.put(Thing.BAR.getName(), 1);
+        ArrayValuesStorage second = new ArrayValuesStorage(SCHEMA);
+        second.put(Thing.BAR.getName(), 2);
+        second.put(Thing.BAZ.getName(), 3L);
+        second.put("extra", "extra");
+
+        ArrayValuesStorage merged = new ArrayValuesStorage(SCHEMA);
+        merged.putAll(first);
+        merged.putAll(second);
+
+        MapValuesStorage expected = new MapValuesStorage();
+        expected.putAll(first);
+        expected.putAll(second);
+
+        assertEquals(expected.size(), merged.size());
+        for (Map.Entry<String, Object> entry : expected.valueSet()) {
+            assertEquals(entry.getValue(), merged.get(entry.getKey()));
+        }
+
+        // Copying from a different kind of storage takes the generic path
+        ArrayValuesStorage fromMap = new ArrayValuesStorage(SCHEMA);
+        fromMap.putAll(expected);
+        assertEquals(merged, fromMap);
+        assertEquals(merged.hashCode(), fromMap.hashCode());
+    }
+
+    public void testSchemaWithMoreThan64Ordinals() {
+        Property<?>[] properties = new Property<?>[100];
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = IntegerProperty.literal(i, "col" + i);
+        }
+        ArrayValuesStorage.Schema schema = new ArrayValuesStorage.Schema(properties);
+        ArrayValuesStorage storage = new ArrayValuesStorage(schema);
+        storage.put("col99", 99);
+        storage.put("col63", 63);
+        storage.put("col64", 64);
+        assertEquals(3, storage.size());
+        assertFalse(storage.containsKey("col0"));
+
+        ArrayValuesStorage copy = new ArrayValuesStorage(schema);
+        copy.putAll(storage);
+        assertEquals(Integer.valueOf(99), copy.get("col99"));
+        assertEquals(Integer.valueOf(64), copy.get("col64"));
+        assertEquals(storage, copy);
+    }
+
+    public void testReadsReuseBoxesUntilValueChanges() {
+        ArrayValuesStorage storage = new ArrayValuesStorage(SCHEMA);
+        storage.put(Thing.ID.getName(), 1000L);
+        Object first = storage.get(Thing.ID.getName());
+        assertSame(first, storage.get(Thing.ID.getName()));
+
+        storage.put(Thing.ID.getName(), 1001L);
+        assertEquals(Long.valueOf(1001), storage.get(Thing.ID.getName()));
+
+        // Lookups by an equal but distinct String find the same ordinal as by the property's own name
+        int ordinal = SCHEMA.ordinalOf(Thing.ID.getName());
+        assertTrue(ordinal >= 0);
+        assertEquals(ordinal, SCHEMA.ordinalOf(new String(Thing.ID.getName())));
+    }
+
+    public void testKeySetAndValueSetAreViews() {
+        ArrayValuesStorage storage = new ArrayValuesStorage(SCHEMA);
+        Set<String> keys = storage.keySet();
+        Set<Map.Entry<String, Object>> entries = storage.valueSet();
+        assertTrue(keys.isEmpty());
+
+        storage.put(Thing.FOO.getName(), "foo");
+        storage.put(Thing.BAR.getName(), 7);
+        storage.put("extra", "extra");
+        assertEquals(Arrays.asList(Thing.FOO.getName(), Thing.BAR.getName(), "extra"), new ArrayList<>(keys));
+        assertEquals(3, entries.size());
+        assertTrue(keys.contains(Thing.BAR.getName()));
+
+        keys.remove(Thing.FOO.getName());
+        assertFalse(storage.containsKey(Thing.FOO.getName()));
+        Iterator<Map.Entry<String, Object>> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            if ("extra".equals(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+        assertEquals(Collections.singleton(Thing.BAR.getName()), keys);
+    }
+}
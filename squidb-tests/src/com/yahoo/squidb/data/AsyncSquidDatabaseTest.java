@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.test.DatabaseTestCase;
+import com.yahoo.squidb.test.Thing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncSquidDatabaseTest extends DatabaseTestCase {
+
+    private AsyncSquidDatabase asyncDatabase;
+
+    @Override
+    protected void setupDatabase() {
+        super.setupDatabase();
+        asyncDatabase = new AsyncSquidDatabase(database, 2);
+    }
+
+    @Override
+    protected void tearDownDatabase() {
+        asyncDatabase.shutdown();
+        try {
+            assertTrue(asyncDatabase.awaitTermination(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        super.tearDownDatabase();
+    }
+
+    public void testWritesRunInSubmissionOrder() throws Exception {
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(asyncDatabase.persist(new Thing().setFoo("thing" + i).setBar(i), null));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+
+        List<Thing> things = asyncDatabase.queryList(Thing.class,
+                Query.select(Thing.PROPERTIES).orderBy(Thing.ID.asc()), null).get();
+        assertEquals(20, things.size());
+        for (int i = 0; i < things.size(); i++) {
+            assertEquals(i, things.get(i).getBar().intValue());
+        }
+        assertEquals(20, asyncDatabase.count(Thing.class, Thing.BAR.gte(0), null).get().intValue());
+    }
+
+    public void testTasksRunOffCallerThread() throws Exception {
+        final Thread caller = Thread.currentThread();
+        String writerName = asyncDatabase.write(new AsyncSquidDatabase.DatabaseTask<String>() {
+            @Override
+            public String run(SquidDatabase database) {
+                assertNotSame(caller, Thread.currentThread());
+                return Thread.currentThread().getName();
+            }
+        }).get();
+        String readerName = asyncDatabase.read(new AsyncSquidDatabase.DatabaseTask<String>() {
+            @Override
+            public String run(SquidDatabase database) {
+                return Thread.currentThread().getName();
+            }
+        }).get();
+        assertTrue(writerName.contains("writer"));
+        assertTrue(readerName.contains("reader"));
+    }
+
+    public void testCallbacks() throws Exception {
+        final AtomicReference<Object> success = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        AsyncSquidDatabase.Callback<Object> callback = new AsyncSquidDatabase.Callback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                success.set(result);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                error.set(e);
+            }
+        };
+
+        asyncDatabase.persist(new Thing().setFoo("a"), callback).get();
+        assertEquals(Boolean.TRUE, success.get());
+        assertNull(error.get());
+
+        Future<Object> failed = asyncDatabase.read(new AsyncSquidDatabase.DatabaseTask<Object>() {
+            @Override
+            public Object run(SquidDatabase database) {
+                throw new IllegalStateException("failed");
+            }
+        }, callback);
+        try {
+            failed.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(error.get() instanceof IllegalStateException);
+    }
+
+    public void testThrowingCallbackDoesNotFailCommittedWrite() throws Exception {
+        Future<Boolean> result = asyncDatabase.persist(new Thing().setFoo("committed"),
+                new AsyncSquidDatabase.Callback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean result) {
+                        throw new IllegalStateException("callback failed");
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                    }
+                });
+        assertTrue(result.get());
+        assertEquals(1, database.countAll(Thing.class));
+    }
+
+    public void testWriteInTransactionRollsBackOnError() throws Exception {
+        Future<Void> result = asyncDatabase.writeInTransaction(new AsyncSquidDatabase.DatabaseTask<Void>() {
+            @Override
+            public Void run(SquidDatabase database) {
+                database.persist(new Thing().setFoo("rolled back"));
+                throw new IllegalStateException("rollback");
+            }
+        });
+        try {
+            result.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, database.countAll(Thing.class));
+
+        asyncDatabase.writeInTransaction(new AsyncSquidDatabase.DatabaseTask<Void>() {
+            @Override
+            public Void run(SquidDatabase database) {
+                database.persist(new Thing().setFoo("committed"));
+                return null;
+            }
+        }).get();
+        assertEquals(1, database.countAll(Thing.class));
+    }
+}
@@ -48,18 +48,19 @@ public class DataChangedNotifierTest extends DatabaseTestCase {
 
     public void testFlushAccumulationsClearsSet() {
         TestDataChangedNotifier notifier = new TestDataChangedNotifier();
+        Set<Object> accumulator = new HashSet<>();
 
-        notifier.onDataChanged(null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
+        notifier.onDataChanged(accumulator, null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
         assertFalse(notifier.accumulatorSet.isEmpty());
-        notifier.flushAccumulatedNotifications(database, true);
+        notifier.flushAccumulatedNotifications(accumulator, database, true);
         assertTrue(notifier.accumulateCalled);
         assertTrue(notifier.sendNotificationCalled);
         assertTrue(notifier.accumulatorSet.isEmpty());
         notifier.reset();
 
-        notifier.onDataChanged(null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
+        notifier.onDataChanged(accumulator, null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
         assertFalse(notifier.accumulatorSet.isEmpty());
-        notifier.flushAccumulatedNotifications(database, false);
+        notifier.flushAccumulatedNotifications(accumulator, database, false);
         assertTrue(notifier.accumulateCalled);
         assertFalse(notifier.sendNotificationCalled);
         assertTrue(notifier.accumulatorSet.isEmpty());
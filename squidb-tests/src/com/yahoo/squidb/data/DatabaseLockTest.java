@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.test.SquidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DatabaseLockTest extends SquidTestCase {
+
+    public void testReentrancy() {
+        for (SquidDatabase.LockMode mode : SquidDatabase.LockMode.values()) {
+            DatabaseLock lock = DatabaseLock.create(mode);
+            lock.lockShared();
+            lock.lockShared();
+            assertTrue(lock.holdsOnlySharedLock());
+            lock.unlockShared();
+            lock.unlockShared();
+            assertFalse(lock.holdsOnlySharedLock());
+
+            lock.lockExclusive();
+            lock.lockExclusive();
+            lock.lockShared();
+            assertFalse(lock.holdsOnlySharedLock());
+            lock.unlockShared();
+            lock.unlockExclusive();
+            lock.unlockExclusive();
+            assertTrue(lock.tryLockExclusive());
+            lock.unlockExclusive();
+        }
+    }
+
+    public void testExclusiveLockWaitsForSharedHolders() throws InterruptedException {
+        for (SquidDatabase.LockMode mode : SquidDatabase.LockMode.values()) {
+            final DatabaseLock lock = DatabaseLock.create(mode);
+            final CountDownLatch exclusiveAcquired = new CountDownLatch(1);
+            lock.lockShared();
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    lock.lockExclusive();
+                    exclusiveAcquired.countDown();
+                    lock.unlockExclusive();
+                }
+            };
+            writer.start();
+            assertFalse(exclusiveAcquired.await(100, TimeUnit.MILLISECONDS));
+            lock.unlockShared();
+            assertTrue(exclusiveAcquired.await(5, TimeUnit.SECONDS));
+            writer.join();
+        }
+    }
+
+    public void testMutualExclusionUnderContention() throws InterruptedException {
+        for (SquidDatabase.LockMode mode : SquidDatabase.LockMode.values()) {
+            final DatabaseLock lock = DatabaseLock.create(mode);
+            final AtomicInteger sharedHolders = new AtomicInteger();
+            final AtomicInteger exclusiveHolders = new AtomicInteger();
+            final AtomicBoolean violation = new AtomicBoolean(false);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final boolean isWriter = t == 0;
+                Thread thread = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 2000; i++) {
+                            if (isWriter && i % 20 == 0) {
+                                lock.lockExclusive();
+                                if (exclusiveHolders.incrementAndGet() != 1 || sharedHolders.get() != 0) {
+                                    violation.set(true);
+                                }
+                                exclusiveHolders.decrementAndGet();
+                                lock.unlockExclusive();
+                            } else {
+                                lock.lockShared();
+                                sharedHolders.incrementAndGet();
+                                if (exclusiveHolders.get() != 0) {
+                                    violation.set(true);
+                                }
+                                sharedHolders.decrementAndGet();
+                                lock.unlockShared();
+                            }
+                        }
+                    }
+                };
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertFalse("Lock mode " + mode + " allowed overlapping holders", violation.get());
+        }
+    }
+
+    public void testContentionHintsDontTakeTheLock() throws InterruptedException {
+        for (SquidDatabase.LockMode mode : SquidDatabase.LockMode.values()) {
+            final DatabaseLock lock = DatabaseLock.create(mode);
+            assertFalse(lock.isSharedContended());
+            assertFalse(lock.isExclusiveContended());
+
+            lock.lockShared();
+            // Reentrant acquires never wait
+            assertFalse(lock.isSharedContended());
+            final AtomicBoolean exclusiveContended = new AtomicBoolean(false);
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    exclusiveContended.set(lock.isExclusiveContended());
+                }
+            };
+            other.start();
+            other.join();
+            assertTrue(exclusiveContended.get());
+            lock.unlockShared();
+
+            // Checking for contention must not have left any holds behind
+            assertTrue(lock.tryLockExclusive());
+            lock.unlockExclusive();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.test.DatabaseTestCase;
+import com.yahoo.squidb.test.Thing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupCommitWriterTest extends DatabaseTestCase {
+
+    private GroupCommitWriter writer;
+
+    @Override
+    protected void setupDatabase() {
+        super.setupDatabase();
+        writer = new GroupCommitWriter(database, 50, TimeUnit.MILLISECONDS, 10);
+    }
+
+    @Override
+    protected void tearDownDatabase() {
+        writer.shutdown();
+        try {
+            assertTrue(writer.awaitTermination(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        super.tearDownDatabase();
+    }
+
+    public void testConcurrentWritesShareTransactions() throws Exception {
+        final int threads = 4;
+        final int writesPerThread = 10;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Boolean>> results = new ArrayList<>();
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int threadIndex = t;
+            Thread submitter = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < writesPerThread; i++) {
+                        Future<Boolean> result = writer.persist(
+                                new Thing().setFoo("thing" + threadIndex + "-" + i), null);
+                        synchronized (results) {
+                            results.add(result);
+                        }
+                    }
+                }
+            };
+            submitter.start();
+            submitters.add(submitter);
+        }
+        start.countDown();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(threads * writesPerThread, database.countAll(Thing.class));
+        assertEquals(threads * writesPerThread, writer.getCommittedWriteCount());
+        assertTrue(writer.getCommittedTransactionCount() < threads * writesPerThread);
+    }
+
+    public void testCallbackRunsAfterCommit() throws Exception {
+        final AtomicInteger countAtCallback = new AtomicInteger(-1);
+        writer.persist(new Thing().setFoo("a"), new AsyncSquidDatabase.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean result) {
+                countAtCallback.set(database.countAll(Thing.class));
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                fail("Unexpected error: " + error);
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(1, countAtCallback.get());
+    }
+
+    public void testFailedWriteRollsBackItsBatch() throws Exception {
+        final CountDownLatch blockCommitThread = new CountDownLatch(1);
+        // Hold up the commit thread so the following writes are all queued into the same batch
+        Future<Void> blocker = writer.write(new AsyncSquidDatabase.DatabaseTask<Void>() {
+            @Override
+            public Void run(SquidDatabase database) throws Exception {
+                blockCommitThread.await();
+                return null;
+            }
+        });
+        Future<Boolean> before = writer.persist(new Thing().setFoo("before"), null);
+        Future<Void> failing = writer.write(new AsyncSquidDatabase.DatabaseTask<Void>() {
+            @Override
+            public Void run(SquidDatabase database) {
+                throw new IllegalStateException("failed");
+            }
+        });
+        Future<Boolean> after = writer.persist(new Thing().setFoo("after"), null);
+        blockCommitThread.countDown();
+
+        try {
+            before.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof GroupCommitWriter.BatchRolledBackException);
+            assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+        try {
+            failing.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            blocker.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof GroupCommitWriter.BatchRolledBackException);
+        }
+        assertTrue(after.get(5, TimeUnit.SECONDS));
+        assertEquals(1, database.countAll(Thing.class));
+    }
+
+    public void testShutdownRejectsWrites() {
+        writer.shutdown();
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                writer.persist(new Thing(), null);
+            }
+        }, IllegalStateException.class);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.test.DatabaseTestCase;
+import com.yahoo.squidb.test.Thing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class ModelIteratorTest extends DatabaseTestCase {
+
+    private static final Query ORDERED_THINGS = Query.select(Thing.PROPERTIES).orderBy(Thing.BAR.asc());
+
+    @Override
+    protected void setupDatabase() {
+        super.setupDatabase();
+        for (int i = 0; i < 5; i++) {
+            database.persist(new Thing().setFoo("thing" + i).setBar(i));
+        }
+    }
+
+    public void testStreamReusesModelInstance() {
+        ModelIterator<Thing> iterator = database.stream(Thing.class, ORDERED_THINGS);
+        assertTrue(iterator.isReusingModel());
+        Thing first = null;
+        int count = 0;
+        while (iterator.hasNext()) {
+            Thing thing = iterator.next();
+            if (first == null) {
+                first = thing;
+            }
+            assertSame(first, thing);
+            assertEquals("thing" + count, thing.getFoo());
+            assertEquals(count, thing.getBar().intValue());
+            assertFalse(thing.isModified());
+            count++;
+        }
+        assertEquals(5, count);
+        assertTrue(iterator.getCursor().isClosed());
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testStreamCopyingModels() {
+        ModelIterator<Thing> iterator = database.stream(Thing.class, ORDERED_THINGS).copyingModels();
+        List<Thing> things = new ArrayList<>();
+        while (iterator.hasNext()) {
+            things.add(iterator.next());
+        }
+        assertEquals(5, things.size());
+        for (int i = 0; i < things.size(); i++) {
+            assertEquals("thing" + i, things.get(i).getFoo());
+            for (int j = i + 1; j < things.size(); j++) {
+                assertNotSame(things.get(i), things.get(j));
+            }
+        }
+    }
+
+    public void testCloseStopsIteration() {
+        ModelIterator<Thing> iterator = database.stream(Thing.class, ORDERED_THINGS);
+        assertTrue(iterator.hasNext());
+        assertEquals("thing0", iterator.next().getFoo());
+        iterator.close();
+        assertTrue(iterator.getCursor().isClosed());
+        assertFalse(iterator.hasNext());
+        iterator.close(); // Closing twice is harmless
+    }
+
+    public void testForEachStopsEarly() {
+        final List<String> seen = new ArrayList<>();
+        int visited = database.forEach(Thing.class, ORDERED_THINGS, new ModelVisitor<Thing>() {
+            @Override
+            public boolean visit(Thing model) {
+                seen.add(model.getFoo());
+                return seen.size() < 3;
+            }
+        });
+        assertEquals(3, visited);
+        assertEquals(3, seen.size());
+        assertEquals("thing2", seen.get(2));
+    }
+
+    public void testForEachCopyingModels() {
+        final List<Thing> things = new ArrayList<>();
+        int visited = database.forEach(Thing.class, ORDERED_THINGS, new ModelVisitor<Thing>() {
+            @Override
+            public boolean visit(Thing model) {
+                things.add(model);
+                return true;
+            }
+        }, true);
+        assertEquals(5, visited);
+        assertEquals("thing0", things.get(0).getFoo());
+        assertEquals("thing4", things.get(4).getFoo());
+    }
+}
@@ -5,7 +5,9 @@
  */
 package com.yahoo.squidb.data;
 
+import com.yahoo.squidb.sql.Field;
 import com.yahoo.squidb.sql.Function;
+import com.yahoo.squidb.sql.Property;
 import com.yahoo.squidb.sql.Property.BooleanProperty;
 import com.yahoo.squidb.sql.Property.IntegerProperty;
 import com.yahoo.squidb.sql.Property.StringProperty;
@@ -13,6 +15,9 @@ import com.yahoo.squidb.sql.Query;
 import com.yahoo.squidb.test.DatabaseTestCase;
 import com.yahoo.squidb.test.Thing;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class SquidCursorTest extends DatabaseTestCase {
 
     public void testTypesafeGetter() {
@@ -47,6 +52,129 @@ public class SquidCursorTest extends DatabaseTestCase {
         }
     }
 
+    public void testPrimitiveGetters() {
+        Thing thing = new Thing().setFoo("foo").setBar(7).setBaz(1234567890123L).setQux(2.5).setIsAlive(false);
+        database.persist(thing);
+        database.persist(new Thing().setFoo(null).setBar(8).setBaz(2L).setQux(3.5).setIsAlive(true));
+
+        SquidCursor<Thing> cursor = database.query(Thing.class,
+                Query.select(Thing.ID, Thing.FOO, Thing.BAR, Thing.BAZ, Thing.QUX, Thing.IS_ALIVE)
+                        .orderBy(Thing.ID.asc()));
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(thing.getRowId(), cursor.getLong(Thing.ID));
+            assertEquals("foo", cursor.getString(Thing.FOO));
+            assertEquals(7, cursor.getInt(Thing.BAR));
+            assertEquals(1234567890123L, cursor.getLong(Thing.BAZ));
+            assertEquals(2.5, cursor.getDouble(Thing.QUX));
+            assertFalse(cursor.getBoolean(Thing.IS_ALIVE));
+            assertFalse(cursor.isNull(Thing.FOO));
+
+            assertTrue(cursor.moveToNext());
+            assertTrue(cursor.isNull(Thing.FOO));
+            assertNull(cursor.getString(Thing.FOO));
+            assertEquals(8, cursor.getInt(Thing.BAR));
+            assertTrue(cursor.getBoolean(Thing.IS_ALIVE));
+
+            // Cached column indexes should match the cursor's own lookups
+            int quxIndex = cursor.getColumnIndexOrThrow(Thing.QUX.getName());
+            assertEquals(quxIndex, cursor.getColumnIndexForProperty(Thing.QUX));
+            assertEquals(quxIndex, cursor.getColumnIndexForProperty(Thing.QUX));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testFieldColumnIndexesArePrecomputed() {
+        Thing thing = new Thing().setFoo("foo").setBar(7);
+        database.persist(thing);
+
+        SquidCursor<Thing> cursor = database.query(Thing.class, Query.select(Thing.BAR, Thing.FOO, Thing.ID));
+        try {
+            List<? extends Field<?>> fields = cursor.getFields();
+            for (int i = 0; i < fields.size(); i++) {
+                assertEquals(cursor.getColumnIndexOrThrow(fields.get(i).getName()), cursor.getColumnIndexForField(i));
+            }
+            assertEquals(-1, cursor.getColumnIndexForField(fields.size()));
+
+            assertTrue(cursor.moveToFirst());
+            Thing read = new Thing(cursor);
+            assertEquals(thing.getRowId(), read.getRowId());
+            assertEquals("foo", read.getFoo());
+            assertEquals(7, read.getBar().intValue());
+            assertFalse(read.containsValue(Thing.BAZ));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testCursorWithUnaliasedFunctionField() {
+        database.persist(new Thing().setFoo("foobar"));
+
+        SquidCursor<?> cursor = database.query(null,
+                Query.select(Thing.FOO, Function.substr(Thing.FOO, 4)).from(Thing.TABLE));
+        try {
+            assertEquals(0, cursor.getColumnIndexForField(0));
+            assertEquals(-1, cursor.getColumnIndexForField(1));
+            assertTrue(cursor.moveToFirst());
+            assertEquals("foobar", cursor.get(Thing.FOO));
+            assertEquals("bar", cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testGeneratedReaderMatchesGenericReadPath() {
+        Thing thing = new Thing().setFoo("foo").setBar(7).setBaz(12L).setQux(2.5).setIsAlive(false)
+                .setBlob(new byte[]{1, 2, 3});
+        database.persist(thing);
+
+        SquidCursor<Thing> cursor = database.query(Thing.class, Query.select(Thing.PROPERTIES));
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertTrue(cursor.hasFields(Thing.PROPERTIES));
+
+            Thing generated = new Thing(cursor);
+            Thing generic = new Thing();
+            generic.readPropertiesFromCursor(cursor, Thing.PROPERTIES);
+            for (Property<?> property : Thing.PROPERTIES) {
+                if (property == Thing.BLOB) {
+                    assertTrue(Arrays.equals(generic.getBlob(), generated.getBlob()));
+                } else {
+                    assertEquals(generic.get(property), generated.get(property));
+                }
+            }
+            assertEquals(thing.getRowId(), generated.getRowId());
+        } finally {
+            cursor.close();
+        }
+
+        cursor = database.query(Thing.class, Query.select(Thing.ID, Thing.FOO));
+        try {
+            assertFalse(cursor.hasFields(Thing.PROPERTIES));
+            assertTrue(cursor.moveToFirst());
+            Thing partial = new Thing(cursor);
+            assertEquals("foo", partial.getFoo());
+            assertFalse(partial.containsValue(Thing.BAR));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testColumnIndexForMissingPropertyThrows() {
+        final SquidCursor<Thing> cursor = database.query(Thing.class, Query.select(Thing.ID));
+        try {
+            testThrowsException(new Runnable() {
+                @Override
+                public void run() {
+                    cursor.getColumnIndexForProperty(Thing.FOO);
+                }
+            }, IllegalArgumentException.class);
+        } finally {
+            cursor.close();
+        }
+    }
+
     public void testMultiWindowCursor() {
         // Create a cursor that should contain more than 2MB of data (the default CursorWindow size)
         // to make sure that windowing is working correctly
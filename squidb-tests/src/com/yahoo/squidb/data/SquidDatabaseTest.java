@@ -6,11 +6,13 @@
 package com.yahoo.squidb.data;
 
 import com.yahoo.squidb.sql.Field;
+import com.yahoo.squidb.sql.Property;
 import com.yahoo.squidb.sql.Property.StringProperty;
 import com.yahoo.squidb.sql.Query;
 import com.yahoo.squidb.sql.TableModelName;
 import com.yahoo.squidb.sql.TableStatement;
 import com.yahoo.squidb.test.DatabaseTestCase;
+import com.yahoo.squidb.test.ReadConnectionTestDatabase;
 import com.yahoo.squidb.test.Employee;
 import com.yahoo.squidb.test.SQLiteBindingProvider;
 import com.yahoo.squidb.test.TestDatabase;
@@ -653,6 +655,274 @@ public class SquidDatabaseTest extends DatabaseTestCase {
         assertEquals(1, database.countAll(TestModel.class));
     }
 
+    public void testUpdateAndDeleteByIdWithPreparedStatements() {
+        TestModel model1 = insertBasicTestModel("A", "B", testDate);
+        TestModel model2 = insertBasicTestModel("C", "D", testDate + 1);
+
+        // Same set of columns set in a different order should reuse the same statement
+        model1.setLuckyNumber(7).setFirstName("A2");
+        assertTrue(database.saveExisting(model1));
+        model2.setFirstName("C2").setLuckyNumber(8);
+        assertTrue(database.saveExisting(model2));
+        model1.setIsHappy(false);
+        assertTrue(database.saveExisting(model1));
+
+        TestModel fetched1 = database.fetch(TestModel.class, model1.getRowId(), TestModel.PROPERTIES);
+        assertEquals("A2", fetched1.getFirstName());
+        assertEquals(7, fetched1.getLuckyNumber().intValue());
+        assertFalse(fetched1.isHappy());
+        TestModel fetched2 = database.fetch(TestModel.class, model2.getRowId(), TestModel.PROPERTIES);
+        assertEquals("C2", fetched2.getFirstName());
+        assertEquals(8, fetched2.getLuckyNumber().intValue());
+        assertTrue(fetched2.isHappy());
+
+        // Conflicting update with IGNORE should not modify the row
+        model2.setLastName("B");
+        assertFalse(database.persistWithOnConflict(model2, TableStatement.ConflictAlgorithm.IGNORE));
+        assertEquals("D", database.fetch(TestModel.class, model2.getRowId(), TestModel.PROPERTIES).getLastName());
+
+        assertTrue(database.delete(TestModel.class, model1.getRowId()));
+        assertFalse(database.delete(TestModel.class, model1.getRowId()));
+        assertTrue(database.delete(TestModel.class, model2.getRowId()));
+        assertEquals(0, database.countAll(TestModel.class));
+    }
+
+    public void testStatementCacheReusesCompiledStatements() {
+        database.setStatementCacheSize(TestDatabase.STATEMENT_CACHE_SIZE);
+        try {
+            insertBasicTestModel();
+            Query countQuery = Query.select(Property.IntegerProperty.countProperty()).from(TestModel.TABLE)
+                    .where(TestModel.LUCKY_NUMBER.gt(0)).freeze();
+
+            database.simpleQueryForLong(countQuery); // Make sure the statement is cached
+            StatementCacheStats before = database.getStatementCacheStats();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(1, database.simpleQueryForLong(countQuery));
+            }
+            StatementCacheStats after = database.getStatementCacheStats();
+            assertEquals(before.getHitCount() + 5, after.getHitCount());
+            assertEquals(before.getMissCount(), after.getMissCount());
+            assertEquals(TestDatabase.STATEMENT_CACHE_SIZE, after.getMaxSize());
+            assertTrue(after.getSize() <= after.getMaxSize());
+        } finally {
+            database.setStatementCacheSize(0);
+        }
+    }
+
+    public void testStatementCacheEvictsLeastRecentlyUsed() {
+        database.setStatementCacheSize(TestDatabase.STATEMENT_CACHE_SIZE);
+        try {
+            insertBasicTestModel();
+            StatementCacheStats before = database.getStatementCacheStats();
+            int numDistinctStatements = TestDatabase.STATEMENT_CACHE_SIZE + 5;
+            for (int i = 0; i < numDistinctStatements; i++) {
+                database.simpleQueryForLong("SELECT COUNT(*) + " + i + " FROM " + TestModel.TABLE.getName(), null);
+            }
+            StatementCacheStats after = database.getStatementCacheStats();
+            assertTrue(after.getEvictionCount() - before.getEvictionCount() >= 5);
+            assertEquals(TestDatabase.STATEMENT_CACHE_SIZE, after.getSize());
+
+            // Updates and deletes through the cache should still behave normally
+            assertEquals(1, database.update(TestModel.LUCKY_NUMBER.gt(0), new TestModel().setLuckyNumber(3)));
+            assertEquals(1, database.deleteWhere(TestModel.class, TestModel.LUCKY_NUMBER.eq(3)));
+            assertEquals(0, database.countAll(TestModel.class));
+        } finally {
+            database.setStatementCacheSize(0);
+        }
+    }
+
+    public void testStatementCacheDisabledByDefault() {
+        insertBasicTestModel();
+        StatementCacheStats before = database.getStatementCacheStats();
+        assertEquals(0, before.getMaxSize());
+        assertEquals(1, database.countAll(TestModel.class));
+        assertEquals(1, database.update(TestModel.LUCKY_NUMBER.gt(0), new TestModel().setLuckyNumber(3)));
+        StatementCacheStats after = database.getStatementCacheStats();
+        assertEquals(before.getHitCount(), after.getHitCount());
+        assertEquals(0, after.getSize());
+    }
+
+    public void testPreparedInsertsAreSharedAcrossThreads() throws InterruptedException {
+        // TestDatabase only enables the prepared insert cache in onConfigure, so open the database before warming up
+        database.countAll(Thing.class);
+        database.persist(new Thing().setFoo("warm up"));
+        PreparedInsertCacheStats before = database.getPreparedInsertCacheStats();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(database.persist(new Thing().setFoo("thing" + i)));
+        }
+        PreparedInsertCacheStats afterSingleThread = database.getPreparedInsertCacheStats();
+        assertEquals(before.getReuseCount() + 5, afterSingleThread.getReuseCount());
+        assertEquals(before.getPrepareCount(), afterSingleThread.getPrepareCount());
+
+        int numThreads = 8;
+        final int insertsPerThread = 20;
+        final AtomicReference<Exception> exception = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < insertsPerThread; j++) {
+                            database.persist(new Thing().setFoo("worker").setBar(j));
+                        }
+                    } catch (Exception e) {
+                        exception.set(e);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(exception.get());
+        assertEquals(6 + numThreads * insertsPerThread, database.countAll(Thing.class));
+
+        // Threads check statements out of one pool, so at most one statement per concurrent insert is prepared
+        PreparedInsertCacheStats after = database.getPreparedInsertCacheStats();
+        long prepared = after.getPrepareCount() - afterSingleThread.getPrepareCount();
+        long reused = after.getReuseCount() - afterSingleThread.getReuseCount();
+        assertEquals(numThreads * insertsPerThread, prepared + reused);
+        assertTrue(prepared <= numThreads);
+        assertEquals(0, after.getInUseCount());
+        assertTrue(after.getIdleCount() > 0);
+    }
+
+    public void testMetricsListenerReportsStatementsAndTransactions() {
+        final List<StatementMetrics> statements = new ArrayList<>();
+        database.setMetricsListener(new SquidMetricsListener() {
+            @Override
+            public void onStatementExecuted(SquidDatabase database, StatementMetrics metrics) {
+                statements.add(metrics);
+            }
+
+            @Override
+            public void onTransactionFinished(SquidDatabase database, long durationNanos, boolean successful) {
+            }
+
+            @Override
+            public void onLockContended(SquidDatabase database, boolean exclusive, long waitNanos) {
+            }
+        });
+        try {
+            TestModel model = insertBasicTestModel();
+            model.setLastName("Smith");
+            database.persist(model);
+            database.countAll(TestModel.class);
+            database.query(TestModel.class, Query.select().from(TestModel.TABLE)).close();
+            database.delete(TestModel.class, model.getRowId());
+        } finally {
+            database.setMetricsListener(null);
+        }
+
+        List<StatementMetrics.Type> types = new ArrayList<>();
+        for (StatementMetrics metrics : statements) {
+            types.add(metrics.getType());
+            assertNotNull(metrics.getSql());
+            assertTrue(metrics.getDurationNanos() >= 0);
+        }
+        assertEquals(Arrays.asList(StatementMetrics.Type.INSERT, StatementMetrics.Type.UPDATE,
+                StatementMetrics.Type.SIMPLE_QUERY, StatementMetrics.Type.QUERY, StatementMetrics.Type.DELETE), types);
+        assertEquals(1, statements.get(3).getRowCount());
+        assertEquals(1, statements.get(4).getRowCount());
+
+        HistogramMetricsListener histograms = new HistogramMetricsListener();
+        database.setMetricsListener(histograms);
+        database.beginTransaction();
+        try {
+            database.beginTransaction();
+            database.setTransactionSuccessful();
+            database.endTransaction();
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        database.setMetricsListener(null);
+        // Only the outermost transaction is reported
+        assertEquals(1, histograms.getTransactionHistogram().getCount());
+    }
+
+    public void testHistogramMetricsListenerGroupsByFingerprint() {
+        HistogramMetricsListener listener = new HistogramMetricsListener();
+        database.setMetricsListener(listener);
+        try {
+            for (int i = 0; i < 3; i++) {
+                database.simpleQueryForLong("SELECT COUNT(*) FROM " + TestModel.TABLE.getName()
+                        + " WHERE " + TestModel.LUCKY_NUMBER.getName() + " > " + i, null);
+            }
+        } finally {
+            database.setMetricsListener(null);
+        }
+        String fingerprint = StatementMetrics.fingerprint("SELECT COUNT(*) FROM " + TestModel.TABLE.getName()
+                + " WHERE " + TestModel.LUCKY_NUMBER.getName() + " > 0");
+        LatencyHistogram histogram = listener.getStatementHistogram(fingerprint);
+        assertNotNull(histogram);
+        assertEquals(3, histogram.getCount());
+        assertEquals(fingerprint, listener.getSlowestStatement(0.99));
+
+        listener.reset();
+        assertTrue(listener.getStatementHistograms().isEmpty());
+    }
+
+    public void testGetQueryPlanFlagsScansAndTempBTrees() {
+        QueryPlan scanPlan = database.getQueryPlan(TestModel.class,
+                Query.select().where(TestModel.FIRST_NAME.eq("Sam")).orderBy(TestModel.SOME_DOUBLE.asc()));
+        assertTrue(scanPlan.hasFullTableScan());
+        assertTrue(scanPlan.getScannedTables().contains(TestModel.TABLE.getName()));
+        assertTrue(scanPlan.usesTempBTree());
+
+        QueryPlan indexedPlan = database.getQueryPlan(TestModel.class,
+                Query.select().where(TestModel.LUCKY_NUMBER.eq(7)).orderBy(TestModel.LUCKY_NUMBER.asc()));
+        assertFalse(indexedPlan.getSteps().isEmpty());
+        assertFalse(indexedPlan.hasFullTableScan());
+        assertFalse(indexedPlan.usesTempBTree());
+    }
+
+    public void testSlowQueryListenerCapturesQueryPlan() {
+        insertBasicTestModel();
+        final List<QueryPlan> plans = new ArrayList<>();
+        database.setSlowQueryListener(new SlowQueryListener() {
+            @Override
+            public void onSlowQuery(SquidDatabase database, QueryPlan plan, long durationNanos) {
+                assertTrue(durationNanos >= 0);
+                plans.add(plan);
+            }
+        }, 0);
+        try {
+            SquidCursor<TestModel> cursor = database.query(TestModel.class,
+                    Query.select().where(TestModel.FIRST_NAME.eq("Sam")));
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+            database.count(TestModel.class, TestModel.LUCKY_NUMBER.eq(7));
+        } finally {
+            database.setSlowQueryListener(null, 0);
+        }
+        assertEquals(2, plans.size());
+        assertTrue(plans.get(0).hasFullTableScan());
+        assertTrue(plans.get(0).getSql().contains(TestModel.FIRST_NAME.getName()));
+        assertFalse(plans.get(1).hasFullTableScan());
+
+        // Nothing should be reported once the listener is removed, or for queries under the threshold
+        database.countAll(TestModel.class);
+        database.setSlowQueryListener(new SlowQueryListener() {
+            @Override
+            public void onSlowQuery(SquidDatabase database, QueryPlan plan, long durationNanos) {
+                plans.add(plan);
+            }
+        }, 60000);
+        try {
+            database.countAll(TestModel.class);
+        } finally {
+            database.setSlowQueryListener(null, 0);
+        }
+        assertEquals(2, plans.size());
+    }
+
     public void testDropView() {
         database.tryDropView(TestViewModel.VIEW);
         testThrowsRuntimeException(new Runnable() {
@@ -712,6 +982,78 @@ public class SquidDatabaseTest extends DatabaseTestCase {
         assertEquals(0, database.countAll(TestModel.class));
     }
 
+    public void testPersistAll() {
+        TestModel existing = insertBasicTestModel();
+        existing.setLuckyNumber(42);
+
+        List<TestModel> models = new ArrayList<>();
+        models.add(existing);
+        for (int i = 0; i < 10; i++) {
+            // creationDate is unique with ON CONFLICT REPLACE, so each model needs its own birthday
+            models.add(new TestModel().setFirstName("First" + i).setLastName("Last" + i)
+                    .setBirthday(testDate + i + 1));
+        }
+
+        assertEquals(models.size(), database.persistAll(models));
+        assertEquals(models.size(), database.countAll(TestModel.class));
+        for (TestModel model : models) {
+            assertTrue(model.isSaved());
+            assertFalse(model.isModified());
+        }
+        assertEquals(42, database.fetch(TestModel.class, existing.getRowId()).getLuckyNumber().intValue());
+    }
+
+    public void testInsertAllWithConflictAlgorithm() {
+        insertBasicTestModel("Sam", "Bosley", testDate);
+
+        List<TestModel> models = Arrays.asList(
+                new TestModel().setFirstName("A").setLastName("A").setBirthday(testDate + 1),
+                new TestModel().setFirstName("B").setLastName("Bosley").setBirthday(testDate + 2),
+                new TestModel().setFirstName("C").setLastName("C").setBirthday(testDate + 3));
+
+        assertEquals(2, database.insertAllWithOnConflict(models, TableStatement.ConflictAlgorithm.IGNORE));
+        assertEquals(3, database.countAll(TestModel.class));
+        assertFalse(models.get(1).isSaved());
+    }
+
+    public void testInsertAllRollsBackOnFailure() {
+        insertBasicTestModel("Sam", "Bosley", testDate);
+
+        final List<TestModel> models = Arrays.asList(
+                new TestModel().setFirstName("A").setLastName("A").setBirthday(testDate + 1),
+                new TestModel().setFirstName("B").setLastName("Bosley").setBirthday(testDate + 2));
+
+        testThrowsRuntimeException(new Runnable() {
+            @Override
+            public void run() {
+                database.insertAll(models);
+            }
+        });
+        assertEquals(1, database.countAll(TestModel.class));
+    }
+
+    public void testPersistAllFlushesNotifiersOnce() {
+        final AtomicInteger onDataChangedCalledCount = new AtomicInteger(0);
+        SimpleDataChangedNotifier notifier = new SimpleDataChangedNotifier(TestModel.TABLE) {
+            @Override
+            protected void onDataChanged() {
+                onDataChangedCalledCount.incrementAndGet();
+            }
+        };
+        database.registerDataChangedNotifier(notifier);
+        try {
+            List<TestModel> models = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                models.add(new TestModel().setFirstName("First" + i).setLastName("Last" + i)
+                        .setBirthday(testDate + i));
+            }
+            assertEquals(5, database.insertAll(models));
+            assertEquals(1, onDataChangedCalledCount.get());
+        } finally {
+            database.unregisterDataChangedNotifier(notifier);
+        }
+    }
+
     public void testBlobs() {
         List<byte[]> randomBlobs = new ArrayList<>();
         Random r = new Random();
@@ -799,6 +1141,174 @@ public class SquidDatabaseTest extends DatabaseTestCase {
         assertEquals(2, countAfterCommit.get());
     }
 
+    public void testReadConnectionPool() throws InterruptedException {
+        final ReadConnectionTestDatabase readDatabase = new ReadConnectionTestDatabase();
+        readDatabase.clear();
+        readDatabase.setReadConnectionPoolSize(2);
+        try {
+            readDatabase.persist(newTestModel("Sam", "Bosley", testDate));
+            assertEquals(1, readDatabase.countAll(TestModel.class));
+            assertTrue(readDatabase.getOpenedReadConnectionCount() > 0);
+
+            readDatabase.beginTransactionNonExclusive();
+            try {
+                readDatabase.persist(newTestModel("A", "B", testDate + 1));
+                // Reads inside a transaction must use the primary connection to see uncommitted changes
+                assertEquals(2, readDatabase.countAll(TestModel.class));
+                readDatabase.setTransactionSuccessful();
+            } finally {
+                readDatabase.endTransaction();
+            }
+
+            final AtomicInteger failures = new AtomicInteger();
+            List<Thread> readers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < 50; j++) {
+                            SquidCursor<TestModel> cursor = readDatabase.query(TestModel.class,
+                                    Query.select(TestModel.PROPERTIES));
+                            try {
+                                if (cursor.getCount() != 2 || readDatabase.countAll(TestModel.class) != 2) {
+                                    failures.incrementAndGet();
+                                }
+                            } finally {
+                                cursor.close();
+                            }
+                        }
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertEquals(0, failures.get());
+            int opened = readDatabase.getOpenedReadConnectionCount();
+            assertTrue(opened > 0 && opened <= 2);
+        } finally {
+            readDatabase.setReadConnectionPoolSize(0);
+            readDatabase.clear();
+        }
+    }
+
+    public void testReadTransactionIsConsistent() throws InterruptedException {
+        final ReadConnectionTestDatabase readDatabase = new ReadConnectionTestDatabase();
+        readDatabase.clear();
+        readDatabase.setReadConnectionPoolSize(2);
+        try {
+            readDatabase.persist(newTestModel("Sam", "Bosley", testDate));
+            final Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readDatabase.persist(newTestModel("A", "B", testDate + 1));
+                }
+            });
+            int[] counts = readDatabase.readTransaction(new SquidDatabase.ReadTransactionCallback<int[]>() {
+                @Override
+                public int[] run(SquidDatabase db) {
+                    int before = db.countAll(TestModel.class);
+                    writer.start();
+                    try {
+                        // The read transaction is pinned to a read connection, so the write commits right away
+                        // but isn't visible until the read transaction ends
+                        writer.join(5000);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    assertFalse(writer.isAlive());
+                    return new int[]{before, db.countAll(TestModel.class)};
+                }
+            });
+            writer.join();
+            assertTrue(readDatabase.getOpenedReadConnectionCount() > 0);
+            assertEquals(1, counts[0]);
+            assertEquals(1, counts[1]);
+            assertEquals(2, readDatabase.countAll(TestModel.class));
+        } finally {
+            readDatabase.setReadConnectionPoolSize(0);
+            readDatabase.clear();
+        }
+    }
+
+    // creationDate is unique with ON CONFLICT REPLACE, so models that should coexist need distinct birthdays
+    private TestModel newTestModel(String firstName, String lastName, long birthday) {
+        return new TestModel().setFirstName(firstName).setLastName(lastName).setBirthday(birthday).setIsHappy(true);
+    }
+
+    public void testVirtualThreadsLockMode() throws InterruptedException {
+        final TestDatabase vtDatabase = new TestDatabase(SquidDatabase.LockMode.VIRTUAL_THREADS) {
+            @Override
+            public String getName() {
+                return "testVirtualThreadsDb";
+            }
+        };
+        final AtomicInteger notificationCount = new AtomicInteger();
+        vtDatabase.registerDataChangedNotifier(new SimpleDataChangedNotifier(Thing.TABLE) {
+            @Override
+            protected void onDataChanged() {
+                notificationCount.incrementAndGet();
+            }
+        });
+        try {
+            // Outside of a transaction, notifications are sent immediately
+            vtDatabase.persist(new Thing().setFoo("single"));
+            assertEquals(1, notificationCount.get());
+
+            // A failed nested transaction rolls back the outer one and suppresses its notifications
+            vtDatabase.beginTransaction();
+            try {
+                vtDatabase.persist(new Thing().setFoo("rolled back"));
+                vtDatabase.beginTransaction();
+                vtDatabase.endTransaction();
+                vtDatabase.setTransactionSuccessful();
+            } finally {
+                vtDatabase.endTransaction();
+            }
+            assertEquals(1, vtDatabase.countAll(Thing.class));
+            assertEquals(1, notificationCount.get());
+
+            // Transactions on many threads take turns owning the connection's transaction state
+            final AtomicReference<Exception> exception = new AtomicReference<>();
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Thread worker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 10; j++) {
+                                vtDatabase.beginTransactionNonExclusive();
+                                try {
+                                    for (int k = 0; k < 5; k++) {
+                                        vtDatabase.createNew(new Thing().setFoo("thing").setBar(k));
+                                    }
+                                    vtDatabase.setTransactionSuccessful();
+                                } finally {
+                                    vtDatabase.endTransaction();
+                                }
+                            }
+                        } catch (Exception e) {
+                            exception.set(e);
+                        }
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertNull(exception.get());
+            assertEquals(1 + 8 * 10 * 5, vtDatabase.countAll(Thing.class));
+            assertEquals(1 + 8 * 10, notificationCount.get());
+            assertFalse(vtDatabase.inTransaction());
+        } finally {
+            vtDatabase.clear();
+        }
+    }
+
     public void testConcurrencyStressTest() {
         int numThreads = 20;
         final AtomicReference<Exception> exception = new AtomicReference<>();
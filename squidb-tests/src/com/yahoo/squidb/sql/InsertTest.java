@@ -13,6 +13,9 @@ import com.yahoo.squidb.test.TestModel;
 import com.yahoo.squidb.test.Thing;
 import com.yahoo.squidb.utility.VersionCode;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class InsertTest extends DatabaseTestCase {
 
     Thing thingOne;
@@ -325,4 +328,43 @@ public class InsertTest extends DatabaseTestCase {
             }
         }, IllegalStateException.class);
     }
+
+    public void testGetMaxRowsPerInsert() {
+        assertEquals(1, Insert.getMaxRowsPerInsert(5, VersionCode.V3_7_4));
+        assertEquals(199, Insert.getMaxRowsPerInsert(5, VersionCode.LATEST));
+        assertEquals(Insert.MAX_ROWS_PER_INSERT, Insert.getMaxRowsPerInsert(1, VersionCode.LATEST));
+        assertEquals(1, Insert.getMaxRowsPerInsert(SqlStatement.MAX_VARIABLE_NUMBER, VersionCode.LATEST));
+    }
+
+    public void testInsertBatch() {
+        final int numRows = 1234;
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < numRows; i++) {
+            rows.add(new Object[]{"Batch" + i, i, (long) i * 2, i / 2.0, i % 2 == 0});
+        }
+
+        int numInserted = database.insertBatch(Thing.TABLE,
+                new Property<?>[]{Thing.FOO, Thing.BAR, Thing.BAZ, Thing.QUX, Thing.IS_ALIVE}, rows, null);
+        assertEquals(numRows, numInserted);
+        assertEquals(numRows, database.count(Thing.class, Thing.FOO.like("Batch%")));
+
+        Thing last = database.fetchByCriterion(Thing.class, Thing.FOO.eq("Batch" + (numRows - 1)), Thing.PROPERTIES);
+        assertNotNull(last);
+        assertEquals(numRows - 1, last.getBar().intValue());
+        assertEquals((numRows - 1) * 2L, last.getBaz().longValue());
+        assertFalse(last.isAlive());
+    }
+
+    public void testInsertBatchWithMismatchedRowThrowsIllegalArgumentException() {
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                List<Object[]> rows = new ArrayList<>();
+                rows.add(new Object[]{"Thing3", 3});
+                rows.add(new Object[]{"Thing4"});
+                database.insertBatch(Thing.TABLE, new Property<?>[]{Thing.FOO, Thing.BAR}, rows, null);
+            }
+        }, IllegalArgumentException.class);
+        assertEquals(0, database.count(Thing.class, Thing.FOO.eq("Thing3")));
+    }
 }
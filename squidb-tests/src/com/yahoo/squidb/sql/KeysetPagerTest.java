@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.sql;
+
+import com.yahoo.squidb.data.SquidCursor;
+import com.yahoo.squidb.test.DatabaseTestCase;
+import com.yahoo.squidb.test.Thing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KeysetPagerTest extends DatabaseTestCase {
+
+    private static final Query BY_ID = Query.select(Thing.PROPERTIES).from(Thing.TABLE).orderBy(Thing.ID.asc())
+            .freeze();
+
+    @Override
+    protected void setupDatabase() {
+        super.setupDatabase();
+        // Several rows share each value of BAR, so ID is needed to break ties
+        for (int i = 0; i < 23; i++) {
+            database.persist(new Thing().setFoo("thing" + i).setBar(i % 4));
+        }
+    }
+
+    public void testPagesMatchOffsetPagination() {
+        Query query = Query.select(Thing.PROPERTIES).from(Thing.TABLE).orderBy(Thing.BAR.desc(), Thing.ID.asc());
+        List<Long> expected = readIds(query);
+        assertEquals(23, expected.size());
+
+        KeysetPager pager = new KeysetPager(query, 5);
+        List<Long> paged = new ArrayList<>();
+        int pages = 0;
+        do {
+            SquidCursor<Thing> cursor = database.query(Thing.class, pager.getPageQuery());
+            try {
+                while (cursor.moveToNext()) {
+                    paged.add(cursor.get(Thing.ID));
+                }
+                pager.advance(cursor);
+            } finally {
+                cursor.close();
+            }
+            pages++;
+        } while (pager.hasMorePages());
+
+        assertEquals(5, pages);
+        assertEquals(expected, paged);
+    }
+
+    public void testSeekQueryIsReusedAcrossPages() {
+        KeysetPager pager = new KeysetPager(BY_ID, 3);
+        Query first = pager.getPageQuery();
+        assertTrue(first.isImmutable());
+
+        pager.setLastRow(3L);
+        Query second = pager.getPageQuery();
+        assertNotSame(first, second);
+        assertTrue(second.isImmutable());
+        CompiledStatement compiledSecond = second.compile(database.getCompileContext());
+        assertEquals(3L, ((Number) compiledSecond.sqlArgs[0]).longValue());
+
+        pager.setLastRow(6L);
+        assertSame(second, pager.getPageQuery());
+        CompiledStatement compiledThird = second.compile(database.getCompileContext());
+        assertEquals(compiledSecond.sql, compiledThird.sql);
+        assertEquals(6L, ((Number) compiledThird.sqlArgs[0]).longValue());
+
+        List<Long> ids = readIds(pager.getPageQuery());
+        assertEquals(3, ids.size());
+        assertEquals(Long.valueOf(7), ids.get(0));
+
+        pager.reset();
+        assertSame(first, pager.getPageQuery());
+    }
+
+    public void testSeekQueryHasRangeOnLeadingKey() {
+        KeysetPager pager = new KeysetPager(Query.select(Thing.PROPERTIES).from(Thing.TABLE)
+                .orderBy(Thing.BAR.desc(), Thing.ID.asc()), 5);
+        pager.setLastRow(2, 10L);
+        CompiledStatement compiled = pager.getPageQuery().compile(database.getCompileContext());
+        assertTrue(compiled.sql, compiled.sql.contains(Thing.BAR.getExpression() + "<=?"));
+        assertEquals(2, ((Number) compiled.sqlArgs[0]).intValue());
+
+        List<Long> ids = readIds(pager.getPageQuery());
+        assertEquals(Long.valueOf(11), ids.get(0));
+    }
+
+    public void testExistingOffsetIsCleared() {
+        KeysetPager pager = new KeysetPager(BY_ID.limit(100, 5), 3);
+        List<Long> ids = readIds(pager.getPageQuery());
+        assertEquals(3, ids.size());
+        assertEquals(Long.valueOf(1), ids.get(0));
+
+        pager.setLastRow(3L);
+        ids = readIds(pager.getPageQuery());
+        assertEquals(Long.valueOf(4), ids.get(0));
+    }
+
+    public void testAdvancePastModel() {
+        KeysetPager pager = new KeysetPager(BY_ID, 10);
+        Thing last = database.fetch(Thing.class, 20, Thing.PROPERTIES);
+        pager.advancePast(last);
+        assertEquals(3, readIds(pager.getPageQuery()).size());
+    }
+
+    public void testInvalidQueriesThrow() {
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                new KeysetPager(Query.select(Thing.PROPERTIES), 10);
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                new KeysetPager(Query.select(Thing.PROPERTIES).orderBy(Order.fromExpression("foo")), 10);
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                new KeysetPager(BY_ID, 0);
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                new KeysetPager(BY_ID, 10).setLastRow((Object) null);
+            }
+        }, IllegalArgumentException.class);
+    }
+
+    private List<Long> readIds(Query query) {
+        List<Long> ids = new ArrayList<>();
+        SquidCursor<Thing> cursor = database.query(Thing.class, query);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.get(Thing.ID));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+}
@@ -5,6 +5,7 @@
  */
 package com.yahoo.squidb.sql;
 
+import com.yahoo.squidb.data.ICursor;
 import com.yahoo.squidb.data.SquidCursor;
 import com.yahoo.squidb.sql.Property.IntegerProperty;
 import com.yahoo.squidb.sql.Property.LongProperty;
@@ -15,16 +16,19 @@ import com.yahoo.squidb.test.TestEnum;
 import com.yahoo.squidb.test.TestModel;
 import com.yahoo.squidb.test.TestViewModel;
 import com.yahoo.squidb.test.Thing;
+import com.yahoo.squidb.utility.VersionCode;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -587,6 +591,103 @@ public class QueryTest extends DatabaseTestCase {
         testMaxSqlArgRowIds(query, rowIds.size());
     }
 
+    public void testJsonEachCollectionThreshold() {
+        CompileContext context = new CompileContext.Builder(VersionCode.LATEST)
+                .setJsonEachCollectionThreshold(3).build();
+        List<Object> values = new ArrayList<>();
+        Query query = Query.select(Thing.ID).from(Thing.TABLE).where(Thing.FOO.in(values));
+
+        values.addAll(Arrays.asList("a", "b"));
+        CompiledStatement compiled = query.compile(context);
+        assertTrue(compiled.sql.endsWith("WHERE (things.foo IN (?, ?))"));
+
+        values.addAll(Arrays.asList("c\"d", true, 2.5, null, 7L, TestEnum.APPLE));
+        compiled = query.compile(context);
+        assertTrue(compiled.sql.endsWith("WHERE (things.foo IN (SELECT value FROM json_each(?)))"));
+        assertEquals(1, compiled.sqlArgs.length);
+        assertEquals("[\"a\",\"b\",\"c\\\"d\",1,2.5,null,7,\"APPLE\"]", compiled.sqlArgs[0]);
+
+        // The SQL doesn't change with the size of the collection
+        values.add("e");
+        assertEquals(compiled.sql, query.compile(context).sql);
+    }
+
+    public void testJsonEachCollectionsAvoidInliningLargeCollections() {
+        CompileContext context = new CompileContext.Builder(VersionCode.LATEST)
+                .setJsonEachCollectionThreshold(SqlStatement.MAX_VARIABLE_NUMBER * 2).build();
+        List<Long> small = Arrays.asList(1L, 2L);
+        List<Long> large = new ArrayList<>();
+        for (long i = 0; i < SqlStatement.MAX_VARIABLE_NUMBER; i++) {
+            large.add(i);
+        }
+        // Neither collection reaches the threshold, but together they exceed the variable limit, so both are bound
+        // as JSON arrays rather than inlined
+        CompiledStatement compiled = Query.select(Thing.ID).from(Thing.TABLE)
+                .where(Thing.ID.in(large).and(Thing.BAR.in(small))).compile(context);
+        assertEquals(2, compiled.sqlArgs.length);
+        assertEquals("[1,2]", compiled.sqlArgs[1]);
+        assertFalse(compiled.sql.contains("998"));
+    }
+
+    public void testPaddedCollectionArguments() {
+        CompileContext context = new CompileContext.Builder(database.getSqliteVersion())
+                .setPadCollectionArguments(true).build();
+        List<Integer> values = new ArrayList<>();
+        Query query = Query.select(Thing.ID).from(Thing.TABLE).where(Thing.BAR.notIn(values));
+
+        values.addAll(Arrays.asList(1, 2, 3));
+        CompiledStatement compiled = query.compile(context);
+        assertTrue(compiled.sql.endsWith("NOT IN (?, ?, ?, ?))"));
+        assertEquals(Arrays.<Object>asList(1, 2, 3, 3), Arrays.asList(compiled.sqlArgs));
+
+        // Collections of 5 to 8 values share the same SQL
+        values.addAll(Arrays.asList(4, 5));
+        String fiveValueSql = query.compile(context).sql;
+        values.addAll(Arrays.asList(6, 7, 8));
+        assertEquals(fiveValueSql, query.compile(context).sql);
+        values.add(9);
+        assertFalse(fiveValueSql.equals(query.compile(context).sql));
+
+        // Padding is dropped when it would exceed the variable limit
+        values.clear();
+        for (int i = 0; i < SqlStatement.MAX_VARIABLE_NUMBER - 100; i++) {
+            values.add(i);
+        }
+        assertEquals(values.size(), query.compile(context).sqlArgs.length);
+
+        // Padded queries return the same results as unpadded ones
+        database.persist(new Thing().setBar(1));
+        database.persist(new Thing().setBar(2));
+        database.persist(new Thing().setBar(4));
+        values.clear();
+        values.addAll(Arrays.asList(1, 2, 3));
+        Query inQuery = Query.select(Thing.ID).from(Thing.TABLE).where(Thing.BAR.in(values));
+        for (Query toRun : Arrays.asList(query, inQuery)) {
+            // Compile forks, since a statement caches the context it was first compiled with
+            CompiledStatement padded = toRun.fork().compile(context);
+            CompiledStatement unpadded = toRun.fork().compile(database.getCompileContext());
+            assertEquals(countRows(unpadded), countRows(padded));
+        }
+    }
+
+    private int countRows(CompiledStatement compiled) {
+        ICursor cursor = database.rawQuery(compiled.sql, compiled.sqlArgs);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testJsonEachCollectionThresholdRequiresJson1Version() {
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                new CompileContext.Builder(VersionCode.V3_8_3).setJsonEachCollectionThreshold(10);
+            }
+        }, UnsupportedOperationException.class);
+    }
+
     private void testMaxSqlArgRowIds(Query query, int expectedSize) {
         SquidCursor<TestModel> cursor = database.query(TestModel.class, query);
         try {
@@ -1102,6 +1203,157 @@ public class QueryTest extends DatabaseTestCase {
         }
     }
 
+    public void testQueryParameters() {
+        Query byManager = Query.select(Employee.NAME).from(Employee.TABLE)
+                .where(Employee.MANAGER_ID.eq(Query.param("managerId")).and(Employee.IS_HAPPY.eq(true)))
+                .orderBy(Employee.NAME.asc()).freeze();
+
+        CompiledStatement template = byManager.compile(database.getCompileContext());
+        assertTrue(template.hasParameters());
+        assertEquals(Collections.singletonList("managerId"), template.getParameterNames());
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("managerId", bigBird.getRowId());
+        assertEquals(Arrays.asList("cookieMonster", "elmo"), readNames(byManager, parameters));
+
+        parameters.put("managerId", cookieMonster.getRowId());
+        assertEquals(Collections.singletonList("bert"), readNames(byManager, parameters));
+
+        // The template compiles to the same SQL each time; only the bound values change
+        CompiledStatement bound = template.bindParameters(parameters, database.getCompileContext()
+                .getArgumentResolver());
+        assertEquals(template.sql, bound.sql);
+        assertEquals(cookieMonster.getRowId(), ((Number) bound.sqlArgs[0]).longValue());
+        assertTrue(template.sqlArgs[0] instanceof QueryParameter);
+
+        SquidCursor<Employee> cursor = database.query(Employee.class, byManager, bert.getRowId());
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("ernie", cursor.get(Employee.NAME));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testQueryParameterErrors() {
+        final Query query = Query.select(Employee.NAME).from(Employee.TABLE)
+                .where(Employee.MANAGER_ID.eq(Query.param("managerId")));
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                database.query(Employee.class, query);
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                database.query(Employee.class, query, Collections.singletonMap("managerID", 1L));
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                database.query(Employee.class, query, 1L, 2L);
+            }
+        }, IllegalArgumentException.class);
+
+        assertTrue(query.toRawSql(database.getCompileContext()).contains("=:managerId"));
+    }
+
+    public void testUnboundQueryParametersRejectedEverywhere() {
+        final Criterion byManager = Employee.MANAGER_ID.eq(Query.param("managerId"));
+        int unhappyBefore = database.count(Employee.class, Employee.IS_HAPPY.isFalse());
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                database.count(Employee.class, byManager);
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                database.fetchByQuery(Employee.class, Query.select().where(byManager));
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                database.update(byManager, new Employee().setIsHappy(false));
+            }
+        }, IllegalArgumentException.class);
+
+        testThrowsException(new Runnable() {
+            @Override
+            public void run() {
+                database.simpleQueryForLong(Query.select(Employee.ID).from(Employee.TABLE).where(byManager));
+            }
+        }, IllegalArgumentException.class);
+
+        // Nothing was updated by the rejected statement
+        assertEquals(unhappyBefore, database.count(Employee.class, Employee.IS_HAPPY.isFalse()));
+    }
+
+    private List<String> readNames(Query query, Map<String, ?> parameters) {
+        List<String> names = new ArrayList<>();
+        SquidCursor<Employee> cursor = database.query(Employee.class, query, parameters);
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.get(Employee.NAME));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    public void testFrozenQueryCompilesWithoutLocking() throws InterruptedException {
+        final AtomicBoolean blockedOnce = new AtomicBoolean(false);
+        final Semaphore inCompile = new Semaphore(0);
+        final Semaphore finishCompile = new Semaphore(0);
+        Criterion blockingCriterion = new BinaryCriterion(Thing.BAR, Operator.eq, 0) {
+            @Override
+            protected void populate(SqlBuilder builder, boolean forSqlValidation) {
+                super.populate(builder, forSqlValidation);
+                if (blockedOnce.compareAndSet(false, true)) {
+                    inCompile.release();
+                    finishCompile.acquireUninterruptibly();
+                }
+            }
+        };
+        final Query frozen = Query.select(Thing.ID).from(Thing.TABLE).where(blockingCriterion).freeze();
+
+        Thread blocked = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                frozen.compile(database.getCompileContext());
+            }
+        });
+        blocked.start();
+        assertTrue(inCompile.tryAcquire(5, TimeUnit.SECONDS));
+
+        // The first thread is stuck part way through compiling, but another thread can still compile the same query
+        final AtomicReference<CompiledStatement> result = new AtomicReference<>();
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(frozen.compile(database.getCompileContext()));
+            }
+        });
+        other.start();
+        other.join(5000);
+        finishCompile.release();
+        blocked.join();
+        other.join();
+
+        assertNotNull(result.get());
+        assertEquals(frozen.compile(database.getCompileContext()).sql, result.get().sql);
+    }
+
     public void testNeedsValidationUpdatedBySubqueryTable() {
         Query subquery = Query.select(Thing.PROPERTIES).from(Thing.TABLE).where(Criterion.literal(123));
         subquery.requestValidation();
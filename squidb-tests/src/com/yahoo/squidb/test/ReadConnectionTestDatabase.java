@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.test;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLiteOpenHelper;
+import com.yahoo.squidb.data.ISQLiteReadConnectionOpenHelper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link TestDatabase} whose open helper can open read-only connections, so that SquidDatabase's read connection
+ * pool is exercised with any {@link SQLiteBindingProvider}, not only bindings whose own open helper implements
+ * {@link ISQLiteReadConnectionOpenHelper}. Each read connection is the primary connection of a separate instance
+ * opened on the same database file.
+ */
+public class ReadConnectionTestDatabase extends TestDatabase {
+
+    private final boolean isReadConnection;
+    private final AtomicInteger openedReadConnections = new AtomicInteger();
+
+    public ReadConnectionTestDatabase() {
+        this(false);
+    }
+
+    private ReadConnectionTestDatabase(boolean isReadConnection) {
+        this.isReadConnection = isReadConnection;
+    }
+
+    @Override
+    public String getName() {
+        return "readConnectionTestDb";
+    }
+
+    @Override
+    protected ISQLiteOpenHelper createOpenHelper(String databaseName, OpenHelperDelegate delegate, int version) {
+        ISQLiteOpenHelper helper = super.createOpenHelper(databaseName, delegate, version);
+        return isReadConnection ? helper : new ReadConnectionOpenHelper(helper);
+    }
+
+    /**
+     * @return the number of read-only connections opened for this database's read connection pool
+     */
+    public int getOpenedReadConnectionCount() {
+        return openedReadConnections.get();
+    }
+
+    private class ReadConnectionOpenHelper implements ISQLiteReadConnectionOpenHelper {
+
+        private final ISQLiteOpenHelper helper;
+
+        ReadConnectionOpenHelper(ISQLiteOpenHelper helper) {
+            this.helper = helper;
+        }
+
+        @Override
+        public ISQLiteDatabase openReadOnlyConnection() {
+            ISQLiteDatabase connection = new ReadConnectionTestDatabase(true).getDatabase();
+            connection.execSQL("PRAGMA query_only = 1");
+            openedReadConnections.incrementAndGet();
+            return connection;
+        }
+
+        @Override
+        public ISQLiteDatabase openForWriting() {
+            return helper.openForWriting();
+        }
+
+        @Override
+        public String getDatabasePath() {
+            return helper.getDatabasePath();
+        }
+
+        @Override
+        public boolean deleteDatabase() {
+            return helper.deleteDatabase();
+        }
+
+        @Override
+        public void close() {
+            helper.close();
+        }
+    }
+}
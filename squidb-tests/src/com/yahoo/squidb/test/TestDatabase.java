@@ -16,6 +16,8 @@ import com.yahoo.squidb.sql.View;
 
 public class TestDatabase extends SquidDatabase {
 
+    public static final int STATEMENT_CACHE_SIZE = 10;
+
     public boolean caughtCustomMigrationException;
     public boolean useCustomArgumentBinder;
 
@@ -26,6 +28,10 @@ public class TestDatabase extends SquidDatabase {
         super();
     }
 
+    public TestDatabase(LockMode lockMode) {
+        super(lockMode);
+    }
+
     @Override
     public String getName() {
         return "testDb";
@@ -7,10 +7,17 @@ package com.yahoo.squidb.data;
 
 import com.yahoo.squidb.sql.Field;
 import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Property.BlobProperty;
+import com.yahoo.squidb.sql.Property.BooleanProperty;
+import com.yahoo.squidb.sql.Property.DoubleProperty;
+import com.yahoo.squidb.sql.Property.IntegerProperty;
+import com.yahoo.squidb.sql.Property.LongProperty;
 import com.yahoo.squidb.sql.Property.PropertyVisitor;
 import com.yahoo.squidb.sql.Property.PropertyWritingVisitor;
+import com.yahoo.squidb.sql.Property.StringProperty;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -241,11 +248,84 @@ public abstract class AbstractModel implements Cloneable {
     public void readPropertiesFromCursor(SquidCursor<?> cursor) {
         prepareToReadProperties();
 
-        for (Field<?> field : cursor.getFields()) {
-            readFieldIntoModel(cursor, field);
+        if (readFrom(cursor)) {
+            return;
+        }
+
+        // Column indexes for the cursor's own fields are precomputed, so there's no need to look them up by name
+        List<? extends Field<?>> fields = cursor.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            Field<?> field = fields.get(i);
+            int column = cursor.getColumnIndexForField(i);
+            if (column >= 0 && field instanceof Property<?>) {
+                Property<?> property = (Property<?>) field;
+                saver.save(property, values, cursor.readColumn(property, column));
+            }
+        }
+    }
+
+    /**
+     * Hook for generated models to read every property from the given cursor using straight-line code rather than
+     * the generic per-property visitors. Generated implementations only handle cursors whose fields are exactly the
+     * model's PROPERTIES, in order (see {@link SquidCursor#hasFields(Property[])}), and return false without reading
+     * anything for other cursors. Called by {@link #readPropertiesFromCursor(SquidCursor)} after clearing any
+     * user-set values.
+     *
+     * @return true if the cursor was handled, false if the generic read path should be used instead
+     */
+    protected boolean readFrom(SquidCursor<?> cursor) {
+        return false;
+    }
+
+    // --- helpers for generated readFrom implementations. fieldIndex is the position of the property in the cursor's
+    // fields, which must have been checked with SquidCursor.hasFields
+
+    protected final void readValueFromCursor(SquidCursor<?> cursor, int fieldIndex, LongProperty property) {
+        int column = cursor.getColumnIndexForField(fieldIndex);
+        if (cursor.isNull(column)) {
+            values.putNull(property.getName());
+        } else {
+            values.put(property.getName(), cursor.getLong(column));
+        }
+    }
+
+    protected final void readValueFromCursor(SquidCursor<?> cursor, int fieldIndex, IntegerProperty property) {
+        int column = cursor.getColumnIndexForField(fieldIndex);
+        if (cursor.isNull(column)) {
+            values.putNull(property.getName());
+        } else {
+            values.put(property.getName(), cursor.getInt(column));
+        }
+    }
+
+    protected final void readValueFromCursor(SquidCursor<?> cursor, int fieldIndex, DoubleProperty property) {
+        int column = cursor.getColumnIndexForField(fieldIndex);
+        if (cursor.isNull(column)) {
+            values.putNull(property.getName());
+        } else {
+            values.put(property.getName(), cursor.getDouble(column));
         }
     }
 
+    protected final void readValueFromCursor(SquidCursor<?> cursor, int fieldIndex, BooleanProperty property) {
+        int column = cursor.getColumnIndexForField(fieldIndex);
+        if (cursor.isNull(column)) {
+            values.putNull(property.getName());
+        } else {
+            values.put(property.getName(), cursor.getInt(column) != 0);
+        }
+    }
+
+    protected final void readValueFromCursor(SquidCursor<?> cursor, int fieldIndex, StringProperty property) {
+        int column = cursor.getColumnIndexForField(fieldIndex);
+        values.put(property.getName(), cursor.isNull(column) ? null : cursor.getString(column));
+    }
+
+    protected final void readValueFromCursor(SquidCursor<?> cursor, int fieldIndex, BlobProperty property) {
+        int column = cursor.getColumnIndexForField(fieldIndex);
+        values.put(property.getName(), cursor.isNull(column) ? null : cursor.getBlob(column));
+    }
+
     /**
      * Reads the specified properties from the supplied cursor into the model. This will clear any user-set values.
      */
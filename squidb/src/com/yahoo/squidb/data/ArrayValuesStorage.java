@@ -0,0 +1,593 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Property;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Implementation of {@link ValuesStorage} that stores the values of a fixed set of keys in arrays indexed by ordinal,
+ * rather than in a {@link Map}. Each key in the storage's {@link Schema} is assigned an ordinal; integral and boolean
+ * values are stored unboxed in a long array, floating point values in a double array, and strings and blobs in an
+ * object array. A bitmask tracks which ordinals have a value. Keys that aren't part of the schema are stored in an
+ * overflow map, so this class behaves exactly like {@link MapValuesStorage} for any key. Primitive values are boxed
+ * the first time they are read and the box is kept until the value changes, so repeated reads don't allocate.
+ * <p>
+ * Copying values between two storages that share a schema (as {@link AbstractModel#getMergedValues()} does) is
+ * done ordinal by ordinal without hashing any keys. Models generated with the "arrayValuesStorage" squidbOptions flag
+ * use this class, with one shared Schema built from the model's PROPERTIES array.
+ */
+public class ArrayValuesStorage extends ValuesStorage {
+
+    /**
+     * Maps a fixed set of keys to ordinals. A Schema is immutable and is meant to be shared by all the
+     * ArrayValuesStorage instances for a model class.
+     */
+    public static final class Schema {
+
+        private final String[] keys;
+
+        // Open addressed hash table from key to ordinal. Models always look values up by their properties' names,
+        // which are the same String instances the table was built from, so a lookup is normally a reference
+        // comparison against String's cached hash code, with no boxing or hash map nodes involved.
+        private final String[] tableKeys;
+        private final int[] tableOrdinals;
+        private final int tableMask;
+
+        /**
+         * Create a schema whose ordinals are the positions of the given properties in the array
+         */
+        public Schema(Property<?>... properties) {
+            this.keys = new String[properties.length];
+            int tableSize = Integer.highestOneBit(Math.max(1, properties.length)) << 2;
+            this.tableKeys = new String[tableSize];
+            this.tableOrdinals = new int[tableSize];
+            this.tableMask = tableSize - 1;
+            for (int i = 0; i < properties.length; i++) {
+                String key = properties[i].getName();
+                keys[i] = key;
+                if (ordinalOf(key) < 0) {
+                    int slot = indexFor(key);
+                    while (tableKeys[slot] != null) {
+                        slot = (slot + 1) & tableMask;
+                    }
+                    tableKeys[slot] = key;
+                    tableOrdinals[slot] = i;
+                }
+            }
+        }
+
+        private int indexFor(String key) {
+            int hash = key.hashCode();
+            return (hash ^ (hash >>> 16)) & tableMask;
+        }
+
+        /**
+         * @return the ordinal for the given key, or -1 if the key is not part of this schema
+         */
+        public int ordinalOf(String key) {
+            for (int slot = indexFor(key); ; slot = (slot + 1) & tableMask) {
+                String candidate = tableKeys[slot];
+                if (candidate == key) {
+                    return tableOrdinals[slot];
+                } else if (candidate == null) {
+                    return -1;
+                } else if (candidate.equals(key)) {
+                    return tableOrdinals[slot];
+                }
+            }
+        }
+
+        /**
+         * @return the number of ordinals in this schema
+         */
+        public int size() {
+            return keys.length;
+        }
+    }
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_BYTE = 2;
+    private static final byte TYPE_SHORT = 3;
+    private static final byte TYPE_INTEGER = 4;
+    private static final byte TYPE_LONG = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_DOUBLE = 7;
+    private static final byte TYPE_OBJECT = 8;
+
+    private final Schema schema;
+    private final long[] setBits;
+    private final byte[] types;
+    private final long[] longValues;
+    private final double[] doubleValues;
+    private final Object[] objectValues;
+    private Map<String, Object> overflow = null;
+
+    public ArrayValuesStorage(Schema schema) {
+        if (schema == null) {
+            throw new IllegalArgumentException("Can't create an ArrayValuesStorage with null Schema");
+        }
+        this.schema = schema;
+        int size = schema.size();
+        this.setBits = new long[(size + 63) >>> 6];
+        this.types = new byte[size];
+        this.longValues = new long[size];
+        this.doubleValues = new double[size];
+        this.objectValues = new Object[size];
+    }
+
+    private boolean isSet(int ordinal) {
+        return (setBits[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    private void markSet(int ordinal, byte type) {
+        setBits[ordinal >>> 6] |= 1L << ordinal;
+        types[ordinal] = type;
+    }
+
+    private void putLong(int ordinal, long value, byte type) {
+        longValues[ordinal] = value;
+        objectValues[ordinal] = null;
+        markSet(ordinal, type);
+    }
+
+    private void putDouble(int ordinal, double value, byte type) {
+        doubleValues[ordinal] = value;
+        objectValues[ordinal] = null;
+        markSet(ordinal, type);
+    }
+
+    private void putObject(int ordinal, Object value) {
+        objectValues[ordinal] = value;
+        markSet(ordinal, value == null ? TYPE_NULL : TYPE_OBJECT);
+    }
+
+    private void putOverflow(String key, Object value) {
+        if (overflow == null) {
+            overflow = new HashMap<>();
+        }
+        overflow.put(key, value);
+    }
+
+    // For primitive types, objectValues caches the boxed value once it has been read. Every put clears it.
+    private Object valueAt(int ordinal) {
+        Object value = objectValues[ordinal];
+        if (value == null && types[ordinal] != TYPE_NULL) {
+            value = box(ordinal);
+            objectValues[ordinal] = value;
+        }
+        return value;
+    }
+
+    private Object box(int ordinal) {
+        switch (types[ordinal]) {
+            case TYPE_BOOLEAN:
+                return longValues[ordinal] != 0;
+            case TYPE_BYTE:
+                return (byte) longValues[ordinal];
+            case TYPE_SHORT:
+                return (short) longValues[ordinal];
+            case TYPE_INTEGER:
+                return (int) longValues[ordinal];
+            case TYPE_LONG:
+                return longValues[ordinal];
+            case TYPE_FLOAT:
+                return (float) doubleValues[ordinal];
+            case TYPE_DOUBLE:
+                return doubleValues[ordinal];
+            case TYPE_OBJECT:
+                return objectValues[ordinal];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(String key) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal >= 0) {
+            return isSet(ordinal);
+        }
+        return overflow != null && overflow.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(String key) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal >= 0) {
+            return isSet(ordinal) ? valueAt(ordinal) : null;
+        }
+        return overflow != null ? overflow.get(key) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(String key) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal >= 0) {
+            setBits[ordinal >>> 6] &= ~(1L << ordinal);
+            objectValues[ordinal] = null;
+        } else if (overflow != null) {
+            overflow.remove(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (long word : setBits) {
+            size += Long.bitCount(word);
+        }
+        return overflow != null ? size + overflow.size() : size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putNull(String key) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal >= 0) {
+            putObject(ordinal, null);
+        } else {
+            putOverflow(key, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Boolean value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else if (value == null) {
+            putObject(ordinal, null);
+        } else {
+            putLong(ordinal, value ? 1 : 0, TYPE_BOOLEAN);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Byte value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else if (value == null) {
+            putObject(ordinal, null);
+        } else {
+            putLong(ordinal, value, TYPE_BYTE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Double value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else if (value == null) {
+            putObject(ordinal, null);
+        } else {
+            putDouble(ordinal, value, TYPE_DOUBLE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Float value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else if (value == null) {
+            putObject(ordinal, null);
+        } else {
+            putDouble(ordinal, value, TYPE_FLOAT);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Integer value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else if (value == null) {
+            putObject(ordinal, null);
+        } else {
+            putLong(ordinal, value, TYPE_INTEGER);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Long value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else if (value == null) {
+            putObject(ordinal, null);
+        } else {
+            putLong(ordinal, value, TYPE_LONG);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Short value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else if (value == null) {
+            putObject(ordinal, null);
+        } else {
+            putLong(ordinal, value, TYPE_SHORT);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, String value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else {
+            putObject(ordinal, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, byte[] value) {
+        int ordinal = schema.ordinalOf(key);
+        if (ordinal < 0) {
+            putOverflow(key, value);
+        } else {
+            putObject(ordinal, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAll(ValuesStorage other) {
+        if (other instanceof ArrayValuesStorage && ((ArrayValuesStorage) other).schema == schema) {
+            ArrayValuesStorage source = (ArrayValuesStorage) other;
+            for (int word = 0; word < setBits.length; word++) {
+                long bits = source.setBits[word];
+                while (bits != 0) {
+                    int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    types[ordinal] = source.types[ordinal];
+                    longValues[ordinal] = source.longValues[ordinal];
+                    doubleValues[ordinal] = source.doubleValues[ordinal];
+                    objectValues[ordinal] = source.objectValues[ordinal];
+                    bits &= bits - 1;
+                }
+                setBits[word] |= source.setBits[word];
+            }
+            if (source.overflow != null) {
+                for (Map.Entry<String, Object> entry : source.overflow.entrySet()) {
+                    putOverflow(entry.getKey(), entry.getValue());
+                }
+            }
+        } else {
+            Set<Map.Entry<String, Object>> valuesSet = other.valueSet();
+            for (Map.Entry<String, Object> entry : valuesSet) {
+                put(entry.getKey(), entry.getValue(), false);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned set is a view over this ValuesStorage. Its entries are not writable, but removing through its
+     * iterator removes the value from this ValuesStorage.
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> valueSet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new ValuesIterator<Map.Entry<String, Object>>() {
+                    @Override
+                    Map.Entry<String, Object> valueForOrdinal(int ordinal) {
+                        return new AbstractMap.SimpleImmutableEntry<>(schema.keys[ordinal], valueAt(ordinal));
+                    }
+
+                    @Override
+                    Map.Entry<String, Object> valueForOverflow(Map.Entry<String, Object> entry) {
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ArrayValuesStorage.this.size();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned set is a view over this ValuesStorage. Removing through it removes the value from this
+     * ValuesStorage.
+     */
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new ValuesIterator<String>() {
+                    @Override
+                    String valueForOrdinal(int ordinal) {
+                        return schema.keys[ordinal];
+                    }
+
+                    @Override
+                    String valueForOverflow(Map.Entry<String, Object> entry) {
+                        return entry.getKey();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ArrayValuesStorage.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && containsKey((String) o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!contains(o)) {
+                    return false;
+                }
+                ArrayValuesStorage.this.remove((String) o);
+                return true;
+            }
+        };
+    }
+
+    // Iterates the set ordinals in order, then the overflow entries, without copying them
+    private abstract class ValuesIterator<T> implements Iterator<T> {
+
+        private int nextOrdinal = nextSetOrdinal(0);
+        private int lastOrdinal = -1;
+        private Iterator<Map.Entry<String, Object>> overflowIterator = null;
+        private boolean lastWasOverflow = false;
+
+        abstract T valueForOrdinal(int ordinal);
+
+        abstract T valueForOverflow(Map.Entry<String, Object> entry);
+
+        @Override
+        public boolean hasNext() {
+            if (nextOrdinal >= 0) {
+                return true;
+            }
+            if (overflowIterator == null && overflow != null) {
+                overflowIterator = overflow.entrySet().iterator();
+            }
+            return overflowIterator != null && overflowIterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextOrdinal >= 0) {
+                lastOrdinal = nextOrdinal;
+                lastWasOverflow = false;
+                nextOrdinal = nextSetOrdinal(nextOrdinal + 1);
+                return valueForOrdinal(lastOrdinal);
+            }
+            lastOrdinal = -1;
+            lastWasOverflow = true;
+            return valueForOverflow(overflowIterator.next());
+        }
+
+        @Override
+        public void remove() {
+            if (lastWasOverflow) {
+                overflowIterator.remove();
+                lastWasOverflow = false;
+            } else if (lastOrdinal >= 0) {
+                ArrayValuesStorage.this.remove(schema.keys[lastOrdinal]);
+                lastOrdinal = -1;
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    // Returns the first set ordinal at or after from, or -1 if there are none
+    private int nextSetOrdinal(int from) {
+        int word = from >>> 6;
+        if (word >= setBits.length) {
+            return -1;
+        }
+        long bits = setBits[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == setBits.length) {
+                return -1;
+            }
+            bits = setBits[word];
+        }
+    }
+
+    private Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < types.length; ordinal++) {
+            if (isSet(ordinal)) {
+                result.put(schema.keys[ordinal], valueAt(ordinal));
+            }
+        }
+        if (overflow != null) {
+            result.putAll(overflow);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof ArrayValuesStorage) &&
+                toMap().equals(((ArrayValuesStorage) o).toMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return toMap().hashCode();
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.Beta;
+import com.yahoo.squidb.sql.Criterion;
+import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.utility.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A facade over a {@link SquidDatabase} that runs operations on background threads and returns {@link Future Futures}
+ * for their results. Writes are queued to a single writer thread, so they run one at a time in submission order
+ * without writer threads contending for the database. Reads run on a separate pool of reader threads. With a single
+ * connection SQLite serializes reads and writes anyway, so more than one reader thread only helps when write-ahead
+ * logging is enabled (see {@link ISQLiteDatabase#enableWriteAheadLogging()}).
+ * <p>
+ * Every operation also accepts an optional {@link Callback}, which is invoked on the thread that ran the operation
+ * before the Future completes. Callbacks should return quickly and must not block waiting on other operations
+ * submitted to the same AsyncSquidDatabase. Exceptions thrown by a callback are logged and don't affect the
+ * operation's Future.
+ * <p>
+ * Cursors can't be safely handed between threads, so queries return lists of models rather than
+ * {@link SquidCursor SquidCursors}. For anything not covered by the convenience methods, submit a
+ * {@link DatabaseTask} with {@link #read(DatabaseTask, Callback)} or {@link #write(DatabaseTask, Callback)}.
+ * <p>
+ * Call {@link #shutdown()} when the AsyncSquidDatabase is no longer needed. This does not close the underlying
+ * database. The writer and reader threads are daemon threads, so they don't keep the JVM alive: writes still queued
+ * when the JVM exits are dropped. Call shutdown() and then {@link #awaitTermination(long, TimeUnit)} before exiting
+ * to make sure every submitted write has run.
+ */
+@Beta
+public class AsyncSquidDatabase {
+
+    /**
+     * An operation to run against the database on a background thread
+     *
+     * @param <T> the type of the operation's result
+     */
+    public interface DatabaseTask<T> {
+
+        /**
+         * Run the operation
+         *
+         * @param database the wrapped database
+         * @return the result of the operation
+         */
+        T run(SquidDatabase database) throws Exception;
+    }
+
+    /**
+     * Receives the result of an operation on the thread that ran it
+     *
+     * @param <T> the type of the operation's result
+     */
+    public interface Callback<T> {
+
+        void onSuccess(T result);
+
+        void onError(Throwable error);
+    }
+
+    private final SquidDatabase database;
+    private final ExecutorService writeExecutor;
+    private final ExecutorService readExecutor;
+
+    /**
+     * Create an AsyncSquidDatabase with a single reader thread
+     *
+     * @param database the database to run operations against
+     */
+    public AsyncSquidDatabase(SquidDatabase database) {
+        this(database, 1);
+    }
+
+    /**
+     * @param database the database to run operations against
+     * @param readerThreads the number of threads to run reads on. Values greater than 1 are only useful when
+     * write-ahead logging is enabled.
+     */
+    public AsyncSquidDatabase(SquidDatabase database, int readerThreads) {
+        if (database == null) {
+            throw new IllegalArgumentException("Can't create an AsyncSquidDatabase for a null database");
+        }
+        if (readerThreads < 1) {
+            throw new IllegalArgumentException("AsyncSquidDatabase needs at least one reader thread");
+        }
+        this.database = database;
+        this.writeExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory(database.getName() + "-writer"));
+        this.readExecutor = Executors.newFixedThreadPool(readerThreads,
+                new NamedThreadFactory(database.getName() + "-reader"));
+    }
+
+    /**
+     * @return the wrapped database
+     */
+    public SquidDatabase getDatabase() {
+        return database;
+    }
+
+    // --- generic tasks
+
+    /**
+     * Run a read-only task on a reader thread
+     */
+    public <T> Future<T> read(DatabaseTask<T> task) {
+        return read(task, null);
+    }
+
+    /**
+     * Run a read-only task on a reader thread, passing its result to the given callback
+     */
+    public <T> Future<T> read(DatabaseTask<T> task, Callback<? super T> callback) {
+        return readExecutor.submit(wrap(task, callback));
+    }
+
+    /**
+     * Run a task that may write to the database on the writer thread. Writes run one at a time, in the order they
+     * were submitted. The writer thread is a daemon thread, so writes still queued when the JVM exits are dropped;
+     * see {@link #shutdown()}.
+     */
+    public <T> Future<T> write(DatabaseTask<T> task) {
+        return write(task, null);
+    }
+
+    /**
+     * Run a task that may write to the database on the writer thread, passing its result to the given callback
+     */
+    public <T> Future<T> write(DatabaseTask<T> task, Callback<? super T> callback) {
+        return writeExecutor.submit(wrap(task, callback));
+    }
+
+    /**
+     * Run a task on the writer thread inside a transaction. The transaction is marked successful if the task returns
+     * normally, and rolled back if it throws.
+     */
+    public <T> Future<T> writeInTransaction(DatabaseTask<T> task) {
+        return writeInTransaction(task, null);
+    }
+
+    /**
+     * Run a task on the writer thread inside a transaction, passing its result to the given callback
+     */
+    public <T> Future<T> writeInTransaction(final DatabaseTask<T> task, Callback<? super T> callback) {
+        return write(new DatabaseTask<T>() {
+            @Override
+            public T run(SquidDatabase database) throws Exception {
+                database.beginTransaction();
+                try {
+                    T result = task.run(database);
+                    database.setTransactionSuccessful();
+                    return result;
+                } finally {
+                    database.endTransaction();
+                }
+            }
+        }, callback);
+    }
+
+    private <T> Callable<T> wrap(final DatabaseTask<T> task, final Callback<? super T> callback) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                T result;
+                try {
+                    result = task.run(database);
+                } catch (Exception | Error e) {
+                    if (callback != null) {
+                        try {
+                            callback.onError(e);
+                        } catch (RuntimeException callbackError) {
+                            Logger.e(Logger.LOG_TAG, "AsyncSquidDatabase callback threw an exception", callbackError);
+                        }
+                    }
+                    throw e;
+                }
+                // The operation has already completed, so a failing callback mustn't make it look like it failed
+                if (callback != null) {
+                    try {
+                        callback.onSuccess(result);
+                    } catch (RuntimeException callbackError) {
+                        Logger.e(Logger.LOG_TAG, "AsyncSquidDatabase callback threw an exception", callbackError);
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    // --- reads
+
+    /**
+     * Run the query on a reader thread and read every row into a new model instance
+     *
+     * @see SquidDatabase#query(Class, Query)
+     */
+    public <TYPE extends AbstractModel> Future<List<TYPE>> queryList(final Class<TYPE> modelClass, final Query query,
+            Callback<? super List<TYPE>> callback) {
+        return read(new DatabaseTask<List<TYPE>>() {
+            @Override
+            public List<TYPE> run(SquidDatabase database) {
+                final List<TYPE> result = new ArrayList<>();
+                database.forEach(modelClass, query, new ModelVisitor<TYPE>() {
+                    @Override
+                    public boolean visit(TYPE model) {
+                        result.add(model);
+                        return true;
+                    }
+                }, true);
+                return result;
+            }
+        }, callback);
+    }
+
+    /**
+     * @see SquidDatabase#fetch(Class, long, Property[])
+     */
+    public <TYPE extends TableModel> Future<TYPE> fetch(final Class<TYPE> modelClass, final long id,
+            Callback<? super TYPE> callback, final Property<?>... properties) {
+        return read(new DatabaseTask<TYPE>() {
+            @Override
+            public TYPE run(SquidDatabase database) {
+                return database.fetch(modelClass, id, properties);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see SquidDatabase#fetchByQuery(Class, Query)
+     */
+    public <TYPE extends AbstractModel> Future<TYPE> fetchByQuery(final Class<TYPE> modelClass, final Query query,
+            Callback<? super TYPE> callback) {
+        return read(new DatabaseTask<TYPE>() {
+            @Override
+            public TYPE run(SquidDatabase database) {
+                return database.fetchByQuery(modelClass, query);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see SquidDatabase#count(Class, Criterion)
+     */
+    public Future<Integer> count(final Class<? extends AbstractModel> modelClass, final Criterion criterion,
+            Callback<? super Integer> callback) {
+        return read(new DatabaseTask<Integer>() {
+            @Override
+            public Integer run(SquidDatabase database) {
+                return database.count(modelClass, criterion);
+            }
+        }, callback);
+    }
+
+    // --- writes
+
+    /**
+     * @see SquidDatabase#persist(TableModel)
+     */
+    public Future<Boolean> persist(final TableModel item, Callback<? super Boolean> callback) {
+        return write(new DatabaseTask<Boolean>() {
+            @Override
+            public Boolean run(SquidDatabase database) {
+                return database.persist(item);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see SquidDatabase#persistAll(Collection)
+     */
+    public Future<Integer> persistAll(final Collection<? extends TableModel> items,
+            Callback<? super Integer> callback) {
+        return write(new DatabaseTask<Integer>() {
+            @Override
+            public Integer run(SquidDatabase database) {
+                return database.persistAll(items);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see SquidDatabase#update(Criterion, TableModel)
+     */
+    public Future<Integer> update(final Criterion where, final TableModel template,
+            Callback<? super Integer> callback) {
+        return write(new DatabaseTask<Integer>() {
+            @Override
+            public Integer run(SquidDatabase database) {
+                return database.update(where, template);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see SquidDatabase#delete(Class, long)
+     */
+    public Future<Boolean> delete(final Class<? extends TableModel> modelClass, final long id,
+            Callback<? super Boolean> callback) {
+        return write(new DatabaseTask<Boolean>() {
+            @Override
+            public Boolean run(SquidDatabase database) {
+                return database.delete(modelClass, id);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see SquidDatabase#deleteWhere(Class, Criterion)
+     */
+    public Future<Integer> deleteWhere(final Class<? extends TableModel> modelClass, final Criterion where,
+            Callback<? super Integer> callback) {
+        return write(new DatabaseTask<Integer>() {
+            @Override
+            public Integer run(SquidDatabase database) {
+                return database.deleteWhere(modelClass, where);
+            }
+        }, callback);
+    }
+
+    // --- lifecycle
+
+    /**
+     * Stop accepting new operations. Operations that were already submitted still run, as long as the JVM doesn't
+     * exit first: the worker threads are daemon threads, so follow this with
+     * {@link #awaitTermination(long, TimeUnit)} if queued writes must finish before exiting. Does not close the
+     * wrapped database.
+     */
+    public void shutdown() {
+        writeExecutor.shutdown();
+        readExecutor.shutdown();
+    }
+
+    /**
+     * Block until all submitted operations have finished after a call to {@link #shutdown()}, or until the timeout
+     * elapses
+     *
+     * @return true if all operations finished, false if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return writeExecutor.awaitTermination(timeout, unit) &&
+                readExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = "squidb-" + prefix + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
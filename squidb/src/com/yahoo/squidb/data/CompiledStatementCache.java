@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Size-bounded LRU cache of prepared statements keyed by SQL string, shared by all threads using a SquidDatabase.
+// Prepared statements hold their bindings, so a statement is removed from the cache while a thread is using it and
+// returned afterwards; if two threads need the same SQL at once, the second one prepares its own copy and the
+// duplicate is closed on release. Callers must hold the DB's non-exclusive lock while a statement is checked out.
+// Guarded by a ReentrantLock rather than a monitor so that virtual threads don't pin their carrier while waiting.
+class CompiledStatementCache {
+
+    // Cache of idle statements in LRU order
+    private final LinkedHashMap<String, ISQLitePreparedStatement> idleStatements = new LinkedHashMap<>(0, 0.75f, true);
+
+    // Tracks all open prepared statements across the DB, and the SQL they were compiled from, so that they can be
+    // closed safely when the DB is closed
+    private final Map<ISQLitePreparedStatement, String> dbStatementTracking;
+
+    // Volatile so that isEnabled, which is checked by every cacheable statement, can read it without locking
+    private volatile int maxSize = 0;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // All guarded by lock
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    CompiledStatementCache(Map<ISQLitePreparedStatement, String> dbStatementTracking) {
+        this.dbStatementTracking = dbStatementTracking;
+    }
+
+    boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Statement cache size must be >= 0, was " + maxSize);
+        }
+        lock.lock();
+        try {
+            this.maxSize = maxSize;
+            trimToSize();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ISQLitePreparedStatement acquire(SquidDatabase db, String sql) {
+        lock.lock();
+        try {
+            ISQLitePreparedStatement statement = idleStatements.remove(sql);
+            if (statement != null) {
+                hitCount++;
+                return statement;
+            }
+            missCount++;
+        } finally {
+            lock.unlock();
+        }
+        ISQLitePreparedStatement statement = db.prepareStatement(sql);
+        dbStatementTracking.put(statement, sql);
+        return statement;
+    }
+
+    void release(String sql, ISQLitePreparedStatement statement) {
+        statement.clearBindings();
+        lock.lock();
+        try {
+            if (maxSize > 0 && !idleStatements.containsKey(sql)) {
+                idleStatements.put(sql, statement);
+                trimToSize();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeStatement(statement);
+    }
+
+    // Must be called while holding lock
+    private void trimToSize() {
+        Iterator<Map.Entry<String, ISQLitePreparedStatement>> iterator = idleStatements.entrySet().iterator();
+        while (idleStatements.size() > maxSize && iterator.hasNext()) {
+            ISQLitePreparedStatement eldest = iterator.next().getValue();
+            iterator.remove();
+            closeStatement(eldest);
+            evictionCount++;
+        }
+    }
+
+    private void closeStatement(ISQLitePreparedStatement statement) {
+        if (dbStatementTracking.remove(statement) != null) {
+            statement.close();
+        }
+    }
+
+    /**
+     * Close all idle statements. Hit/miss/eviction counts are preserved.
+     */
+    void clear() {
+        lock.lock();
+        try {
+            for (ISQLitePreparedStatement statement : idleStatements.values()) {
+                closeStatement(statement);
+            }
+            idleStatements.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    StatementCacheStats getStats() {
+        lock.lock();
+        try {
+            return new StatementCacheStats(hitCount, missCount, evictionCount, idleStatements.size(), maxSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
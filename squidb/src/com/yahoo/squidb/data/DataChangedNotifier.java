@@ -55,14 +55,6 @@ public abstract class DataChangedNotifier<T> {
     private final Set<SqlTable<?>> tables = new HashSet<>();
     private boolean enabled = true;
 
-    // Using a ThreadLocal makes it easy to have one accumulator set per transaction, since
-    // transactions are also associated with the thread they run on
-    private ThreadLocal<Set<T>> notifyObjectAccumulator = new ThreadLocal<Set<T>>() {
-        protected Set<T> initialValue() {
-            return new HashSet<>();
-        }
-    };
-
     /**
      * Construct a DataChangedNotifier that will be notified of changes to all tables
      */
@@ -100,11 +92,12 @@ public abstract class DataChangedNotifier<T> {
         this.enabled = enabled;
     }
 
-    // Called by SquidDatabase for each data change
-    final boolean onDataChanged(SqlTable<?> table, SquidDatabase database, DBOperation operation,
-            AbstractModel modelValues, long rowId) {
-        return enabled && accumulateNotificationObjects(notifyObjectAccumulator.get(), table, database, operation,
-                modelValues, rowId);
+    // Called by SquidDatabase for each data change. The database keeps one accumulator set per notifier for each
+    // transaction, and passes the same set back to flushAccumulatedNotifications when the transaction ends.
+    final boolean onDataChanged(Set<Object> accumulator, SqlTable<?> table, SquidDatabase database,
+            DBOperation operation, AbstractModel modelValues, long rowId) {
+        return enabled && accumulateNotificationObjects(DataChangedNotifier.<T>typed(accumulator), table, database,
+                operation, modelValues, rowId);
     }
 
     /**
@@ -129,14 +122,21 @@ public abstract class DataChangedNotifier<T> {
 
     // Called by SquidDatabase when a transaction or statement has finished and any accumulated notifications should be
     // flushed/sent
-    final void flushAccumulatedNotifications(SquidDatabase database, boolean shouldSendNotifications) {
-        Set<T> accumulatedNotifications = notifyObjectAccumulator.get();
+    final void flushAccumulatedNotifications(Set<Object> accumulator, SquidDatabase database,
+            boolean shouldSendNotifications) {
+        Set<T> accumulatedNotifications = typed(accumulator);
         if (enabled && shouldSendNotifications) {
             sendNotificationsToAll(database, accumulatedNotifications);
         }
         accumulatedNotifications.clear();
     }
 
+    // The accumulator set only ever holds objects added by accumulateNotificationObjects
+    @SuppressWarnings("unchecked")
+    private static <T> Set<T> typed(Set<Object> accumulator) {
+        return (Set<T>) (Set<?>) accumulator;
+    }
+
     /**
      * The default implementation of this method iterates over the notifyObjects set and calls
      * {@link #sendNotification(SquidDatabase, Object)} for each of them. Subclasses may override if they want to
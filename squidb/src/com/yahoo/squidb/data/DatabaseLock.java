@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// The lock backing SquidDatabase's exclusive and non-exclusive locks. Both modes are reentrant, and a thread holding
+// the exclusive lock may also acquire the non-exclusive lock; acquiring the exclusive lock while holding only the
+// non-exclusive lock is an error, which SquidDatabase checks with holdsOnlySharedLock().
+abstract class DatabaseLock {
+
+    static DatabaseLock create(SquidDatabase.LockMode mode) {
+        switch (mode) {
+            case STRIPED:
+                return new StripedDatabaseLock();
+            case VIRTUAL_THREADS:
+                return new StripedDatabaseLock(true);
+            case READ_WRITE:
+            default:
+                return new ReadWriteDatabaseLock();
+        }
+    }
+
+    abstract void lockShared();
+
+    abstract boolean tryLockShared();
+
+    abstract void unlockShared();
+
+    abstract void lockExclusive();
+
+    abstract boolean tryLockExclusive();
+
+    abstract void unlockExclusive();
+
+    abstract boolean holdsOnlySharedLock();
+
+    // Racy hints for whether acquiring the lock from the current thread would have to wait, used to report lock
+    // contention. Unlike a tryLock, these never take the lock, so they can't barge ahead of queued threads.
+    abstract boolean isSharedContended();
+
+    abstract boolean isExclusiveContended();
+
+    private static class ReadWriteDatabaseLock extends DatabaseLock {
+
+        private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+        @Override
+        void lockShared() {
+            readWriteLock.readLock().lock();
+        }
+
+        @Override
+        boolean tryLockShared() {
+            return readWriteLock.readLock().tryLock();
+        }
+
+        @Override
+        void unlockShared() {
+            readWriteLock.readLock().unlock();
+        }
+
+        @Override
+        void lockExclusive() {
+            readWriteLock.writeLock().lock();
+        }
+
+        @Override
+        boolean tryLockExclusive() {
+            return readWriteLock.writeLock().tryLock();
+        }
+
+        @Override
+        void unlockExclusive() {
+            readWriteLock.writeLock().unlock();
+        }
+
+        @Override
+        boolean holdsOnlySharedLock() {
+            return readWriteLock.getReadHoldCount() > 0 && readWriteLock.getWriteHoldCount() == 0;
+        }
+
+        @Override
+        boolean isSharedContended() {
+            if (readWriteLock.getReadHoldCount() > 0 || readWriteLock.isWriteLockedByCurrentThread()) {
+                return false;
+            }
+            return readWriteLock.isWriteLocked() || readWriteLock.hasQueuedThreads();
+        }
+
+        @Override
+        boolean isExclusiveContended() {
+            if (readWriteLock.isWriteLockedByCurrentThread()) {
+                return false;
+            }
+            return readWriteLock.isWriteLocked() || readWriteLock.getReadLockCount() > 0
+                    || readWriteLock.hasQueuedThreads();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.Beta;
+import com.yahoo.squidb.data.AsyncSquidDatabase.Callback;
+import com.yahoo.squidb.data.AsyncSquidDatabase.DatabaseTask;
+import com.yahoo.squidb.utility.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues writes from any number of threads and commits them together in shared transactions ("group commit"). When
+ * every small write runs in its own transaction, write throughput is capped by the cost of each commit; a
+ * GroupCommitWriter instead runs all the writes queued within a bounded window in a single transaction begun with
+ * {@link SquidDatabase#beginTransactionNonExclusive()}, so the commit cost is shared across the batch.
+ * <p>
+ * A batch starts with the oldest queued write and collects further writes until it holds
+ * {@code maxBatchSize} writes or the first write has waited {@code maxDelay}, whichever comes first. Writes run
+ * in submission order on a single commit thread. A write's Future and {@link Callback} are only completed after the
+ * transaction it ran in has been committed, so a successful result means the write is durable.
+ * <p>
+ * If a write throws, the batch's transaction is rolled back. The failing write completes with its exception, and
+ * the writes that ran before it in the same batch complete with a {@link BatchRolledBackException}; they are not
+ * retried automatically, because they may already have changed the state of the models they wrote. Writes queued
+ * after the failing write have not run yet and are committed in a new transaction.
+ * <p>
+ * Call {@link #shutdown()} when the writer is no longer needed. This does not close the underlying database.
+ */
+@Beta
+public class GroupCommitWriter {
+
+    /**
+     * Thrown from a write that ran successfully but was rolled back because a later write in the same batch failed.
+     * The cause is the exception thrown by the failing write.
+     */
+    public static class BatchRolledBackException extends RuntimeException {
+
+        private static final long serialVersionUID = -3619847382047195526L;
+
+        public BatchRolledBackException(Throwable cause) {
+            super("Write was rolled back because another write in its batch failed", cause);
+        }
+    }
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private static final PendingWrite<Void> SHUTDOWN_MARKER = new PendingWrite<>(null, null);
+
+    private final SquidDatabase database;
+    private final long maxDelayNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final Object submitLock = new Object();
+    private final Thread commitThread;
+
+    private final AtomicLong committedTransactions = new AtomicLong();
+    private final AtomicLong committedWrites = new AtomicLong();
+
+    private boolean isShutdown = false; // guarded by submitLock
+
+    /**
+     * Create a GroupCommitWriter with a batch size of {@link #DEFAULT_MAX_BATCH_SIZE}
+     *
+     * @param database the database to write to
+     * @param maxDelay the longest a write waits for other writes to join its batch
+     * @param unit the unit of maxDelay
+     */
+    public GroupCommitWriter(SquidDatabase database, long maxDelay, TimeUnit unit) {
+        this(database, maxDelay, unit, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param database the database to write to
+     * @param maxDelay the longest a write waits for other writes to join its batch. With a delay of 0, each batch
+     * holds only the writes already queued when it starts.
+     * @param unit the unit of maxDelay
+     * @param maxBatchSize the maximum number of writes to commit in one transaction
+     */
+    public GroupCommitWriter(SquidDatabase database, long maxDelay, TimeUnit unit, int maxBatchSize) {
+        if (database == null) {
+            throw new IllegalArgumentException("Can't create a GroupCommitWriter for a null database");
+        }
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("Max delay can't be negative, was " + maxDelay);
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be positive, was " + maxBatchSize);
+        }
+        this.database = database;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.maxBatchSize = maxBatchSize;
+        this.commitThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "squidb-" + database.getName() + "-group-commit");
+        this.commitThread.setDaemon(true);
+        this.commitThread.start();
+    }
+
+    /**
+     * Queue a task to run in the next group transaction
+     */
+    public <T> Future<T> write(DatabaseTask<T> task) {
+        return write(task, null);
+    }
+
+    /**
+     * Queue a task to run in the next group transaction, passing its result to the given callback once the
+     * transaction has committed
+     */
+    public <T> Future<T> write(DatabaseTask<T> task, Callback<? super T> callback) {
+        if (task == null) {
+            throw new IllegalArgumentException("Can't queue a null task");
+        }
+        PendingWrite<T> write = new PendingWrite<>(task, callback);
+        synchronized (submitLock) {
+            if (isShutdown) {
+                throw new IllegalStateException("GroupCommitWriter has been shut down");
+            }
+            queue.add(write);
+        }
+        return write;
+    }
+
+    /**
+     * Queue a model to be persisted in the next group transaction
+     *
+     * @see SquidDatabase#persist(TableModel)
+     */
+    public Future<Boolean> persist(final TableModel item, Callback<? super Boolean> callback) {
+        return write(new DatabaseTask<Boolean>() {
+            @Override
+            public Boolean run(SquidDatabase database) {
+                return database.persist(item);
+            }
+        }, callback);
+    }
+
+    /**
+     * @return the number of group transactions committed so far
+     */
+    public long getCommittedTransactionCount() {
+        return committedTransactions.get();
+    }
+
+    /**
+     * @return the number of writes committed so far. Dividing by {@link #getCommittedTransactionCount()} gives the
+     * average batch size.
+     */
+    public long getCommittedWriteCount() {
+        return committedWrites.get();
+    }
+
+    /**
+     * Stop accepting new writes. Writes that were already queued are still committed. Does not close the wrapped
+     * database.
+     */
+    public void shutdown() {
+        synchronized (submitLock) {
+            if (!isShutdown) {
+                isShutdown = true;
+                queue.add(SHUTDOWN_MARKER);
+            }
+        }
+    }
+
+    /**
+     * Block until all queued writes have been committed after a call to {@link #shutdown()}, or until the timeout
+     * elapses
+     *
+     * @return true if all writes finished, false if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        commitThread.join(Math.max(1, unit.toMillis(timeout)));
+        return !commitThread.isAlive();
+    }
+
+    private void commitLoop() {
+        List<PendingWrite<?>> batch = new ArrayList<>(maxBatchSize);
+        boolean running = true;
+        boolean interrupted = false;
+        while (running) {
+            try {
+                running = collectBatch(batch);
+            } catch (InterruptedException e) {
+                // Commit whatever has been collected; shutdown() is the only way to stop the loop. The interrupt
+                // status is restored once the loop exits, so it doesn't cut short the waits for later batches.
+                interrupted = true;
+            }
+            if (!batch.isEmpty()) {
+                commitBatch(batch);
+                batch.clear();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns false if the shutdown marker was reached
+    private boolean collectBatch(List<PendingWrite<?>> batch) throws InterruptedException {
+        PendingWrite<?> first = queue.take();
+        if (first == SHUTDOWN_MARKER) {
+            return false;
+        }
+        batch.add(first);
+        long deadline = first.submitNanos + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingWrite<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            } else if (next == SHUTDOWN_MARKER) {
+                return false;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+
+    private void commitBatch(List<PendingWrite<?>> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            int end = start;
+            int writesRun = 0;
+            Throwable writeFailure = null;
+            try {
+                database.beginTransactionNonExclusive();
+                try {
+                    for (; end < batch.size(); end++) {
+                        PendingWrite<?> write = batch.get(end);
+                        if (write.isCancelled()) {
+                            continue;
+                        }
+                        try {
+                            writesRun++;
+                            write.run(database);
+                        } catch (Throwable t) {
+                            writeFailure = t;
+                            break;
+                        }
+                    }
+                    if (writeFailure == null) {
+                        database.setTransactionSuccessful();
+                    }
+                } finally {
+                    database.endTransaction();
+                }
+            } catch (RuntimeException e) {
+                // Beginning or committing the transaction failed, so nothing in it was written. The database is
+                // unlikely to accept the rest of the batch either.
+                for (int i = start; i < batch.size(); i++) {
+                    batch.get(i).fail(e);
+                }
+                return;
+            }
+
+            if (writeFailure == null) {
+                committedTransactions.incrementAndGet();
+                committedWrites.addAndGet(writesRun);
+                for (int i = start; i < end; i++) {
+                    batch.get(i).succeed();
+                }
+            } else {
+                BatchRolledBackException rolledBack = new BatchRolledBackException(writeFailure);
+                for (int i = start; i < end; i++) {
+                    batch.get(i).fail(rolledBack);
+                }
+                batch.get(end).fail(writeFailure);
+                end++;
+            }
+            start = end;
+        }
+    }
+
+    private static final class PendingWrite<T> extends FutureTask<T> {
+
+        private final DatabaseTask<T> task;
+        private final Callback<? super T> callback;
+        private final long submitNanos = System.nanoTime();
+        private T result;
+
+        PendingWrite(DatabaseTask<T> task, Callback<? super T> callback) {
+            super(NO_OP, null);
+            this.task = task;
+            this.callback = callback;
+        }
+
+        void run(SquidDatabase database) throws Exception {
+            result = task.run(database);
+        }
+
+        void succeed() {
+            if (isCancelled()) {
+                return;
+            }
+            if (callback != null) {
+                try {
+                    callback.onSuccess(result);
+                } catch (RuntimeException e) {
+                    Logger.e(Logger.LOG_TAG, "Group commit callback threw an exception", e);
+                }
+            }
+            set(result);
+        }
+
+        void fail(Throwable error) {
+            if (isCancelled()) {
+                return;
+            }
+            if (callback != null) {
+                try {
+                    callback.onError(error);
+                } catch (RuntimeException e) {
+                    Logger.e(Logger.LOG_TAG, "Group commit callback threw an exception", e);
+                }
+            }
+            setException(error);
+        }
+    }
+}
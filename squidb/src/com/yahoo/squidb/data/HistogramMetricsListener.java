@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link SquidMetricsListener} that records statement latencies in a {@link LatencyHistogram} per statement
+ * fingerprint (see {@link StatementMetrics#getFingerprint()}), plus histograms for transaction durations and lock
+ * wait times. To bound memory use, statements are grouped under {@link #OTHER_STATEMENTS} once the maximum number of
+ * distinct fingerprints has been reached.
+ */
+public class HistogramMetricsListener implements SquidMetricsListener {
+
+    /**
+     * Key under which statements are recorded once the maximum number of distinct fingerprints has been reached
+     */
+    public static final String OTHER_STATEMENTS = "<other>";
+
+    private static final int DEFAULT_MAX_FINGERPRINTS = 500;
+
+    private final int maxFingerprints;
+    private final ConcurrentHashMap<String, LatencyHistogram> statementHistograms = new ConcurrentHashMap<>();
+    private final LatencyHistogram transactionHistogram = new LatencyHistogram();
+    private final LatencyHistogram lockWaitHistogram = new LatencyHistogram();
+
+    public HistogramMetricsListener() {
+        this(DEFAULT_MAX_FINGERPRINTS);
+    }
+
+    public HistogramMetricsListener(int maxFingerprints) {
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    @Override
+    public void onStatementExecuted(SquidDatabase database, StatementMetrics metrics) {
+        getOrCreateHistogram(metrics.getFingerprint()).record(metrics.getDurationNanos());
+    }
+
+    private LatencyHistogram getOrCreateHistogram(String fingerprint) {
+        LatencyHistogram histogram = statementHistograms.get(fingerprint);
+        if (histogram == null) {
+            if (statementHistograms.size() >= maxFingerprints) {
+                fingerprint = OTHER_STATEMENTS;
+            }
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = statementHistograms.putIfAbsent(fingerprint, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    @Override
+    public void onTransactionFinished(SquidDatabase database, long durationNanos, boolean successful) {
+        transactionHistogram.record(durationNanos);
+    }
+
+    @Override
+    public void onLockContended(SquidDatabase database, boolean exclusive, long waitNanos) {
+        lockWaitHistogram.record(waitNanos);
+    }
+
+    /**
+     * @return a read-only view of the latency histograms for each statement fingerprint
+     */
+    public Map<String, LatencyHistogram> getStatementHistograms() {
+        return Collections.unmodifiableMap(statementHistograms);
+    }
+
+    /**
+     * @return the latency histogram for statements with the given fingerprint, or null if none have been recorded
+     */
+    public LatencyHistogram getStatementHistogram(String fingerprint) {
+        return statementHistograms.get(fingerprint);
+    }
+
+    /**
+     * @return the histogram of outermost transaction durations
+     */
+    public LatencyHistogram getTransactionHistogram() {
+        return transactionHistogram;
+    }
+
+    /**
+     * @return the histogram of time spent waiting for contended database locks
+     */
+    public LatencyHistogram getLockWaitHistogram() {
+        return lockWaitHistogram;
+    }
+
+    /**
+     * @return the fingerprint of the statement with the highest estimated latency at the given percentile, or null
+     * if no statements have been recorded
+     */
+    public String getSlowestStatement(double percentile) {
+        String slowest = null;
+        long slowestNanos = -1;
+        for (Map.Entry<String, LatencyHistogram> entry : statementHistograms.entrySet()) {
+            long nanos = entry.getValue().getPercentileNanos(percentile);
+            if (nanos > slowestNanos) {
+                slowestNanos = nanos;
+                slowest = entry.getKey();
+            }
+        }
+        return slowest;
+    }
+
+    /**
+     * Discard all recorded statistics
+     */
+    public void reset() {
+        statementHistograms.clear();
+        transactionHistogram.reset();
+        lockWaitHistogram.reset();
+    }
+}
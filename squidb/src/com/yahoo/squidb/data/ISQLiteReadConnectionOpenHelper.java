@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+/**
+ * Optional extension of {@link ISQLiteOpenHelper} for platforms that can open additional read-only connections to
+ * the same database file. SquidDatabase uses these connections to serve queries concurrently when a read connection
+ * pool is enabled; see {@link SquidDatabase#setReadConnectionPoolSize(int)}.
+ */
+public interface ISQLiteReadConnectionOpenHelper extends ISQLiteOpenHelper {
+
+    /**
+     * Open a new read-only connection to the database. This is only called after the database has been opened with
+     * {@link #openForWriting()}, so the schema is already up to date; the returned connection should not run any of
+     * the open helper lifecycle hooks. {@link SquidDatabase#readTransaction SquidDatabase.readTransaction} begins and
+     * ends read transactions on the connection by passing "BEGIN DEFERRED" and "COMMIT" to
+     * {@link ISQLiteDatabase#execSQL(String)}, so the connection must allow raw transaction statements. The caller is
+     * responsible for closing the connection.
+     * <p>
+     * A connection is returned to the pool, and may be used by another thread, as soon as
+     * {@link ISQLiteDatabase#rawQuery(String, Object[])} returns, while the caller may still be reading the cursor.
+     * Cursors returned by these connections must therefore have read all of their rows by the time rawQuery returns
+     * and must not read from the connection afterwards.
+     *
+     * @return a new read-only connection, or null if this database can't be read from more than one connection
+     * (e.g. because it is an in-memory database)
+     */
+    ISQLiteDatabase openReadOnlyConnection();
+
+}
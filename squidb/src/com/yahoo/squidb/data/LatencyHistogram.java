@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of durations in nanoseconds. Values are counted in buckets whose bounds are powers of two,
+ * so percentiles are approximate (accurate to within a factor of two) but recording is cheap and lock-free.
+ */
+public class LatencyHistogram {
+
+    private static final int NUM_BUCKETS = 64;
+
+    // Bucket i counts values in [2^i, 2^(i+1)); bucket 0 also counts 0
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record a duration. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketFor(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long currentMax;
+        while (nanos > (currentMax = maxNanos.get())) {
+            if (maxNanos.compareAndSet(currentMax, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private static int bucketFor(long nanos) {
+        return nanos == 0 ? 0 : NUM_BUCKETS - 1 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of all recorded values
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * @return the mean of all recorded values, or 0 if none have been recorded
+     */
+    public long getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Estimate a percentile of the recorded values. The result is the upper bound of the bucket containing the
+     * requested percentile, capped at the maximum recorded value.
+     *
+     * @param percentile a value between 0 and 100, e.g. 99 for the 99th percentile
+     * @return the estimated percentile, or 0 if no values have been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, was " + percentile);
+        }
+        long total = 0;
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100.0);
+        long cumulative = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= threshold && cumulative > 0) {
+                long upperBound = i >= NUM_BUCKETS - 2 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upperBound, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMeanNanos() + "ns p50=" + getPercentileNanos(50) + "ns p99="
+                + getPercentileNanos(99) + "ns max=" + getMaxNanos() + "ns";
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link Iterator} over the rows of a {@link SquidCursor} that reads each row into a model. Obtain one from
+ * {@link SquidDatabase#stream(Class, com.yahoo.squidb.sql.Query)}.
+ * <p>
+ * By default, the iterator reuses a single model instance for every row: each call to {@link #next()} clears the
+ * model's user-set values and reads the next row into it, so walking a very large result set doesn't allocate a new
+ * model per row. Callers that need to hold on to models after advancing the iterator should either
+ * {@link AbstractModel#clone() clone} them or use {@link #copyingModels()} to have a new instance read for each row.
+ * <p>
+ * The underlying cursor is closed automatically once the last row has been read. To stop iterating early, call
+ * {@link #close()}:
+ *
+ * <pre>
+ * ModelIterator&lt;Model&gt; iterator = database.stream(Model.class, query);
+ * try {
+ *     while (iterator.hasNext()) {
+ *         Model model = iterator.next();
+ *         if (done(model)) {
+ *             break;
+ *         }
+ *     }
+ * } finally {
+ *     iterator.close();
+ * }
+ * </pre>
+ *
+ * @param <TYPE> the model type read from each row
+ */
+public class ModelIterator<TYPE extends AbstractModel> implements Iterator<TYPE>, Closeable {
+
+    private final SquidCursor<TYPE> cursor;
+    private final Class<TYPE> modelClass;
+    private boolean reuseModel = true;
+    private TYPE model = null;
+
+    /** True if the cursor has already been advanced to the row the next call to {@link #next()} should return */
+    private boolean advanced = false;
+    private boolean hasRow = false;
+
+    /**
+     * @param cursor the cursor to iterate over. The iterator takes ownership of the cursor and closes it when
+     * iteration finishes or when {@link #close()} is called.
+     * @param modelClass the model class to read each row into. Must have a public no-argument constructor.
+     */
+    public ModelIterator(SquidCursor<TYPE> cursor, Class<TYPE> modelClass) {
+        if (cursor == null) {
+            throw new IllegalArgumentException("Can't iterate over a null cursor");
+        }
+        if (modelClass == null) {
+            throw new IllegalArgumentException("Can't iterate without a model class");
+        }
+        this.cursor = cursor;
+        this.modelClass = modelClass;
+    }
+
+    /**
+     * Read each row into a new model instance rather than reusing a single one. Must be called before iteration
+     * begins.
+     *
+     * @return this iterator, for chaining
+     */
+    public ModelIterator<TYPE> copyingModels() {
+        if (advanced || cursor.getPosition() >= 0) {
+            throw new IllegalStateException("copyingModels() must be called before iteration begins");
+        }
+        reuseModel = false;
+        return this;
+    }
+
+    /**
+     * @return true if each call to {@link #next()} returns the same model instance
+     */
+    public boolean isReusingModel() {
+        return reuseModel;
+    }
+
+    /**
+     * @return the cursor this iterator reads from
+     */
+    public SquidCursor<TYPE> getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!advanced) {
+            hasRow = !cursor.isClosed() && cursor.moveToNext();
+            advanced = true;
+            if (!hasRow) {
+                close();
+            }
+        }
+        return hasRow;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Unless {@link #copyingModels()} was called, the returned model is overwritten by the next call to this method.
+     */
+    @Override
+    public TYPE next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        advanced = false;
+        TYPE result = (reuseModel && model != null) ? model : newModel();
+        if (reuseModel) {
+            model = result;
+        }
+        result.readPropertiesFromCursor(cursor);
+        return result;
+    }
+
+    private TYPE newModel() {
+        try {
+            return modelClass.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Not supported
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("ModelIterator does not support remove()");
+    }
+
+    /**
+     * Stop iterating and close the underlying cursor. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        advanced = true;
+        hasRow = false;
+        if (!cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+/**
+ * Callback for {@link SquidDatabase#forEach(Class, com.yahoo.squidb.sql.Query, ModelVisitor)}, invoked once for
+ * each row read from the query.
+ *
+ * @param <TYPE> the model type read from each row
+ */
+public interface ModelVisitor<TYPE extends AbstractModel> {
+
+    /**
+     * Called with the model read from the current row. Unless the iteration was started with copying enabled, the
+     * same model instance is passed for every row, so implementations should not hold on to it after returning.
+     *
+     * @param model the model read from the current row
+     * @return true to continue to the next row, false to stop iterating
+     */
+    boolean visit(TYPE model);
+}
@@ -10,47 +10,119 @@ import com.yahoo.squidb.sql.Insert;
 import com.yahoo.squidb.sql.Table;
 import com.yahoo.squidb.sql.TableStatement;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
-// This class is not threadsafe. We currently keep a threadlocal instance of it in SquidDatabase that is invalidated
-// when the DB is closed.
+// Pool of prepared insert statements belonging to the DB connection and shared by all threads. A thread checks a
+// statement out with acquire() for the duration of a single insert and hands it back with release(), so the number
+// of statements prepared for each table and conflict algorithm follows the number of inserts in flight at the same
+// time rather than the number of threads that have ever inserted. Idle statements beyond maxIdlePerStatement are
+// closed when they are released. This class is threadsafe; statements are prepared outside of its lock. All
+// statements are registered in the DB's statement tracking map, so they are closed along with it when the DB closes.
 class PreparedInsertCache {
 
-    // Cache of prepared insert statements keyed by table model class
-    private final Map<Class<? extends TableModel>, ISQLitePreparedStatement[]>
-            preparedStatementCache = new HashMap<>();
+    static final int DEFAULT_MAX_IDLE_PER_STATEMENT = 4;
 
-    // Tracks all open prepared statements across the DB so that they can be closed safely when the DB is closed
-    private final Set<ISQLitePreparedStatement> dbStatementTracking;
+    private static class IdleStatements {
 
-    PreparedInsertCache(Set<ISQLitePreparedStatement> dbStatementTracking) {
-        this.dbStatementTracking = dbStatementTracking;
+        final ArrayDeque<ISQLitePreparedStatement> statements = new ArrayDeque<>();
     }
 
-    ISQLitePreparedStatement getPreparedInsert(SquidDatabase db, Table table,
-            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+    // Idle prepared insert statements keyed by table model class, then indexed by conflict algorithm ordinal
+    private final Map<Class<? extends TableModel>, IdleStatements[]> idleStatements = new HashMap<>();
 
-        Class<? extends TableModel> modelClass = table.getModelClass();
-        ISQLitePreparedStatement[] preparedStatements = preparedStatementCache.get(modelClass);
+    // Tracks all open prepared statements across the DB, and the SQL they were compiled from, so that they can be
+    // closed safely when the DB is closed
+    private final Map<ISQLitePreparedStatement, String> dbStatementTracking;
+
+    private final int maxIdlePerStatement;
+    private final ReentrantLock lock = new ReentrantLock();
 
-        if (preparedStatements == null) {
-            preparedStatements = new ISQLitePreparedStatement[TableStatement.ConflictAlgorithm.values().length];
-            preparedStatementCache.put(modelClass, preparedStatements);
+    // All guarded by lock
+    private int idleCount = 0;
+    private int inUseCount = 0;
+    private long reuseCount = 0;
+    private long prepareCount = 0;
+    private long discardCount = 0;
+
+    PreparedInsertCache(Map<ISQLitePreparedStatement, String> dbStatementTracking) {
+        this(dbStatementTracking, DEFAULT_MAX_IDLE_PER_STATEMENT);
+    }
+
+    PreparedInsertCache(Map<ISQLitePreparedStatement, String> dbStatementTracking, int maxIdlePerStatement) {
+        this.dbStatementTracking = dbStatementTracking;
+        this.maxIdlePerStatement = maxIdlePerStatement;
+    }
+
+    ISQLitePreparedStatement acquire(SquidDatabase db, Table table,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        if (conflictAlgorithm == null) {
+            conflictAlgorithm = TableStatement.ConflictAlgorithm.NONE;
+        }
+        lock.lock();
+        try {
+            ISQLitePreparedStatement idle = getIdleStatements(table, conflictAlgorithm).statements.poll();
+            inUseCount++;
+            if (idle != null) {
+                idleCount--;
+                reuseCount++;
+                return idle;
+            }
+            prepareCount++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return prepareInsert(db, table, conflictAlgorithm);
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                inUseCount--;
+            } finally {
+                lock.unlock();
+            }
+            throw e;
         }
+    }
 
+    void release(Table table, TableStatement.ConflictAlgorithm conflictAlgorithm,
+            ISQLitePreparedStatement statement) {
         if (conflictAlgorithm == null) {
             conflictAlgorithm = TableStatement.ConflictAlgorithm.NONE;
         }
+        lock.lock();
+        try {
+            inUseCount--;
+            IdleStatements idle = getIdleStatements(table, conflictAlgorithm);
+            if (idle.statements.size() < maxIdlePerStatement && dbStatementTracking.containsKey(statement)) {
+                idle.statements.push(statement);
+                idleCount++;
+                return;
+            }
+            discardCount++;
+        } finally {
+            lock.unlock();
+        }
+        closeStatement(statement);
+    }
 
-        ISQLitePreparedStatement toReturn = preparedStatements[conflictAlgorithm.ordinal()];
-        if (toReturn == null) {
-            toReturn = prepareInsert(db, table, conflictAlgorithm);
-            preparedStatements[conflictAlgorithm.ordinal()] = toReturn;
+    // Must be called while holding lock, with a non-null conflict algorithm
+    private IdleStatements getIdleStatements(Table table, TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        Class<? extends TableModel> modelClass = table.getModelClass();
+        IdleStatements[] statementsForTable = idleStatements.get(modelClass);
+        if (statementsForTable == null) {
+            statementsForTable = new IdleStatements[TableStatement.ConflictAlgorithm.values().length];
+            idleStatements.put(modelClass, statementsForTable);
         }
-        return toReturn;
+        IdleStatements result = statementsForTable[conflictAlgorithm.ordinal()];
+        if (result == null) {
+            result = new IdleStatements();
+            statementsForTable[conflictAlgorithm.ordinal()] = result;
+        }
+        return result;
     }
 
     private ISQLitePreparedStatement prepareInsert(SquidDatabase db, Table table,
@@ -63,7 +135,44 @@ class PreparedInsertCache {
         CompiledStatement compiled = insert.compile(db.getCompileContext());
 
         ISQLitePreparedStatement statement = db.prepareStatement(compiled.sql);
-        dbStatementTracking.add(statement);
+        dbStatementTracking.put(statement, compiled.sql);
         return statement;
     }
+
+    private void closeStatement(ISQLitePreparedStatement statement) {
+        if (dbStatementTracking.remove(statement) != null) {
+            statement.close();
+        }
+    }
+
+    /**
+     * Close all idle statements and stop tracking them. Reuse and prepare counts are preserved.
+     */
+    void close() {
+        lock.lock();
+        try {
+            for (IdleStatements[] statementsForTable : idleStatements.values()) {
+                for (IdleStatements idle : statementsForTable) {
+                    if (idle != null) {
+                        for (ISQLitePreparedStatement statement : idle.statements) {
+                            closeStatement(statement);
+                        }
+                    }
+                }
+            }
+            idleStatements.clear();
+            idleCount = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    PreparedInsertCacheStats getStats() {
+        lock.lock();
+        try {
+            return new PreparedInsertCacheStats(reuseCount, prepareCount, discardCount, idleCount, inUseCount);
+        } finally {
+            lock.unlock();
+        }
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+/**
+ * An immutable snapshot of the counters for a SquidDatabase's shared prepared insert statements
+ *
+ * @see SquidDatabase#getPreparedInsertCacheStats()
+ */
+public final class PreparedInsertCacheStats {
+
+    private final long reuseCount;
+    private final long prepareCount;
+    private final long discardCount;
+    private final int idleCount;
+    private final int inUseCount;
+
+    PreparedInsertCacheStats(long reuseCount, long prepareCount, long discardCount, int idleCount, int inUseCount) {
+        this.reuseCount = reuseCount;
+        this.prepareCount = prepareCount;
+        this.discardCount = discardCount;
+        this.idleCount = idleCount;
+        this.inUseCount = inUseCount;
+    }
+
+    /**
+     * @return the number of inserts that reused an already prepared statement
+     */
+    public long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return the number of insert statements prepared because no idle statement for the same table and conflict
+     * algorithm was available
+     */
+    public long getPrepareCount() {
+        return prepareCount;
+    }
+
+    /**
+     * @return the number of statements closed when they were released because enough idle statements for the same
+     * table and conflict algorithm were already kept
+     */
+    public long getDiscardCount() {
+        return discardCount;
+    }
+
+    /**
+     * @return the number of prepared statements currently idle and available for reuse
+     */
+    public int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * @return the number of prepared statements currently checked out by running inserts
+     */
+    public int getInUseCount() {
+        return inUseCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedInsertCacheStats[reuses=" + reuseCount + ", prepares=" + prepareCount + ", discards="
+                + discardCount + ", idle=" + idleCount + ", inUse=" + inUseCount + "]";
+    }
+}
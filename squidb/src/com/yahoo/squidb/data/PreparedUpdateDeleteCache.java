@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.CompiledStatement;
+import com.yahoo.squidb.sql.Delete;
+import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Table;
+import com.yahoo.squidb.sql.TableStatement;
+import com.yahoo.squidb.sql.Update;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// This class is not threadsafe. We currently keep a threadlocal instance of it in SquidDatabase that is invalidated
+// when the DB is closed. Like PreparedInsertCache, all statements are registered in the DB's statement tracking set.
+class PreparedUpdateDeleteCache {
+
+    // Each distinct set of updated columns needs its own statement, so bound the number kept open per thread
+    private static final int MAX_UPDATE_STATEMENTS = 32;
+
+    // Cache of prepared "DELETE ... WHERE rowid = ?" statements keyed by table model class
+    private final Map<Class<? extends TableModel>, ISQLitePreparedStatement> preparedDeleteCache = new HashMap<>();
+
+    // Cache of prepared "UPDATE ... SET col = ?, ... WHERE rowid = ?" statements
+    private final Map<UpdateKey, ISQLitePreparedStatement> preparedUpdateCache =
+            new LinkedHashMap<UpdateKey, ISQLitePreparedStatement>(0, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UpdateKey, ISQLitePreparedStatement> eldest) {
+                    if (size() > MAX_UPDATE_STATEMENTS) {
+                        closeStatement(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    // Column name to property lookup for each table, used to build update statements
+    private final Map<Class<? extends TableModel>, Map<String, Property<?>>> columnsByTable = new HashMap<>();
+
+    // Tracks all open prepared statements across the DB, and the SQL they were compiled from, so that they can be
+    // closed safely when the DB is closed
+    private final Map<ISQLitePreparedStatement, String> dbStatementTracking;
+
+    PreparedUpdateDeleteCache(Map<ISQLitePreparedStatement, String> dbStatementTracking) {
+        this.dbStatementTracking = dbStatementTracking;
+    }
+
+    /**
+     * Returns a statement that deletes a single row by id. The only argument is the row id.
+     */
+    ISQLitePreparedStatement getPreparedDeleteById(SquidDatabase db, Table table) {
+        Class<? extends TableModel> modelClass = table.getModelClass();
+        ISQLitePreparedStatement statement = preparedDeleteCache.get(modelClass);
+        if (statement == null) {
+            Delete delete = Delete.from(table).where(table.getRowIdProperty().eq(new Object()));
+            statement = prepare(db, delete.compile(db.getCompileContext()));
+            preparedDeleteCache.put(modelClass, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Returns a statement that updates the given columns of a single row by id. Arguments are the new values for each
+     * column in the order given, followed by the row id. Returns null if any of the columns is not a property of the
+     * table, in which case the caller should fall back to compiling an {@link Update} directly.
+     */
+    ISQLitePreparedStatement getPreparedUpdateById(SquidDatabase db, Table table, List<String> columns,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        if (conflictAlgorithm == null) {
+            conflictAlgorithm = TableStatement.ConflictAlgorithm.NONE;
+        }
+        UpdateKey key = new UpdateKey(table.getModelClass(), conflictAlgorithm, columns);
+        ISQLitePreparedStatement statement = preparedUpdateCache.get(key);
+        if (statement == null) {
+            Map<String, Property<?>> tableColumns = getColumns(table);
+            Update update = Update.table(table).onConflict(conflictAlgorithm);
+            for (String column : columns) {
+                Property<?> property = tableColumns.get(column);
+                if (property == null) {
+                    return null;
+                }
+                update.set(property, new Object());
+            }
+            update.where(table.getRowIdProperty().eq(new Object()));
+            statement = prepare(db, update.compile(db.getCompileContext()));
+            preparedUpdateCache.put(key, statement);
+        }
+        return statement;
+    }
+
+    private Map<String, Property<?>> getColumns(Table table) {
+        Class<? extends TableModel> modelClass = table.getModelClass();
+        Map<String, Property<?>> columns = columnsByTable.get(modelClass);
+        if (columns == null) {
+            columns = new HashMap<>();
+            for (Property<?> property : table.getProperties()) {
+                columns.put(property.getName(), property);
+            }
+            columnsByTable.put(modelClass, columns);
+        }
+        return columns;
+    }
+
+    private ISQLitePreparedStatement prepare(SquidDatabase db, CompiledStatement compiled) {
+        ISQLitePreparedStatement statement = db.prepareStatement(compiled.sql);
+        dbStatementTracking.put(statement, compiled.sql);
+        return statement;
+    }
+
+    private void closeStatement(ISQLitePreparedStatement statement) {
+        if (dbStatementTracking.remove(statement) != null) {
+            statement.close();
+        }
+    }
+
+    private static class UpdateKey {
+
+        private final Class<? extends TableModel> modelClass;
+        private final TableStatement.ConflictAlgorithm conflictAlgorithm;
+        private final List<String> columns;
+
+        UpdateKey(Class<? extends TableModel> modelClass, TableStatement.ConflictAlgorithm conflictAlgorithm,
+                List<String> columns) {
+            this.modelClass = modelClass;
+            this.conflictAlgorithm = conflictAlgorithm;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UpdateKey)) {
+                return false;
+            }
+            UpdateKey other = (UpdateKey) o;
+            return modelClass.equals(other.modelClass) && conflictAlgorithm == other.conflictAlgorithm
+                    && columns.equals(other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = modelClass.hashCode();
+            result = 31 * result + conflictAlgorithm.hashCode();
+            result = 31 * result + columns.hashCode();
+            return result;
+        }
+    }
+}
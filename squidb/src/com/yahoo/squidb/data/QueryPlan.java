@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed representation of the output of EXPLAIN QUERY PLAN for a single statement. The interesting parts of the
+ * plan for tuning purposes are full table scans, which often indicate a missing
+ * {@link com.yahoo.squidb.sql.Index Index}, and temporary B-trees, which SQLite builds when it has to sort or
+ * de-duplicate rows (e.g. for an ORDER BY or GROUP BY) that no index could provide in order.
+ * <p>
+ * Note that the format of EXPLAIN QUERY PLAN output is not guaranteed to be stable across SQLite versions. This class
+ * understands both the older "SCAN TABLE x" and the newer "SCAN x" forms.
+ *
+ * @see SquidDatabase#getQueryPlan(Class, com.yahoo.squidb.sql.Query)
+ * @see SlowQueryListener
+ */
+public final class QueryPlan {
+
+    // Group 1 is the scanned table name. Older SQLite versions say "SCAN TABLE x", newer ones just "SCAN x"
+    private static final Pattern SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\S+)");
+    private static final String TEMP_B_TREE = "USE TEMP B-TREE";
+
+    /**
+     * A single row of EXPLAIN QUERY PLAN output
+     */
+    public static final class Step {
+
+        private final int id;
+        private final int parentId;
+        private final String detail;
+        private final String scannedTable;
+
+        Step(int id, int parentId, String detail) {
+            this.id = id;
+            this.parentId = parentId;
+            this.detail = detail;
+            this.scannedTable = parseScannedTable(detail);
+        }
+
+        /**
+         * @return the id of this step, or -1 if the SQLite version does not report one
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return the id of the parent of this step, or -1 if the SQLite version does not report one
+         */
+        public int getParentId() {
+            return parentId;
+        }
+
+        /**
+         * @return the human-readable description of this step, e.g. "SEARCH TABLE things USING INDEX..."
+         */
+        public String getDetail() {
+            return detail;
+        }
+
+        /**
+         * @return true if this step visits every row of a table or index rather than searching it
+         */
+        public boolean isFullTableScan() {
+            return scannedTable != null;
+        }
+
+        /**
+         * @return the name of the table scanned by this step, or null if this step is not a full table scan
+         */
+        public String getScannedTable() {
+            return scannedTable;
+        }
+
+        /**
+         * @return true if this step builds a temporary B-tree to sort or de-duplicate rows
+         */
+        public boolean usesTempBTree() {
+            return detail != null && detail.contains(TEMP_B_TREE);
+        }
+
+        @Override
+        public String toString() {
+            return detail;
+        }
+
+        private static String parseScannedTable(String detail) {
+            if (detail == null) {
+                return null;
+            }
+            Matcher matcher = SCAN.matcher(detail);
+            if (!matcher.find()) {
+                return null;
+            }
+            String table = matcher.group(1);
+            // "SCAN SUBQUERY 1" and "SCAN CONSTANT ROW" don't touch a real table
+            if ("SUBQUERY".equals(table) || "CONSTANT".equals(table)) {
+                return null;
+            }
+            return table;
+        }
+    }
+
+    private final String sql;
+    private final List<Step> steps;
+
+    QueryPlan(String sql, List<Step> steps) {
+        this.sql = sql;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    /**
+     * Read a QueryPlan from a cursor over the results of EXPLAIN QUERY PLAN. The cursor is not closed.
+     */
+    static QueryPlan fromCursor(String sql, ICursor cursor) {
+        int detailIndex = cursor.getColumnIndex("detail");
+        if (detailIndex < 0) {
+            detailIndex = cursor.getColumnCount() - 1;
+        }
+        // Newer versions of SQLite report "id" and "parent"; older ones report "selectid" and "order"
+        int idIndex = cursor.getColumnIndex("id");
+        int parentIndex = cursor.getColumnIndex("parent");
+
+        List<Step> steps = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            int id = idIndex >= 0 ? cursor.getInt(idIndex) : -1;
+            int parentId = parentIndex >= 0 ? cursor.getInt(parentIndex) : -1;
+            steps.add(new Step(id, parentId, cursor.getString(detailIndex)));
+        }
+        return new QueryPlan(sql, steps);
+    }
+
+    /**
+     * @return the SQL of the statement this plan is for
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the steps of the plan, in the order SQLite reported them
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return true if any step of the plan is a full table scan
+     */
+    public boolean hasFullTableScan() {
+        for (Step step : steps) {
+            if (step.isFullTableScan()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the names of all tables that are fully scanned by this plan
+     */
+    public Set<String> getScannedTables() {
+        Set<String> result = new LinkedHashSet<>();
+        for (Step step : steps) {
+            if (step.isFullTableScan()) {
+                result.add(step.getScannedTable());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if any step of the plan builds a temporary B-tree
+     */
+    public boolean usesTempBTree() {
+        for (Step step : steps) {
+            if (step.usesTempBTree()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Query plan for: ").append(sql);
+        for (Step step : steps) {
+            builder.append("\n  ").append(step.getDetail());
+        }
+        return builder.toString();
+    }
+}
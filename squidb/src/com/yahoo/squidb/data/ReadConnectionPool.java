@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded pool of read-only connections opened through an ISQLiteReadConnectionOpenHelper. Connections are opened
+// lazily, up to a fixed maximum; when all are in use, callers block until one is released. If the open helper can't
+// open read-only connections for this database, or the pool has been closed, acquire returns null and callers fall
+// back to the primary connection. Callers must hold the DB's non-exclusive lock while a connection is checked out.
+// Opening a connection is slow, so the pool's state is guarded by a ReentrantLock rather than a monitor, which
+// would pin the carrier thread of a virtual thread waiting on it.
+class ReadConnectionPool {
+
+    private final ISQLiteOpenHelper helper;
+    private final int maxConnections;
+    private final BlockingQueue<ISQLiteDatabase> idleConnections;
+    private final ReentrantLock poolLock = new ReentrantLock();
+    private int openedConnections = 0; // guarded by poolLock
+    private boolean closed = false; // guarded by poolLock
+    private volatile boolean available;
+
+    ReadConnectionPool(ISQLiteOpenHelper helper, int maxConnections) {
+        this.helper = helper;
+        this.available = helper instanceof ISQLiteReadConnectionOpenHelper;
+        this.maxConnections = maxConnections;
+        this.idleConnections = new ArrayBlockingQueue<>(maxConnections);
+    }
+
+    boolean isAvailable() {
+        return available;
+    }
+
+    // Returns null if the pool is unavailable or closed
+    ISQLiteDatabase acquire() {
+        ISQLiteDatabase connection = idleConnections.poll();
+        if (connection != null) {
+            return connection;
+        }
+        poolLock.lock();
+        try {
+            if (closed || !available) {
+                return null;
+            }
+            if (openedConnections < maxConnections) {
+                connection = ((ISQLiteReadConnectionOpenHelper) helper).openReadOnlyConnection();
+                if (connection == null) {
+                    available = false;
+                } else {
+                    openedConnections++;
+                }
+                return connection;
+            }
+        } finally {
+            poolLock.unlock();
+        }
+        try {
+            return idleConnections.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a read connection", e);
+        }
+    }
+
+    void release(ISQLiteDatabase connection) {
+        poolLock.lock();
+        try {
+            if (closed) {
+                connection.close();
+                return;
+            }
+        } finally {
+            poolLock.unlock();
+        }
+        idleConnections.offer(connection);
+    }
+
+    int getOpenedConnectionCount() {
+        poolLock.lock();
+        try {
+            return openedConnections;
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    void close() {
+        poolLock.lock();
+        try {
+            closed = true;
+            ISQLiteDatabase connection;
+            while ((connection = idleConnections.poll()) != null) {
+                connection.close();
+            }
+        } finally {
+            poolLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+/**
+ * Listener notified when a query takes longer than a configured threshold to run. Install one with
+ * {@link SquidDatabase#setSlowQueryListener(SlowQueryListener, long)}.
+ * <p>
+ * The callback is invoked synchronously on the thread that ran the query, while it holds the database's non-exclusive
+ * lock. Implementations should return quickly and must not access the database.
+ */
+public interface SlowQueryListener {
+
+    /**
+     * Called after a query exceeded the slow query threshold
+     *
+     * @param database the database that ran the query
+     * @param plan the query plan SQLite chose for the query, captured with EXPLAIN QUERY PLAN using the same SQL and
+     * arguments. Check {@link QueryPlan#hasFullTableScan()} and {@link QueryPlan#usesTempBTree()} to find queries
+     * that could benefit from an index.
+     * @param durationNanos how long the query took to run, in nanoseconds
+     */
+    void onSlowQuery(SquidDatabase database, QueryPlan plan, long durationNanos);
+}
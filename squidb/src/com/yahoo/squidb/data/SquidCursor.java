@@ -7,10 +7,17 @@ package com.yahoo.squidb.data;
 
 import com.yahoo.squidb.sql.Field;
 import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Property.BooleanProperty;
+import com.yahoo.squidb.sql.Property.DoubleProperty;
+import com.yahoo.squidb.sql.Property.IntegerProperty;
+import com.yahoo.squidb.sql.Property.LongProperty;
 import com.yahoo.squidb.sql.Property.PropertyVisitor;
+import com.yahoo.squidb.sql.Property.StringProperty;
 import com.yahoo.squidb.sql.Query;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A wrapper around a {@link ICursor} that allows clients to extract individual {@link Property properties} or read an
@@ -27,6 +34,11 @@ import java.util.List;
  * model.readPropertiesFromCursor(cursor);
  * </pre>
  *
+ * For tight loops over large cursors, the typed accessors such as {@link #getLong(LongProperty)} and
+ * {@link #getInt(IntegerProperty)} read primitive values without boxing them. The column index of each of the
+ * cursor's {@link #getFields() fields} is computed once when the cursor is constructed, and the indexes of any other
+ * properties are looked up once and cached for the lifetime of the cursor.
+ *
  * @param <TYPE> the model type that can be read or constructed from this cursor
  */
 public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
@@ -43,6 +55,19 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
     /** Wrapped cursor */
     private final ICursor cursor;
 
+    /** Cache of column indexes, keyed by property name */
+    private final Map<String, Integer> columnIndexCache = new HashMap<>();
+
+    /** Column index for each property in {@link #fields}, or -1 for other fields or if the cursor has no such column */
+    private final int[] fieldColumnIndexes;
+
+    /** Column read by {@link #reader} on its next visit */
+    private int columnToRead = -1;
+
+    /** Last properties array checked by {@link #hasFields(Property[])} and the result of that check */
+    private Property<?>[] lastCheckedFields = null;
+    private boolean lastCheckedFieldsMatch = false;
+
     /**
      * Create a SquidCursor from the supplied {@link ICursor}
      *
@@ -53,6 +78,33 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
         this.cursor = cursor;
         this.modelHint = modelHint;
         this.fields = fields;
+        this.fieldColumnIndexes = computeFieldColumnIndexes();
+    }
+
+    private int[] computeFieldColumnIndexes() {
+        if (fields == null) {
+            return new int[0];
+        }
+        int[] result = new int[fields.size()];
+        for (int i = 0; i < result.length; i++) {
+            Field<?> field = fields.get(i);
+            if (!(field instanceof Property<?>)) {
+                // Only properties are read by position. Other fields, such as an unaliased Function, may not have a
+                // name that can be resolved without a CompileContext
+                result[i] = -1;
+                continue;
+            }
+            String name = field.getName();
+            Integer index = columnIndexCache.get(name);
+            if (index == null) {
+                index = cursor.getColumnIndex(name);
+                if (index >= 0) {
+                    columnIndexCache.put(name, index);
+                }
+            }
+            result[i] = index;
+        }
+        return result;
     }
 
     /**
@@ -69,11 +121,145 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
      * @param property the property corresponding to the desired column
      * @return the value of the property
      */
-    @SuppressWarnings("unchecked")
     public <PROPERTY_TYPE> PROPERTY_TYPE get(Property<PROPERTY_TYPE> property) {
+        return readColumn(property, getColumnIndexForProperty(property));
+    }
+
+    /**
+     * Get the column index of the field at the given position in {@link #getFields()}, as computed when this cursor
+     * was constructed. This avoids looking up columns by name when reading every field of every row, e.g. in
+     * {@link AbstractModel#readPropertiesFromCursor(SquidCursor)}.
+     *
+     * @param fieldPosition the position of the field in the list returned by {@link #getFields()}
+     * @return the index of the column for that field, or -1 if the field is not a {@link Property} or the cursor has
+     * no column for it
+     */
+    public int getColumnIndexForField(int fieldPosition) {
+        if (fieldPosition < 0 || fieldPosition >= fieldColumnIndexes.length) {
+            return -1;
+        }
+        return fieldColumnIndexes[fieldPosition];
+    }
+
+    /**
+     * Check if this cursor's {@link #getFields() fields} are exactly the given properties (the same instances, in the
+     * same order) and the cursor has a column for each of them. If so, the column for properties[i] is
+     * {@link #getColumnIndexForField(int) getColumnIndexForField(i)}. The result for the most recently checked
+     * array is cached, so calling this once per row with a model's PROPERTIES array is cheap.
+     *
+     * @param properties the properties to check
+     * @return true if this cursor's fields match the given properties
+     */
+    public boolean hasFields(Property<?>[] properties) {
+        if (properties != lastCheckedFields) {
+            lastCheckedFieldsMatch = computeHasFields(properties);
+            lastCheckedFields = properties;
+        }
+        return lastCheckedFieldsMatch;
+    }
+
+    private boolean computeHasFields(Property<?>[] properties) {
+        if (fields == null || fields.size() != properties.length) {
+            return false;
+        }
+        for (int i = 0; i < properties.length; i++) {
+            if (fields.get(i) != properties[i] || fieldColumnIndexes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the value of the given property from the given column of the current row, bypassing any column lookup
+     */
+    @SuppressWarnings("unchecked")
+    <PROPERTY_TYPE> PROPERTY_TYPE readColumn(Property<PROPERTY_TYPE> property, int column) {
+        columnToRead = column;
         return (PROPERTY_TYPE) property.accept(reader, this);
     }
 
+    /**
+     * Read the value of the given {@link LongProperty} from the current row without boxing it. Like
+     * {@link #getLong(int)}, a null value will be returned as 0; use {@link #isNull(Property)} to check for null.
+     *
+     * @param property the property corresponding to the desired column
+     * @return the value of the property
+     */
+    public long getLong(LongProperty property) {
+        return cursor.getLong(getColumnIndexForProperty(property));
+    }
+
+    /**
+     * Read the value of the given {@link IntegerProperty} from the current row without boxing it. Like
+     * {@link #getInt(int)}, a null value will be returned as 0; use {@link #isNull(Property)} to check for null.
+     *
+     * @param property the property corresponding to the desired column
+     * @return the value of the property
+     */
+    public int getInt(IntegerProperty property) {
+        return cursor.getInt(getColumnIndexForProperty(property));
+    }
+
+    /**
+     * Read the value of the given {@link DoubleProperty} from the current row without boxing it. Like
+     * {@link #getDouble(int)}, a null value will be returned as 0; use {@link #isNull(Property)} to check for null.
+     *
+     * @param property the property corresponding to the desired column
+     * @return the value of the property
+     */
+    public double getDouble(DoubleProperty property) {
+        return cursor.getDouble(getColumnIndexForProperty(property));
+    }
+
+    /**
+     * Read the value of the given {@link BooleanProperty} from the current row without boxing it. A null value will
+     * be returned as false; use {@link #isNull(Property)} to check for null.
+     *
+     * @param property the property corresponding to the desired column
+     * @return the value of the property
+     */
+    public boolean getBoolean(BooleanProperty property) {
+        return cursor.getInt(getColumnIndexForProperty(property)) != 0;
+    }
+
+    /**
+     * Read the value of the given {@link StringProperty} from the current row, bypassing the visitor used by
+     * {@link #get(Property)}
+     *
+     * @param property the property corresponding to the desired column
+     * @return the value of the property
+     */
+    public String getString(StringProperty property) {
+        return cursor.getString(getColumnIndexForProperty(property));
+    }
+
+    /**
+     * @param property the property corresponding to the desired column
+     * @return true if the value of the given property in the current row is null
+     */
+    public boolean isNull(Property<?> property) {
+        return cursor.isNull(getColumnIndexForProperty(property));
+    }
+
+    /**
+     * Get the index of the column corresponding to the given {@link Property}. The index is cached, so subsequent
+     * lookups for a property with the same name don't need to search the cursor's columns.
+     *
+     * @param property the property corresponding to the desired column
+     * @return the index of the column
+     * @throws IllegalArgumentException if the cursor has no column for the property
+     */
+    public int getColumnIndexForProperty(Property<?> property) {
+        String name = property.getName();
+        Integer index = columnIndexCache.get(name);
+        if (index == null) {
+            index = cursor.getColumnIndexOrThrow(name);
+            columnIndexCache.put(name, index);
+        }
+        return index;
+    }
+
     /**
      * @return the {@link ICursor} backing this SquidCursor. If you are on Android and you need to pass this object
      * across process boundaries, and if this SquidCursor was obtained from a SquidDatabase, you can safely cast
@@ -246,7 +432,7 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
 
         @Override
         public Object visitDouble(Property<Double> property, SquidCursor<?> cursor) {
-            int column = columnIndex(property, cursor);
+            int column = cursor.columnToRead;
             if (cursor.isNull(column)) {
                 return null;
             }
@@ -255,7 +441,7 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
 
         @Override
         public Object visitInteger(Property<Integer> property, SquidCursor<?> cursor) {
-            int column = columnIndex(property, cursor);
+            int column = cursor.columnToRead;
             if (cursor.isNull(column)) {
                 return null;
             }
@@ -264,7 +450,7 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
 
         @Override
         public Object visitLong(Property<Long> property, SquidCursor<?> cursor) {
-            int column = columnIndex(property, cursor);
+            int column = cursor.columnToRead;
             if (cursor.isNull(column)) {
                 return null;
             }
@@ -273,7 +459,7 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
 
         @Override
         public Object visitString(Property<String> property, SquidCursor<?> cursor) {
-            int column = columnIndex(property, cursor);
+            int column = cursor.columnToRead;
             if (cursor.isNull(column)) {
                 return null;
             }
@@ -282,7 +468,7 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
 
         @Override
         public Object visitBoolean(Property<Boolean> property, SquidCursor<?> cursor) {
-            int column = columnIndex(property, cursor);
+            int column = cursor.columnToRead;
             if (cursor.isNull(column)) {
                 return null;
             }
@@ -292,17 +478,13 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
 
         @Override
         public Object visitBlob(Property<byte[]> property, SquidCursor<?> cursor) {
-            int column = columnIndex(property, cursor);
+            int column = cursor.columnToRead;
             if (cursor.isNull(column)) {
                 return null;
             }
             return cursor.getBlob(column);
         }
 
-        private int columnIndex(Property<?> property, SquidCursor<?> cursor) {
-            return cursor.getColumnIndexOrThrow(property.getName());
-        }
-
     }
 
 }
@@ -6,6 +6,7 @@
 package com.yahoo.squidb.data;
 
 import com.yahoo.squidb.Beta;
+import com.yahoo.squidb.sql.ArgumentResolver;
 import com.yahoo.squidb.sql.CompileContext;
 import com.yahoo.squidb.sql.CompiledStatement;
 import com.yahoo.squidb.sql.Criterion;
@@ -16,6 +17,7 @@ import com.yahoo.squidb.sql.Insert;
 import com.yahoo.squidb.sql.Property;
 import com.yahoo.squidb.sql.Property.PropertyVisitor;
 import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.sql.QueryParameter;
 import com.yahoo.squidb.sql.SqlStatement;
 import com.yahoo.squidb.sql.SqlTable;
 import com.yahoo.squidb.sql.SqlUtils;
@@ -31,6 +33,7 @@ import com.yahoo.squidb.utility.VersionCode;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -41,7 +44,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * SquidDatabase is a database abstraction which wraps a SQLite database.
@@ -280,14 +284,32 @@ public abstract class SquidDatabase {
 
     private static final int STRING_BUILDER_INITIAL_CAPACITY = 128;
 
-    private Set<ISQLitePreparedStatement> trackedPreparedInserts = Collections.newSetFromMap(
-            new ConcurrentHashMap<ISQLitePreparedStatement, Boolean>());
-    private ThreadLocal<PreparedInsertCache> preparedInsertCache = newPreparedInsertCache(trackedPreparedInserts);
+    private Map<ISQLitePreparedStatement, String> trackedPreparedStatements = new ConcurrentHashMap<>();
+    private final PreparedInsertCache preparedInsertCache = new PreparedInsertCache(trackedPreparedStatements);
+    private ThreadLocal<PreparedUpdateDeleteCache> preparedUpdateDeleteCache =
+            newPreparedUpdateDeleteCache(trackedPreparedStatements);
+    private final CompiledStatementCache compiledStatementCache =
+            new CompiledStatementCache(trackedPreparedStatements);
+    private volatile SquidMetricsListener metricsListener = null;
+    private volatile SlowQueryListener slowQueryListener = null;
+    private volatile long slowQueryThresholdNanos = 0;
     private boolean preparedInsertCacheEnabled = false;
+    private volatile int readConnectionPoolSize = 0;
+    private volatile ReadConnectionPool readConnectionPool = null;
+    private volatile int attachedDatabaseCount = 0;
+    private final Map<Thread, ISQLiteDatabase> pinnedReadConnections = new ConcurrentHashMap<>();
 
     private SquidDatabase attachedTo = null;
-    private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-    private final Object databaseInstanceLock = new Object();
+    private final DatabaseLock lock;
+    private final ReentrantLock databaseInstanceLock = new ReentrantLock();
+
+    // In LockMode.VIRTUAL_THREADS, transaction state belongs to the primary connection rather than to each thread.
+    // The connection runs one transaction at a time, so the thread that begins the outermost transaction holds
+    // transactionLock until it ends, and owns connectionTransactionState and the connection's prepared update and
+    // delete cache in the meantime. All of these are null in the other lock modes.
+    private final ReentrantLock transactionLock;
+    private final TransactionSuccessState connectionTransactionState;
+    private PreparedUpdateDeleteCache connectionUpdateDeleteCache = null; // guarded by transactionLock
 
     /**
      * SQLiteOpenHelperWrapper that takes care of database operations
@@ -318,10 +340,67 @@ public abstract class SquidDatabase {
      * Create a new SquidDatabase
      */
     public SquidDatabase() {
+        this(LockMode.READ_WRITE);
+    }
+
+    /**
+     * Create a new SquidDatabase that uses the given implementation for its exclusive and non-exclusive locks.
+     * Databases used from many threads at once may pass {@link LockMode#STRIPED} to reduce contention on the
+     * non-exclusive lock, or {@link LockMode#VIRTUAL_THREADS} to also avoid keeping any per-thread state.
+     *
+     * @param lockMode the lock implementation to use
+     */
+    @Beta
+    protected SquidDatabase(LockMode lockMode) {
+        if (lockMode == null) {
+            throw new IllegalArgumentException("Lock mode can't be null");
+        }
+        lock = DatabaseLock.create(lockMode);
+        if (lockMode == LockMode.VIRTUAL_THREADS) {
+            transactionLock = new ReentrantLock();
+            connectionTransactionState = new TransactionSuccessState();
+        } else {
+            transactionLock = null;
+            connectionTransactionState = null;
+        }
         registerTableModels(getTables());
         registerTableModels(getViews());
     }
 
+    /**
+     * Implementations of the lock behind {@link #acquireNonExclusiveLock()} and {@link #acquireExclusiveLock()}
+     *
+     * @see #SquidDatabase(LockMode)
+     */
+    @Beta
+    public enum LockMode {
+        /**
+         * A {@link java.util.concurrent.locks.ReentrantReadWriteLock}. Every non-exclusive acquire and release
+         * updates one shared counter, which is cheap with few threads but can become a point of contention between
+         * many cores. This is the default.
+         */
+        READ_WRITE,
+
+        /**
+         * A lock that counts non-exclusive holders in striped counters, each on its own cache line, so threads
+         * acquiring the non-exclusive lock concurrently don't contend with each other. Acquiring the exclusive lock
+         * is more expensive, since it has to check every stripe, but it is only needed for rare operations like
+         * {@link SquidDatabase#close()} and {@link SquidDatabase#attachDatabase(SquidDatabase)}.
+         */
+        STRIPED,
+
+        /**
+         * For databases used from large numbers of short-lived threads, such as virtual threads. The lock is striped
+         * as in {@link #STRIPED}, but tracks its holders in a map that only contains threads currently holding it,
+         * rather than in ThreadLocals. The database also keeps no per-thread state of its own: transaction nesting,
+         * pending {@link DataChangedNotifier} notifications, and the prepared update and delete statements enabled
+         * by {@link SquidDatabase#setPreparedInsertCacheEnabled(boolean)} belong to the active transaction on the
+         * primary connection, which one thread at a time takes ownership of. As a consequence, prepared updates and
+         * deletes are only reused inside a transaction; prepared inserts are shared by all threads in every mode.
+         */
+        VIRTUAL_THREADS
+    }
+
     private <T extends SqlTable<?>> void registerTableModels(T[] tables) {
         if (tables != null) {
             for (SqlTable<?> table : tables) {
@@ -332,11 +411,16 @@ public abstract class SquidDatabase {
         }
     }
 
-    private synchronized ISQLiteOpenHelper getOpenHelper() {
-        if (helper == null) {
-            helper = createOpenHelper(getName(), new OpenHelperDelegate(), getVersion());
+    private ISQLiteOpenHelper getOpenHelper() {
+        databaseInstanceLock.lock();
+        try {
+            if (helper == null) {
+                helper = createOpenHelper(getName(), new OpenHelperDelegate(), getVersion());
+            }
+            return helper;
+        } finally {
+            databaseInstanceLock.unlock();
         }
-        return helper;
     }
 
     /**
@@ -416,11 +500,14 @@ public abstract class SquidDatabase {
      */
     protected final ISQLiteDatabase getDatabase() {
         // If we get here, we should already have the non-exclusive lock
-        synchronized (databaseInstanceLock) {
+        databaseInstanceLock.lock();
+        try {
             if (database == null) {
                 openForWritingLocked();
             }
             return database;
+        } finally {
+            databaseInstanceLock.unlock();
         }
     }
 
@@ -480,6 +567,14 @@ public abstract class SquidDatabase {
      * performance may be improved up to 70%, and a 25-50% gain is a reasonable expectation for most cases. However,
      * the gains may not be noticeable on some older devices or in low-memory environments. The feature is experimental
      * and is disabled by default.
+     * <p>
+     * Prepared inserts belong to the database connection and are shared by all threads: each insert checks out an
+     * idle statement for its table and conflict algorithm, preparing a new one only if all of them are in use by
+     * concurrent inserts, and returns it when done. See {@link #getPreparedInsertCacheStats()} for how often
+     * statements are reused.
+     * <p>
+     * When enabled, {@link #updateRow(TableModel)} and {@link #delete(Class, long)} also reuse prepared statements,
+     * cached per table, conflict algorithm, and set of updated columns.
      *
      * @param enabled true to enable the prepared insert cache, false to disable it
      */
@@ -488,16 +583,225 @@ public abstract class SquidDatabase {
         preparedInsertCacheEnabled = enabled;
     }
 
-    private ThreadLocal<PreparedInsertCache> newPreparedInsertCache(
-            final Set<ISQLitePreparedStatement> openStatementTracking) {
-        return new ThreadLocal<PreparedInsertCache>() {
+    /**
+     * Sets the maximum number of compiled statements to keep in this database's statement cache. When the cache is
+     * enabled, statements executed by {@link #simpleQueryForLong(String, Object[]) simpleQueryForLong},
+     * {@link #simpleQueryForString(String, Object[]) simpleQueryForString}, {@link #count(Class, Criterion) count},
+     * and the update and delete methods are prepared once per distinct SQL string and reused, with the least recently
+     * used statements closed when the cache is full. This is most effective when combined with frozen
+     * {@link Query Queries} or statements that are reused, since those also skip rebuilding their SQL. Queries that
+     * return a cursor are not cached here; they rely on the underlying SQLite driver's own statement cache. The
+     * feature is experimental and is disabled (size 0) by default.
+     *
+     * @param maxSize the maximum number of idle statements to cache, or 0 to disable the cache
+     * @see #getStatementCacheStats()
+     */
+    @Beta
+    protected void setStatementCacheSize(int maxSize) {
+        compiledStatementCache.setMaxSize(maxSize);
+    }
+
+    /**
+     * Sets the maximum number of read-only connections used to serve queries concurrently. When enabled,
+     * {@link #rawQuery(String, Object[]) rawQuery}, {@link #simpleQueryForLong(String, Object[]) simpleQueryForLong},
+     * {@link #simpleQueryForString(String, Object[]) simpleQueryForString}, and the methods built on them such as
+     * {@link #query(Class, Query) query}, {@link #fetch(Class, long, Property[]) fetch}, and
+     * {@link #count(Class, Criterion) count} run on a pooled read-only connection when called outside of a
+     * transaction, so concurrent readers don't all share the primary connection. Writes, and reads made inside a
+     * transaction, stay on the primary connection, so a transaction always sees its own uncommitted changes.
+     * <p>
+     * The pool only helps when write-ahead logging is enabled (see {@link ISQLiteDatabase#enableWriteAheadLogging()});
+     * otherwise readers still block while a write is in progress. It requires an open helper that implements
+     * {@link ISQLiteReadConnectionOpenHelper}. With other open helpers, or while another database is attached to this
+     * one, queries use the primary connection as usual. Read connections don't run the
+     * {@link #onConfigure(ISQLiteDatabase)} or {@link #onOpen(ISQLiteDatabase)} hooks, so per-connection
+     * configuration made there doesn't apply to them. The feature is experimental and is disabled (size 0) by default.
+     *
+     * @param maxConnections the maximum number of read-only connections to open, or 0 to disable the pool
+     */
+    @Beta
+    protected void setReadConnectionPoolSize(int maxConnections) {
+        if (maxConnections < 0) {
+            throw new IllegalArgumentException("Read connection pool size must be >= 0, was " + maxConnections);
+        }
+        databaseInstanceLock.lock();
+        try {
+            readConnectionPoolSize = maxConnections;
+            closeReadConnectionPoolLocked();
+        } finally {
+            databaseInstanceLock.unlock();
+        }
+    }
+
+    // Returns the pool to use for a read-only statement, or null if the statement should run on the primary
+    // connection. Callers must hold the non-exclusive lock.
+    private ReadConnectionPool getReadConnectionPool() {
+        if (readConnectionPoolSize == 0 || attachedDatabaseCount > 0 || isInTransactionState()) {
+            return null;
+        }
+        ReadConnectionPool pool = readConnectionPool;
+        if (pool == null) {
+            databaseInstanceLock.lock();
+            try {
+                // Read connections are only opened once the primary connection has run any migrations
+                getDatabase();
+                pool = readConnectionPool;
+                if (pool == null && readConnectionPoolSize > 0) {
+                    pool = new ReadConnectionPool(getOpenHelper(), readConnectionPoolSize);
+                    readConnectionPool = pool;
+                }
+            } finally {
+                databaseInstanceLock.unlock();
+            }
+        }
+        return pool != null && pool.isAvailable() ? pool : null;
+    }
+
+    private void closeReadConnectionPoolLocked() {
+        ReadConnectionPool pool = readConnectionPool;
+        readConnectionPool = null;
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * @return a snapshot of the hit, miss, and eviction counters for the compiled statement cache
+     * @see #setStatementCacheSize(int)
+     */
+    @Beta
+    public StatementCacheStats getStatementCacheStats() {
+        return compiledStatementCache.getStats();
+    }
+
+    /**
+     * @return a snapshot of the reuse and prepare counters for the shared prepared insert statements
+     * @see #setPreparedInsertCacheEnabled(boolean)
+     */
+    @Beta
+    public PreparedInsertCacheStats getPreparedInsertCacheStats() {
+        return preparedInsertCache.getStats();
+    }
+
+    /**
+     * Install a listener to receive timing and row count information for the statements this database executes, the
+     * duration of transactions, and time spent waiting for the database lock. Pass null to remove the listener. When
+     * no listener is installed, no timing information is collected.
+     * <p>
+     * Note that when a listener is installed, {@link #rawQuery(String, Object[])} and {@link #query(Class, Query)}
+     * call {@link ICursor#getCount()} on the returned cursor before returning it, so that the reported time includes
+     * actually running the query.
+     *
+     * @param listener the listener to install, or null
+     * @see HistogramMetricsListener
+     */
+    @Beta
+    public void setMetricsListener(SquidMetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    /**
+     * @return the currently installed {@link SquidMetricsListener}, or null if there is none
+     */
+    @Beta
+    public SquidMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    private void reportStatementExecuted(SquidMetricsListener listener, StatementMetrics.Type type, String sql,
+            long startNanos, long rowCount, boolean fromStatementCache) {
+        long durationNanos = System.nanoTime() - startNanos;
+        listener.onStatementExecuted(this, new StatementMetrics(type, sql, durationNanos, rowCount,
+                fromStatementCache));
+    }
+
+    /**
+     * Install a listener to be notified of queries that take longer than the given threshold to run. For each such
+     * query, the plan SQLite chose is captured by running EXPLAIN QUERY PLAN with the same SQL and arguments, and
+     * passed to the listener as a {@link QueryPlan}. Full table scans and temporary B-trees in those plans are good
+     * hints about which {@link com.yahoo.squidb.sql.Index Indexes} are missing. Pass null to remove the listener.
+     * <p>
+     * Both queries returning cursors and simple queries (e.g. counts) are checked. Like
+     * {@link #setMetricsListener(SquidMetricsListener)}, installing a listener means query cursors are forced to run
+     * before being returned. Capturing a plan is only done for queries over the threshold, but it does add the cost of
+     * a second statement to those queries, so this is intended for debug builds or sampled production use.
+     *
+     * @param listener the listener to install, or null
+     * @param thresholdMillis queries taking at least this many milliseconds will be reported
+     */
+    @Beta
+    public void setSlowQueryListener(SlowQueryListener listener, long thresholdMillis) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("Slow query threshold must be non-negative, was " + thresholdMillis);
+        }
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.slowQueryListener = listener;
+    }
+
+    private void onQueryExecuted(SquidMetricsListener listener, SlowQueryListener slowListener,
+            StatementMetrics.Type type, String sql, Object[] sqlArgs, long startNanos, long rowCount,
+            boolean fromStatementCache) {
+        long durationNanos = System.nanoTime() - startNanos;
+        if (listener != null) {
+            listener.onStatementExecuted(this, new StatementMetrics(type, sql, durationNanos, rowCount,
+                    fromStatementCache));
+        }
+        if (slowListener != null && durationNanos >= slowQueryThresholdNanos && !isExplainStatement(sql)) {
+            QueryPlan plan;
+            try {
+                plan = captureQueryPlan(sql, sqlArgs);
+            } catch (RuntimeException e) {
+                onError("Failed to capture query plan for slow query: " + sql, e);
+                return;
+            }
+            slowListener.onSlowQuery(this, plan, durationNanos);
+        }
+    }
+
+    private static boolean isExplainStatement(String sql) {
+        return sql.trim().regionMatches(true, 0, "EXPLAIN", 0, 7);
+    }
+
+    // Callers must hold the non-exclusive lock
+    private QueryPlan captureQueryPlan(String sql, Object[] sqlArgs) {
+        ICursor cursor = getDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, sqlArgs);
+        try {
+            return QueryPlan.fromCursor(sql, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void reportPreparedStatementExecuted(SquidMetricsListener listener, StatementMetrics.Type type,
+            ISQLitePreparedStatement statement, long startNanos, long rowCount) {
+        String sql = trackedPreparedStatements.get(statement);
+        reportStatementExecuted(listener, type, sql != null ? sql : statement.toString(), startNanos, rowCount, true);
+    }
+
+    private ThreadLocal<PreparedUpdateDeleteCache> newPreparedUpdateDeleteCache(
+            final Map<ISQLitePreparedStatement, String> openStatementTracking) {
+        return new ThreadLocal<PreparedUpdateDeleteCache>() {
             @Override
-            protected PreparedInsertCache initialValue() {
-                return new PreparedInsertCache(openStatementTracking);
+            protected PreparedUpdateDeleteCache initialValue() {
+                return new PreparedUpdateDeleteCache(openStatementTracking);
             }
         };
     }
 
+    // Returns the prepared update and delete cache the calling thread may use, or null if it has none. In
+    // VIRTUAL_THREADS mode, only the thread that owns the active transaction has one.
+    private PreparedUpdateDeleteCache getPreparedUpdateDeleteCache() {
+        if (transactionLock == null) {
+            return preparedUpdateDeleteCache.get();
+        } else if (!transactionLock.isHeldByCurrentThread()) {
+            return null;
+        }
+        if (connectionUpdateDeleteCache == null) {
+            connectionUpdateDeleteCache = new PreparedUpdateDeleteCache(trackedPreparedStatements);
+        }
+        return connectionUpdateDeleteCache;
+    }
+
     /**
      * Attaches another database to this database using the SQLite ATTACH command. This locks the other database
      * exclusively; you must call {@link #detachDatabase(SquidDatabase)} when you are done, otherwise the attached
@@ -531,7 +835,12 @@ public abstract class SquidDatabase {
         // so we acquire an exclusive lock before attaching
         acquireExclusiveLock();
         try {
-            return other.attachTo(this);
+            String attachedAs = other.attachTo(this);
+            if (attachedAs != null) {
+                // Read connections don't see attached databases, so queries must use the primary connection
+                attachedDatabaseCount++;
+            }
+            return attachedAs;
         } finally {
             releaseExclusiveLock();
         }
@@ -548,7 +857,11 @@ public abstract class SquidDatabase {
             throw new IllegalArgumentException("Database " + other.getName() + " is not attached to " + getName());
         }
 
-        return other.detachFrom(this);
+        if (other.detachFrom(this)) {
+            attachedDatabaseCount--;
+            return true;
+        }
+        return false;
     }
 
     private String attachTo(SquidDatabase attachTo) {
@@ -591,8 +904,11 @@ public abstract class SquidDatabase {
      * @return true if a connection to the {@link ISQLiteDatabase} is open, false otherwise
      */
     public final boolean isOpen() {
-        synchronized (databaseInstanceLock) {
+        databaseInstanceLock.lock();
+        try {
             return database != null && database.isOpen();
+        } finally {
+            databaseInstanceLock.unlock();
         }
     }
 
@@ -669,26 +985,36 @@ public abstract class SquidDatabase {
     }
 
     private void recreateLocked() {
-        synchronized (databaseInstanceLock) {
+        databaseInstanceLock.lock();
+        try {
             closeAndDeleteLocked();
             getDatabase();
+        } finally {
+            databaseInstanceLock.unlock();
         }
     }
 
     private void closeLocked() {
-        synchronized (databaseInstanceLock) {
+        databaseInstanceLock.lock();
+        try {
             closeAndDeleteInternal(false);
+        } finally {
+            databaseInstanceLock.unlock();
         }
     }
 
     private void closeAndDeleteLocked() {
-        synchronized (databaseInstanceLock) {
+        databaseInstanceLock.lock();
+        try {
             closeAndDeleteInternal(true);
+        } finally {
+            databaseInstanceLock.unlock();
         }
     }
 
     private void closeAndDeleteInternal(boolean deleteAfterClose) {
         clearPreparedStatementCache();
+        closeReadConnectionPoolLocked();
         if (isOpen()) {
             onClose(database);
             database.close();
@@ -701,11 +1027,21 @@ public abstract class SquidDatabase {
     }
 
     private void clearPreparedStatementCache() {
-        for (ISQLitePreparedStatement statement : trackedPreparedInserts) {
+        compiledStatementCache.clear();
+        preparedInsertCache.close();
+        for (ISQLitePreparedStatement statement : trackedPreparedStatements.keySet()) {
             statement.close();
         }
-        trackedPreparedInserts.clear();
-        preparedInsertCache = newPreparedInsertCache(trackedPreparedInserts);
+        trackedPreparedStatements.clear();
+        preparedUpdateDeleteCache = newPreparedUpdateDeleteCache(trackedPreparedStatements);
+        if (transactionLock != null) {
+            transactionLock.lock();
+            try {
+                connectionUpdateDeleteCache = null;
+            } finally {
+                transactionLock.unlock();
+            }
+        }
     }
 
     /**
@@ -739,7 +1075,31 @@ public abstract class SquidDatabase {
     public ICursor rawQuery(String sql, Object[] sqlArgs) {
         acquireNonExclusiveLock();
         try {
-            return getDatabase().rawQuery(sql, sqlArgs);
+            ISQLiteDatabase pinned = getPinnedReadConnection();
+            ReadConnectionPool pool = pinned == null ? getReadConnectionPool() : null;
+            ISQLiteDatabase readConnection = pool != null ? pool.acquire() : null;
+            try {
+                ISQLiteDatabase db = pinned != null ? pinned : readConnection != null ? readConnection : getDatabase();
+                SquidMetricsListener listener = metricsListener;
+                SlowQueryListener slowListener = slowQueryListener;
+                if (listener == null && slowListener == null) {
+                    return db.rawQuery(sql, sqlArgs);
+                }
+                long startNanos = System.nanoTime();
+                ICursor cursor = db.rawQuery(sql, sqlArgs);
+                // Some cursor implementations run the query lazily; getCount forces it to run so the timing is
+                // meaningful
+                int count = cursor.getCount();
+                onQueryExecuted(listener, slowListener, StatementMetrics.Type.QUERY, sql, sqlArgs, startNanos, count,
+                        false);
+                return cursor;
+            } finally {
+                // Read connections return fully loaded cursors (see ISQLiteReadConnectionOpenHelper), so the
+                // connection can be reused while the caller reads this one
+                if (readConnection != null) {
+                    pool.release(readConnection);
+                }
+            }
         } finally {
             releaseNonExclusiveLock();
         }
@@ -758,7 +1118,38 @@ public abstract class SquidDatabase {
     public String simpleQueryForString(String sql, Object[] sqlArgs) {
         acquireNonExclusiveLock();
         try {
-            return getDatabase().simpleQueryForString(sql, sqlArgs);
+            SquidMetricsListener listener = metricsListener;
+            SlowQueryListener slowListener = slowQueryListener;
+            boolean timed = listener != null || slowListener != null;
+            long startNanos = timed ? System.nanoTime() : 0;
+            ISQLiteDatabase pinned = getPinnedReadConnection();
+            ReadConnectionPool pool = pinned == null ? getReadConnectionPool() : null;
+            ISQLiteDatabase readConnection = pool != null ? pool.acquire() : null;
+            boolean useCache = pinned == null && readConnection == null && compiledStatementCache.isEnabled();
+            String result;
+            if (pinned != null) {
+                result = pinned.simpleQueryForString(sql, sqlArgs);
+            } else if (readConnection != null) {
+                try {
+                    result = readConnection.simpleQueryForString(sql, sqlArgs);
+                } finally {
+                    pool.release(readConnection);
+                }
+            } else if (useCache) {
+                ISQLitePreparedStatement statement = acquireCachedStatement(sql, sqlArgs);
+                try {
+                    result = statement.simpleQueryForString();
+                } finally {
+                    compiledStatementCache.release(sql, statement);
+                }
+            } else {
+                result = getDatabase().simpleQueryForString(sql, sqlArgs);
+            }
+            if (timed) {
+                onQueryExecuted(listener, slowListener, StatementMetrics.Type.SIMPLE_QUERY, sql, sqlArgs, startNanos, 1,
+                        useCache);
+            }
+            return result;
         } finally {
             releaseNonExclusiveLock();
         }
@@ -777,7 +1168,38 @@ public abstract class SquidDatabase {
     public long simpleQueryForLong(String sql, Object[] sqlArgs) {
         acquireNonExclusiveLock();
         try {
-            return getDatabase().simpleQueryForLong(sql, sqlArgs);
+            SquidMetricsListener listener = metricsListener;
+            SlowQueryListener slowListener = slowQueryListener;
+            boolean timed = listener != null || slowListener != null;
+            long startNanos = timed ? System.nanoTime() : 0;
+            ISQLiteDatabase pinned = getPinnedReadConnection();
+            ReadConnectionPool pool = pinned == null ? getReadConnectionPool() : null;
+            ISQLiteDatabase readConnection = pool != null ? pool.acquire() : null;
+            boolean useCache = pinned == null && readConnection == null && compiledStatementCache.isEnabled();
+            long result;
+            if (pinned != null) {
+                result = pinned.simpleQueryForLong(sql, sqlArgs);
+            } else if (readConnection != null) {
+                try {
+                    result = readConnection.simpleQueryForLong(sql, sqlArgs);
+                } finally {
+                    pool.release(readConnection);
+                }
+            } else if (useCache) {
+                ISQLitePreparedStatement statement = acquireCachedStatement(sql, sqlArgs);
+                try {
+                    result = statement.simpleQueryForLong();
+                } finally {
+                    compiledStatementCache.release(sql, statement);
+                }
+            } else {
+                result = getDatabase().simpleQueryForLong(sql, sqlArgs);
+            }
+            if (timed) {
+                onQueryExecuted(listener, slowListener, StatementMetrics.Type.SIMPLE_QUERY, sql, sqlArgs, startNanos, 1,
+                        useCache);
+            }
+            return result;
         } finally {
             releaseNonExclusiveLock();
         }
@@ -793,7 +1215,7 @@ public abstract class SquidDatabase {
      * @return the String result of the query
      */
     public String simpleQueryForString(Query query) {
-        CompiledStatement compiled = query.compile(getCompileContext());
+        CompiledStatement compiled = compileForExecution(query);
         return simpleQueryForString(compiled.sql, compiled.sqlArgs);
     }
 
@@ -807,7 +1229,7 @@ public abstract class SquidDatabase {
      * @return the long result of the query
      */
     public long simpleQueryForLong(Query query) {
-        CompiledStatement compiled = query.compile(getCompileContext());
+        CompiledStatement compiled = compileForExecution(query);
         return simpleQueryForLong(compiled.sql, compiled.sqlArgs);
     }
 
@@ -817,10 +1239,17 @@ public abstract class SquidDatabase {
      * @return the row id of the last row inserted on success, -1 on failure
      */
     private long insertInternal(Insert insert) {
-        CompiledStatement compiled = insert.compile(getCompileContext());
+        CompiledStatement compiled = compileForExecution(insert);
         acquireNonExclusiveLock();
         try {
-            return getDatabase().executeInsert(compiled.sql, compiled.sqlArgs);
+            SquidMetricsListener listener = metricsListener;
+            long startNanos = listener != null ? System.nanoTime() : 0;
+            long result = getDatabase().executeInsert(compiled.sql, compiled.sqlArgs);
+            if (listener != null) {
+                reportStatementExecuted(listener, StatementMetrics.Type.INSERT, compiled.sql, startNanos,
+                        result > 0 ? insert.getNumRows() : 0, false);
+            }
+            return result;
         } finally {
             releaseNonExclusiveLock();
         }
@@ -832,13 +1261,7 @@ public abstract class SquidDatabase {
      * @return the number of rows deleted on success, -1 on failure
      */
     private int deleteInternal(Delete delete) {
-        CompiledStatement compiled = delete.compile(getCompileContext());
-        acquireNonExclusiveLock();
-        try {
-            return getDatabase().executeUpdateDelete(compiled.sql, compiled.sqlArgs);
-        } finally {
-            releaseNonExclusiveLock();
-        }
+        return executeUpdateDeleteInternal(compileForExecution(delete), StatementMetrics.Type.DELETE);
     }
 
     /**
@@ -847,15 +1270,66 @@ public abstract class SquidDatabase {
      * @return the number of rows updated on success, -1 on failure
      */
     private int updateInternal(Update update) {
-        CompiledStatement compiled = update.compile(getCompileContext());
+        return executeUpdateDeleteInternal(compileForExecution(update), StatementMetrics.Type.UPDATE);
+    }
+
+    // Compiles a statement that is about to be run as is. Only the query methods that take parameter values bind
+    // QueryParameters; anywhere else they would be bound as their ":name" string, so they are rejected here.
+    private CompiledStatement compileForExecution(SqlStatement statement) {
+        CompiledStatement compiled = statement.compile(getCompileContext());
+        checkNoUnboundParameters(compiled);
+        return compiled;
+    }
+
+    private static void checkNoUnboundParameters(CompiledStatement compiled) {
+        if (compiled.hasParameters()) {
+            throw new IllegalArgumentException("Statement has unbound parameters " + compiled.getParameterNames()
+                    + "; pass values for them to query(Class, Query, Map)");
+        }
+    }
+
+    private int executeUpdateDeleteInternal(CompiledStatement compiled, StatementMetrics.Type type) {
         acquireNonExclusiveLock();
         try {
-            return getDatabase().executeUpdateDelete(compiled.sql, compiled.sqlArgs);
+            SquidMetricsListener listener = metricsListener;
+            long startNanos = listener != null ? System.nanoTime() : 0;
+            boolean useCache = compiledStatementCache.isEnabled();
+            int result;
+            if (useCache) {
+                ISQLitePreparedStatement statement = acquireCachedStatement(compiled.sql, compiled.sqlArgs);
+                try {
+                    result = statement.executeUpdateDelete();
+                } finally {
+                    compiledStatementCache.release(compiled.sql, statement);
+                }
+            } else {
+                result = getDatabase().executeUpdateDelete(compiled.sql, compiled.sqlArgs);
+            }
+            if (listener != null) {
+                reportStatementExecuted(listener, type, compiled.sql, startNanos, result, useCache);
+            }
+            return result;
         } finally {
             releaseNonExclusiveLock();
         }
     }
 
+    // Callers must hold the non-exclusive lock and release the statement to compiledStatementCache when done
+    private ISQLitePreparedStatement acquireCachedStatement(String sql, Object[] sqlArgs) {
+        ISQLitePreparedStatement statement = compiledStatementCache.acquire(this, sql);
+        try {
+            if (sqlArgs != null) {
+                for (int i = 0; i < sqlArgs.length; i++) {
+                    bindArgument(statement, i + 1, sqlArgs[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            compiledStatementCache.release(sql, statement);
+            throw e;
+        }
+        return statement;
+    }
+
     // --- transaction management
 
     /**
@@ -886,11 +1360,13 @@ public abstract class SquidDatabase {
      */
     public void beginTransaction() {
         acquireNonExclusiveLock();
+        TransactionSuccessState successState = acquireTransactionState();
         try {
             getDatabase().beginTransaction();
-            transactionSuccessState.get().beginTransaction();
+            successState.beginTransaction();
         } catch (RuntimeException e) {
-            // Only release lock if begin xact was not successful
+            // Only release locks if begin xact was not successful
+            releaseTransactionState();
             releaseNonExclusiveLock();
             throw e;
         }
@@ -926,11 +1402,13 @@ public abstract class SquidDatabase {
      */
     public void beginTransactionNonExclusive() {
         acquireNonExclusiveLock();
+        TransactionSuccessState successState = acquireTransactionState();
         try {
             getDatabase().beginTransactionNonExclusive();
-            transactionSuccessState.get().beginTransaction();
+            successState.beginTransaction();
         } catch (RuntimeException e) {
-            // Only release lock if begin xact was not successful
+            // Only release locks if begin xact was not successful
+            releaseTransactionState();
             releaseNonExclusiveLock();
             throw e;
         }
@@ -965,11 +1443,13 @@ public abstract class SquidDatabase {
      */
     public void beginTransactionWithListener(SquidTransactionListener listener) {
         acquireNonExclusiveLock();
+        TransactionSuccessState successState = acquireTransactionState();
         try {
             getDatabase().beginTransactionWithListener(listener);
-            transactionSuccessState.get().beginTransaction();
+            successState.beginTransaction();
         } catch (RuntimeException e) {
-            // Only release lock if begin xact was not successful
+            // Only release locks if begin xact was not successful
+            releaseTransactionState();
             releaseNonExclusiveLock();
             throw e;
         }
@@ -1006,11 +1486,13 @@ public abstract class SquidDatabase {
      */
     public void beginTransactionWithListenerNonExclusive(SquidTransactionListener listener) {
         acquireNonExclusiveLock();
+        TransactionSuccessState successState = acquireTransactionState();
         try {
             getDatabase().beginTransactionWithListenerNonExclusive(listener);
-            transactionSuccessState.get().beginTransaction();
+            successState.beginTransaction();
         } catch (RuntimeException e) {
-            // Only release lock if begin xact was not successful
+            // Only release locks if begin xact was not successful
+            releaseTransactionState();
             releaseNonExclusiveLock();
             throw e;
         }
@@ -1023,7 +1505,10 @@ public abstract class SquidDatabase {
      */
     public void setTransactionSuccessful() {
         getDatabase().setTransactionSuccessful();
-        transactionSuccessState.get().setTransactionSuccessful();
+        TransactionSuccessState successState = getTransactionState();
+        if (successState != null) {
+            successState.setTransactionSuccessful();
+        }
     }
 
     /**
@@ -1031,8 +1516,11 @@ public abstract class SquidDatabase {
      * @see ISQLiteDatabase#inTransaction()
      */
     public final boolean inTransaction() {
-        synchronized (databaseInstanceLock) {
+        databaseInstanceLock.lock();
+        try {
             return database != null && database.inTransaction();
+        } finally {
+            databaseInstanceLock.unlock();
         }
     }
 
@@ -1042,32 +1530,56 @@ public abstract class SquidDatabase {
      * @see ISQLiteDatabase#endTransaction()
      */
     public void endTransaction() {
-        TransactionSuccessState successState = transactionSuccessState.get();
+        TransactionSuccessState successState = getTransactionState();
         try {
             getDatabase().endTransaction();
         } catch (RuntimeException e) {
-            successState.unsetTransactionSuccessful();
+            if (successState != null) {
+                successState.unsetTransactionSuccessful();
+            }
             throw e;
         } finally {
             releaseNonExclusiveLock();
 
-            successState.endTransaction();
-            if (!successState.inTransaction()) {
-                flushAccumulatedNotifications(successState.outerTransactionSuccess);
-                successState.reset();
+            if (successState != null) {
+                try {
+                    endTransactionState(successState);
+                } finally {
+                    releaseTransactionState();
+                }
+            }
+        }
+    }
+
+    private void endTransactionState(TransactionSuccessState successState) {
+        successState.endTransaction();
+        if (!successState.inTransaction()) {
+            SquidMetricsListener listener = metricsListener;
+            if (listener != null) {
+                listener.onTransactionFinished(this, System.nanoTime() - successState.outerTransactionStartNanos,
+                        successState.outerTransactionSuccess);
             }
+            flushAccumulatedNotifications(successState.accumulatedNotifications,
+                    successState.outerTransactionSuccess);
+            successState.reset();
         }
     }
 
     // Tracks nested transaction success or failure state. If any
     // nested transaction fails, the entire outer transaction
-    // is also considered to have failed.
+    // is also considered to have failed. Also holds the notifications
+    // accumulated by DataChangedNotifiers until the transaction ends.
     private static class TransactionSuccessState {
 
         Deque<Boolean> nestedSuccessStack = new LinkedList<>();
         boolean outerTransactionSuccess = true;
+        long outerTransactionStartNanos = 0;
+        final Map<DataChangedNotifier<?>, Set<Object>> accumulatedNotifications = new HashMap<>();
 
         private void beginTransaction() {
+            if (nestedSuccessStack.isEmpty()) {
+                outerTransactionStartNanos = System.nanoTime();
+            }
             nestedSuccessStack.push(false);
         }
 
@@ -1105,6 +1617,36 @@ public abstract class SquidDatabase {
         }
     };
 
+    // Returns the calling thread's own transaction state, or in VIRTUAL_THREADS mode the connection's transaction
+    // state if the calling thread owns the active transaction and null otherwise
+    private TransactionSuccessState getTransactionState() {
+        if (transactionLock == null) {
+            return transactionSuccessState.get();
+        }
+        return transactionLock.isHeldByCurrentThread() ? connectionTransactionState : null;
+    }
+
+    private boolean isInTransactionState() {
+        TransactionSuccessState successState = getTransactionState();
+        return successState != null && successState.inTransaction();
+    }
+
+    // Called once for each transaction begun. In VIRTUAL_THREADS mode, blocks until no other thread owns the
+    // connection's transaction; ownership is held until the matching call to releaseTransactionState.
+    private TransactionSuccessState acquireTransactionState() {
+        if (transactionLock == null) {
+            return transactionSuccessState.get();
+        }
+        transactionLock.lock();
+        return connectionTransactionState;
+    }
+
+    private void releaseTransactionState() {
+        if (transactionLock != null) {
+            transactionLock.unlock();
+        }
+    }
+
     /**
      * Yield the current transaction
      *
@@ -1126,6 +1668,80 @@ public abstract class SquidDatabase {
         return getDatabase().yieldIfContendedSafely(sleepAfterYieldDelay);
     }
 
+    /**
+     * A unit of read-only work to run in {@link #readTransaction(ReadTransactionCallback)}
+     *
+     * @param <T> the type of the callback's result
+     */
+    public interface ReadTransactionCallback<T> {
+
+        T run(SquidDatabase database);
+    }
+
+    /**
+     * Run the given callback with a consistent snapshot of the database. When a read connection pool is enabled (see
+     * {@link #setReadConnectionPoolSize(int)}), one read-only connection is pinned to the calling thread in a deferred
+     * read transaction for the duration of the callback, and every query the callback makes through this database
+     * runs on it. All of those queries see the database as of the first one, regardless of writes committed by other
+     * threads in the meantime, and writers are never blocked by the read transaction.
+     * <p>
+     * If no read connection is available (the pool is disabled or unsupported by the open helper, or the calling
+     * thread is already in a transaction), the callback instead runs in a transaction on the primary connection begun
+     * with {@link #beginTransactionNonExclusive()}, which is also consistent but blocks other writers until it ends.
+     * <p>
+     * The callback must not write to the database: writes always run on the primary connection, and would not be
+     * visible to the queries in the snapshot. Calls to readTransaction nested inside the callback reuse the same
+     * snapshot.
+     *
+     * @param callback the queries to run
+     * @return the value returned by the callback
+     */
+    @Beta
+    public <T> T readTransaction(ReadTransactionCallback<T> callback) {
+        if (getPinnedReadConnection() != null) {
+            return callback.run(this);
+        }
+        acquireNonExclusiveLock();
+        try {
+            ReadConnectionPool pool = getReadConnectionPool();
+            ISQLiteDatabase readConnection = pool != null ? pool.acquire() : null;
+            if (readConnection == null) {
+                beginTransactionNonExclusive();
+                try {
+                    T result = callback.run(this);
+                    setTransactionSuccessful();
+                    return result;
+                } finally {
+                    endTransaction();
+                }
+            }
+            try {
+                readConnection.execSQL("BEGIN DEFERRED");
+                pinnedReadConnections.put(Thread.currentThread(), readConnection);
+                try {
+                    return callback.run(this);
+                } finally {
+                    pinnedReadConnections.remove(Thread.currentThread());
+                    readConnection.execSQL("COMMIT");
+                }
+            } finally {
+                pool.release(readConnection);
+            }
+        } finally {
+            releaseNonExclusiveLock();
+        }
+    }
+
+    // The read connection pinned by readTransaction on the current thread, unless the thread has since begun a
+    // transaction on the primary connection
+    private ISQLiteDatabase getPinnedReadConnection() {
+        if (pinnedReadConnections.isEmpty()) {
+            return null;
+        }
+        ISQLiteDatabase pinned = pinnedReadConnections.get(Thread.currentThread());
+        return pinned != null && !isInTransactionState() ? pinned : null;
+    }
+
     /**
      * Acquires an exclusive lock on the database. This is semantically similar to acquiring a write lock in a {@link
      * java.util.concurrent.locks.ReadWriteLock ReadWriteLock} but it is not generally necessary for protecting actual
@@ -1139,18 +1755,29 @@ public abstract class SquidDatabase {
      * prevent any new non-exclusive locks from being acquired while it blocks.
      */
     protected void acquireExclusiveLock() {
-        if (readWriteLock.getReadHoldCount() > 0 && readWriteLock.getWriteHoldCount() == 0) {
+        if (lock.holdsOnlySharedLock()) {
             throw new IllegalStateException("Can't acquire an exclusive lock when the calling thread is in a "
                     + "transaction or otherwise holds a non-exclusive lock and not the exclusive lock");
         }
-        readWriteLock.writeLock().lock();
+        SquidMetricsListener listener = metricsListener;
+        if (listener == null) {
+            lock.lockExclusive();
+            return;
+        }
+        // Check for contention rather than trying the lock first, so that measuring doesn't change who gets the lock
+        boolean contended = lock.isExclusiveContended();
+        long startNanos = System.nanoTime();
+        lock.lockExclusive();
+        if (contended) {
+            listener.onLockContended(this, true, System.nanoTime() - startNanos);
+        }
     }
 
     /**
      * Release the exclusive lock acquired by {@link #acquireExclusiveLock()}
      */
     protected void releaseExclusiveLock() {
-        readWriteLock.writeLock().unlock();
+        lock.unlockExclusive();
     }
 
     /**
@@ -1160,14 +1787,25 @@ public abstract class SquidDatabase {
      * by some other thread. Many threads can hold non-exclusive locks as long as no thread holds the exclusive lock.
      */
     protected void acquireNonExclusiveLock() {
-        readWriteLock.readLock().lock();
+        SquidMetricsListener listener = metricsListener;
+        if (listener == null) {
+            lock.lockShared();
+            return;
+        }
+        // A tryLock here would let readers barge past queued writers in READ_WRITE mode and starve them
+        boolean contended = lock.isSharedContended();
+        long startNanos = System.nanoTime();
+        lock.lockShared();
+        if (contended) {
+            listener.onLockContended(this, false, System.nanoTime() - startNanos);
+        }
     }
 
     /**
      * Releases a non-exclusive lock acquired with {@link #acquireNonExclusiveLock()}
      */
     protected void releaseNonExclusiveLock() {
-        readWriteLock.readLock().unlock();
+        lock.unlockShared();
     }
 
     // --- helper classes
@@ -1284,13 +1922,16 @@ public abstract class SquidDatabase {
     }
 
     private void setDatabase(ISQLiteDatabase db) {
-        synchronized (databaseInstanceLock) {
+        databaseInstanceLock.lock();
+        try {
             // If we're already holding a reference to the same object, don't need to update or recalculate the version
             if (database != null && db != null && db.getWrappedObject() == database.getWrappedObject()) {
                 return;
             }
             sqliteVersion = db != null ? readSqliteVersionLocked(db) : null;
             database = db;
+        } finally {
+            databaseInstanceLock.unlock();
         }
     }
 
@@ -1444,7 +2085,7 @@ public abstract class SquidDatabase {
      * @return true if the statement executed without error, false otherwise
      */
     public boolean tryExecStatement(SqlStatement statement) {
-        CompiledStatement compiled = statement.compile(getCompileContext());
+        CompiledStatement compiled = compileForExecution(statement);
         return tryExecSql(compiled.sql, compiled.sqlArgs);
     }
 
@@ -1532,9 +2173,12 @@ public abstract class SquidDatabase {
         if (toReturn == null) {
             acquireNonExclusiveLock();
             try {
-                synchronized (databaseInstanceLock) {
+                databaseInstanceLock.lock();
+                try {
                     getDatabase(); // Opening the database will populate the sqliteVersion field
                     return sqliteVersion;
+                } finally {
+                    databaseInstanceLock.unlock();
                 }
             } finally {
                 releaseNonExclusiveLock();
@@ -1693,12 +2337,60 @@ public abstract class SquidDatabase {
      * @return a {@link SquidCursor} containing the query results
      */
     public <TYPE extends AbstractModel> SquidCursor<TYPE> query(Class<TYPE> modelClass, Query query) {
+        return queryInternal(modelClass, query, null, null);
+    }
+
+    /**
+     * Query the database, binding values to the {@link QueryParameter QueryParameters} in the query by name. The
+     * query is compiled once, so running it repeatedly with different values reuses the same SQL string.
+     *
+     * @param modelClass the type to parameterize the cursor by. If the query does not contain a FROM clause, the table
+     * or view corresponding to this model class will be used.
+     * @param query the query to execute, containing parameters created with {@link Query#param(String)}
+     * @param parameters values for each parameter in the query, keyed by name
+     * @return a {@link SquidCursor} containing the query results
+     * @throws IllegalArgumentException if a parameter has no value or a value is given for an unknown parameter
+     */
+    @Beta
+    public <TYPE extends AbstractModel> SquidCursor<TYPE> query(Class<TYPE> modelClass, Query query,
+            Map<String, ?> parameters) {
+        return queryInternal(modelClass, query, parameters, null);
+    }
+
+    /**
+     * Query the database, binding positional values to the {@link QueryParameter QueryParameters} in the query. Values
+     * are matched to parameters in the order each parameter name first appears in the compiled SQL; see
+     * {@link CompiledStatement#getParameterNames()}.
+     *
+     * @param modelClass the type to parameterize the cursor by. If the query does not contain a FROM clause, the table
+     * or view corresponding to this model class will be used.
+     * @param query the query to execute, containing parameters created with {@link Query#param(String)}
+     * @param parameters one value for each distinct parameter in the query
+     * @return a {@link SquidCursor} containing the query results
+     * @throws IllegalArgumentException if the number of values doesn't match the number of parameters
+     */
+    @Beta
+    public <TYPE extends AbstractModel> SquidCursor<TYPE> query(Class<TYPE> modelClass, Query query,
+            Object... parameters) {
+        return queryInternal(modelClass, query, null, parameters);
+    }
+
+    private <TYPE extends AbstractModel> SquidCursor<TYPE> queryInternal(Class<TYPE> modelClass, Query query,
+            Map<String, ?> namedParameters, Object[] positionalParameters) {
         query = inferTableForQuery(modelClass, query);
-        CompiledStatement compiled = query.compile(getCompileContext());
+        CompileContext compileContext = getCompileContext();
+        CompiledStatement compiled = query.compile(compileContext);
         if (compiled.needsValidation) {
-            String validateSql = query.sqlForValidation(getCompileContext());
+            String validateSql = query.sqlForValidation(compileContext);
             ensureSqlCompiles(validateSql); // throws if the statement fails to compile
         }
+        if (namedParameters != null) {
+            compiled = compiled.bindParameters(namedParameters, compileContext.getArgumentResolver());
+        } else if (positionalParameters != null) {
+            compiled = compiled.bindParameters(positionalParameters, compileContext.getArgumentResolver());
+        } else {
+            checkNoUnboundParameters(compiled);
+        }
         ICursor cursor = rawQuery(compiled.sql, compiled.sqlArgs);
         return new SquidCursor<>(cursor, modelClass, query.getFields());
     }
@@ -1768,6 +2460,70 @@ public abstract class SquidDatabase {
         return returnFetchResult(modelClass, cursor);
     }
 
+    /**
+     * Run the query and return an iterator that reads each row of the result into a model. The iterator reuses a
+     * single model instance for every row, so iterating over a large result set runs in constant memory; call
+     * {@link ModelIterator#copyingModels()} before iterating to read each row into a new instance instead. The
+     * underlying cursor is closed once the last row is read, or when {@link ModelIterator#close()} is called to stop
+     * early.
+     *
+     * @param modelClass the model class to read each row into. If the query does not contain a FROM clause, the table
+     * or view corresponding to this model class will be used.
+     * @param query the query to execute
+     * @return a {@link ModelIterator} over the query results
+     */
+    @Beta
+    public <TYPE extends AbstractModel> ModelIterator<TYPE> stream(Class<TYPE> modelClass, Query query) {
+        return new ModelIterator<>(query(modelClass, query), modelClass);
+    }
+
+    /**
+     * Run the query and pass a model read from each row of the result to the given {@link ModelVisitor}, reusing a
+     * single model instance for every row. Iteration stops early if the visitor returns false. The underlying cursor
+     * is always closed before this method returns.
+     *
+     * @param modelClass the model class to read each row into. If the query does not contain a FROM clause, the table
+     * or view corresponding to this model class will be used.
+     * @param query the query to execute
+     * @param visitor the visitor to call for each row
+     * @return the number of rows passed to the visitor
+     */
+    @Beta
+    public <TYPE extends AbstractModel> int forEach(Class<TYPE> modelClass, Query query, ModelVisitor<TYPE> visitor) {
+        return forEach(modelClass, query, visitor, false);
+    }
+
+    /**
+     * Like {@link #forEach(Class, Query, ModelVisitor)}, but if copyModels is true each row is read into a new model
+     * instance, so the visitor may safely hold on to the models it is passed.
+     *
+     * @param modelClass the model class to read each row into
+     * @param query the query to execute
+     * @param visitor the visitor to call for each row
+     * @param copyModels true to read each row into a new model instance, false to reuse a single instance
+     * @return the number of rows passed to the visitor
+     */
+    @Beta
+    public <TYPE extends AbstractModel> int forEach(Class<TYPE> modelClass, Query query, ModelVisitor<TYPE> visitor,
+            boolean copyModels) {
+        ModelIterator<TYPE> iterator = stream(modelClass, query);
+        try {
+            if (copyModels) {
+                iterator.copyingModels();
+            }
+            int visited = 0;
+            while (iterator.hasNext()) {
+                visited++;
+                if (!visitor.visit(iterator.next())) {
+                    break;
+                }
+            }
+            return visited;
+        } finally {
+            iterator.close();
+        }
+    }
+
     protected <TYPE extends AbstractModel> TYPE returnFetchResult(Class<TYPE> modelClass, SquidCursor<TYPE> cursor) {
         try {
             if (cursor.getCount() == 0) {
@@ -1792,7 +2548,26 @@ public abstract class SquidDatabase {
      */
     public boolean delete(Class<? extends TableModel> modelClass, long id) {
         Table table = getTable(modelClass);
-        int rowsUpdated = deleteInternal(Delete.from(table).where(table.getRowIdProperty().eq(id)));
+        int rowsUpdated;
+        PreparedUpdateDeleteCache deleteCache = preparedInsertCacheEnabled ? getPreparedUpdateDeleteCache() : null;
+        if (deleteCache != null) {
+            acquireNonExclusiveLock();
+            try {
+                SquidMetricsListener listener = metricsListener;
+                long startNanos = listener != null ? System.nanoTime() : 0;
+                ISQLitePreparedStatement statement = deleteCache.getPreparedDeleteById(this, table);
+                statement.bindLong(1, id);
+                rowsUpdated = statement.executeUpdateDelete();
+                if (listener != null) {
+                    reportPreparedStatementExecuted(listener, StatementMetrics.Type.DELETE, statement, startNanos,
+                            rowsUpdated);
+                }
+            } finally {
+                releaseNonExclusiveLock();
+            }
+        } else {
+            rowsUpdated = deleteInternal(Delete.from(table).where(table.getRowIdProperty().eq(id)));
+        }
         if (rowsUpdated > 0) {
             notifyForTable(DataChangedNotifier.DBOperation.DELETE, null, table, id);
         }
@@ -1994,6 +2769,101 @@ public abstract class SquidDatabase {
         return updateRow(item, null);
     }
 
+    /**
+     * Save a collection of models to the database in a single transaction. Each model is persisted as if by
+     * {@link #persist(TableModel)}: models without an ID are inserted as new rows, and modified models with an ID update
+     * the corresponding row.
+     * <p>
+     * This is considerably faster than calling {@link #persist(TableModel)} in a loop for large collections. The
+     * database lock and transaction are acquired once, a single prepared insert statement is reused for all models of
+     * the same table (even if the prepared insert cache is disabled), and data changed notifiers are flushed once when
+     * the transaction ends rather than after each row. Models may belong to different tables. If an exception is thrown
+     * while saving any model, the entire transaction is rolled back.
+     *
+     * @param items the models to save
+     * @return the number of models whose current data is stored in the database
+     */
+    public int persistAll(Collection<? extends TableModel> items) {
+        return persistAllWithOnConflict(items, null);
+    }
+
+    /**
+     * Same as {@link #persistAll(Collection)} with the ability to specify a ConflictAlgorithm for handling constraint
+     * violations
+     *
+     * @param items the models to save
+     * @param conflictAlgorithm the conflict algorithm to use
+     * @return the number of models whose current data is stored in the database
+     */
+    public int persistAllWithOnConflict(Collection<? extends TableModel> items,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        return saveAll(items, conflictAlgorithm, false);
+    }
+
+    /**
+     * Insert a collection of models into the database in a single transaction. Like {@link #createNew(TableModel)},
+     * this always inserts a new row for each model and sets the ID of the model to the corresponding row ID. See
+     * {@link #persistAll(Collection)} for a description of the batching behavior.
+     *
+     * @param items the models to insert
+     * @return the number of models successfully inserted
+     */
+    public int insertAll(Collection<? extends TableModel> items) {
+        return insertAllWithOnConflict(items, null);
+    }
+
+    /**
+     * Same as {@link #insertAll(Collection)} with the ability to specify a ConflictAlgorithm for handling constraint
+     * violations
+     *
+     * @param items the models to insert
+     * @param conflictAlgorithm the conflict algorithm to use
+     * @return the number of models successfully inserted
+     */
+    public int insertAllWithOnConflict(Collection<? extends TableModel> items,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        return saveAll(items, conflictAlgorithm, true);
+    }
+
+    private int saveAll(Collection<? extends TableModel> items, TableStatement.ConflictAlgorithm conflictAlgorithm,
+            boolean alwaysInsert) {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        int numSaved = 0;
+        // The transaction holds the non-exclusive lock for the whole batch, and defers notifier flushing until it ends
+        beginTransactionNonExclusive();
+        try {
+            // If the shared cache is disabled, use one that lives only as long as this batch
+            PreparedInsertCache batchInsertCache = preparedInsertCacheEnabled ? preparedInsertCache
+                    : new PreparedInsertCache(trackedPreparedStatements);
+            try {
+                for (TableModel item : items) {
+                    if (alwaysInsert) {
+                        item.setRowId(TableModel.NO_ID);
+                    }
+                    boolean saved;
+                    if (alwaysInsert || !item.isSaved()) {
+                        saved = insertRowPrepared(item, conflictAlgorithm, batchInsertCache);
+                    } else {
+                        saved = updateRow(item, conflictAlgorithm);
+                    }
+                    if (saved) {
+                        numSaved++;
+                    }
+                }
+            } finally {
+                if (!preparedInsertCacheEnabled) {
+                    batchInsertCache.close();
+                }
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        return numSaved;
+    }
+
     /**
      * Inserts a new row using the item's merged values into the DB.
      * <p>
@@ -2018,25 +2888,42 @@ public abstract class SquidDatabase {
      * @return true if success, false otherwise
      */
     protected final boolean insertRow(TableModel item, TableStatement.ConflictAlgorithm conflictAlgorithm) {
-        Class<? extends TableModel> modelClass = item.getClass();
-        Table table = getTable(modelClass);
-
-        long newRow;
         if (preparedInsertCacheEnabled) {
             acquireNonExclusiveLock();
             try {
-                PreparedInsertCache insertCache = preparedInsertCache.get();
-                ISQLitePreparedStatement preparedStatement =
-                        insertCache.getPreparedInsert(this, table, conflictAlgorithm);
-                item.bindValuesForInsert(table, preparedStatement);
-                newRow = preparedStatement.executeInsert();
+                return insertRowPrepared(item, conflictAlgorithm, preparedInsertCache);
             } finally {
                 releaseNonExclusiveLock();
             }
-        } else {
-            newRow = insertRowLegacy(item, table, conflictAlgorithm);
         }
 
+        Table table = getTable(item.getClass());
+        long newRow = insertRowLegacy(item, table, conflictAlgorithm);
+        return onRowInserted(item, table, newRow);
+    }
+
+    // Callers must hold the non-exclusive lock
+    private boolean insertRowPrepared(TableModel item, TableStatement.ConflictAlgorithm conflictAlgorithm,
+            PreparedInsertCache insertCache) {
+        SquidMetricsListener listener = metricsListener;
+        long startNanos = listener != null ? System.nanoTime() : 0;
+        Table table = getTable(item.getClass());
+        ISQLitePreparedStatement preparedStatement = insertCache.acquire(this, table, conflictAlgorithm);
+        long newRow;
+        try {
+            item.bindValuesForInsert(table, preparedStatement);
+            newRow = preparedStatement.executeInsert();
+            if (listener != null) {
+                reportPreparedStatementExecuted(listener, StatementMetrics.Type.INSERT, preparedStatement, startNanos,
+                        newRow > 0 ? 1 : 0);
+            }
+        } finally {
+            insertCache.release(table, conflictAlgorithm, preparedStatement);
+        }
+        return onRowInserted(item, table, newRow);
+    }
+
+    private boolean onRowInserted(TableModel item, Table table, long newRow) {
         boolean result = newRow > 0;
         if (result) {
             notifyForTable(DataChangedNotifier.DBOperation.INSERT, item, table, newRow);
@@ -2087,11 +2974,18 @@ public abstract class SquidDatabase {
 
         Class<? extends TableModel> modelClass = item.getClass();
         Table table = getTable(modelClass);
-        Update update = Update.table(table).fromTemplate(item).where(table.getRowIdProperty().eq(item.getRowId()));
-        if (conflictAlgorithm != null) {
-            update.onConflict(conflictAlgorithm);
+        int rowsUpdated = -1;
+        if (preparedInsertCacheEnabled) {
+            rowsUpdated = updateRowPrepared(item, table, conflictAlgorithm);
+        }
+        if (rowsUpdated < 0) {
+            Update update = Update.table(table).fromTemplate(item).where(table.getRowIdProperty().eq(item.getRowId()));
+            if (conflictAlgorithm != null) {
+                update.onConflict(conflictAlgorithm);
+            }
+            rowsUpdated = updateInternal(update);
         }
-        boolean result = updateInternal(update) > 0;
+        boolean result = rowsUpdated > 0;
         if (result) {
             notifyForTable(DataChangedNotifier.DBOperation.UPDATE, item, table, item.getRowId());
             item.markSaved();
@@ -2099,6 +2993,42 @@ public abstract class SquidDatabase {
         return result;
     }
 
+    // Returns -1 if no prepared statement could be built for the item's set values, or no cache is available
+    private int updateRowPrepared(TableModel item, Table table, TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        PreparedUpdateDeleteCache updateCache = getPreparedUpdateDeleteCache();
+        if (updateCache == null) {
+            return -1;
+        }
+        ValuesStorage setValues = item.getSetValues();
+        // Sort the columns so the same set of columns always maps to the same cached statement
+        List<String> columns = new ArrayList<>(setValues.keySet());
+        Collections.sort(columns);
+        ArgumentResolver argumentResolver = getCompileContext().getArgumentResolver();
+
+        acquireNonExclusiveLock();
+        try {
+            SquidMetricsListener listener = metricsListener;
+            long startNanos = listener != null ? System.nanoTime() : 0;
+            ISQLitePreparedStatement statement = updateCache.getPreparedUpdateById(this, table, columns,
+                    conflictAlgorithm);
+            if (statement == null) {
+                return -1;
+            }
+            int index = 1;
+            for (String column : columns) {
+                bindArgument(statement, index++, argumentResolver.resolveArgument(setValues.get(column)));
+            }
+            statement.bindLong(index, item.getRowId());
+            int result = statement.executeUpdateDelete();
+            if (listener != null) {
+                reportPreparedStatementExecuted(listener, StatementMetrics.Type.UPDATE, statement, startNanos, result);
+            }
+            return result;
+        } finally {
+            releaseNonExclusiveLock();
+        }
+    }
+
     /**
      * Executes an {@link Insert} statement.
      * <p>
@@ -2119,6 +3049,123 @@ public abstract class SquidDatabase {
         return result;
     }
 
+    /**
+     * Insert an arbitrarily large number of rows into a table using multi-row INSERT statements. Rows are read from the
+     * iterable as needed and grouped into chunks of {@link Insert#getMaxRowsPerInsert(int, VersionCode)} rows, so that
+     * no statement exceeds SQLite's bound argument limit. A single compiled statement is reused for every full chunk;
+     * only the final partial chunk (if any) requires compiling another statement. All rows are inserted in a single
+     * transaction, and data changed notifiers are notified once for the whole batch.
+     * <p>
+     * Each row must contain exactly one value per column, in the same order as the columns. Values are bound as
+     * arguments using the database's {@link com.yahoo.squidb.sql.ArgumentResolver}, so they must be literal values
+     * rather than SQL expressions like {@link Property Properties} or functions.
+     *
+     * @param table the table to insert into
+     * @param columns the columns to insert values for
+     * @param rows the rows of values to insert
+     * @param conflictAlgorithm the conflict algorithm to use, or null for none
+     * @return the total number of rows inserted
+     */
+    public int insertBatch(Table table, Property<?>[] columns, Iterable<Object[]> rows,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        int numColumns = columns.length;
+        CompileContext compileContext = getCompileContext();
+        int rowsPerStatement = Insert.getMaxRowsPerInsert(numColumns, compileContext.getVersionCode());
+        ArgumentResolver argumentResolver = compileContext.getArgumentResolver();
+
+        Object[] chunkArgs = new Object[rowsPerStatement * numColumns];
+        int rowsInChunk = 0;
+        int rowsInserted = 0;
+        beginTransactionNonExclusive();
+        try {
+            ISQLitePreparedStatement fullChunkStatement = null;
+            try {
+                for (Object[] row : rows) {
+                    if (row.length != numColumns) {
+                        throw new IllegalArgumentException("Number of values in each row must match the number of "
+                                + "columns specified.");
+                    }
+                    System.arraycopy(row, 0, chunkArgs, rowsInChunk * numColumns, numColumns);
+                    rowsInChunk++;
+                    if (rowsInChunk == rowsPerStatement) {
+                        if (fullChunkStatement == null) {
+                            fullChunkStatement = prepareBatchInsert(table, columns, rowsPerStatement,
+                                    conflictAlgorithm, compileContext);
+                        }
+                        rowsInserted += executeBatchInsert(fullChunkStatement, chunkArgs, chunkArgs.length,
+                                argumentResolver);
+                        rowsInChunk = 0;
+                    }
+                }
+            } finally {
+                if (fullChunkStatement != null) {
+                    fullChunkStatement.close();
+                }
+            }
+
+            if (rowsInChunk > 0) {
+                ISQLitePreparedStatement partialChunkStatement = prepareBatchInsert(table, columns, rowsInChunk,
+                        conflictAlgorithm, compileContext);
+                try {
+                    rowsInserted += executeBatchInsert(partialChunkStatement, chunkArgs, rowsInChunk * numColumns,
+                            argumentResolver);
+                } finally {
+                    partialChunkStatement.close();
+                }
+            }
+
+            if (rowsInserted > 0) {
+                notifyForTable(DataChangedNotifier.DBOperation.INSERT, null, table, TableModel.NO_ID);
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        return rowsInserted;
+    }
+
+    private ISQLitePreparedStatement prepareBatchInsert(Table table, Property<?>[] columns, int numRows,
+            TableStatement.ConflictAlgorithm conflictAlgorithm, CompileContext compileContext) {
+        Object[] placeholders = new Object[columns.length];
+        Arrays.fill(placeholders, new Object());
+
+        Insert insert = Insert.into(table).columns(columns);
+        for (int i = 0; i < numRows; i++) {
+            insert.values(placeholders);
+        }
+        if (conflictAlgorithm != null) {
+            insert.onConflict(conflictAlgorithm);
+        }
+        return prepareStatement(insert.compile(compileContext).sql);
+    }
+
+    private static int executeBatchInsert(ISQLitePreparedStatement statement, Object[] args, int numArgs,
+            ArgumentResolver argumentResolver) {
+        for (int i = 0; i < numArgs; i++) {
+            bindArgument(statement, i + 1, argumentResolver.resolveArgument(args[i]));
+        }
+        return statement.executeUpdateDelete();
+    }
+
+    private static void bindArgument(ISQLitePreparedStatement statement, int index, Object arg) {
+        if (arg == null) {
+            statement.bindNull(index);
+        } else if (arg instanceof Double || arg instanceof Float) {
+            statement.bindDouble(index, ((Number) arg).doubleValue());
+        } else if (arg instanceof Number) {
+            statement.bindLong(index, ((Number) arg).longValue());
+        } else if (arg instanceof Boolean) {
+            statement.bindLong(index, (Boolean) arg ? 1 : 0);
+        } else if (arg instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) arg);
+        } else if (arg instanceof QueryParameter) {
+            throw new IllegalArgumentException("No value bound for query parameter "
+                    + ((QueryParameter) arg).getName());
+        } else {
+            statement.bindString(index, arg.toString());
+        }
+    }
+
     // --- helper methods
 
     protected <TYPE extends TableModel> SquidCursor<TYPE> fetchItemById(Class<TYPE> modelClass, long id,
@@ -2159,13 +3206,7 @@ public abstract class SquidDatabase {
             query.where(criterion);
         }
         query = inferTableForQuery(modelClass, query);
-        CompiledStatement compiled = query.compile(getCompileContext());
-        acquireNonExclusiveLock();
-        try {
-            return (int) getDatabase().simpleQueryForLong(compiled.sql, compiled.sqlArgs);
-        } finally {
-            releaseNonExclusiveLock();
-        }
+        return (int) simpleQueryForLong(query);
     }
 
     /**
@@ -2180,20 +3221,11 @@ public abstract class SquidDatabase {
 
     // --- Data change notifications
 
-    private final Object notifiersLock = new Object();
+    private final ReentrantLock notifiersLock = new ReentrantLock();
     private boolean dataChangedNotificationsEnabled = true;
     private List<DataChangedNotifier<?>> globalNotifiers = new ArrayList<>();
     private Map<SqlTable<?>, List<DataChangedNotifier<?>>> tableNotifiers = new HashMap<>();
 
-    // Using a ThreadLocal makes it easy to have one accumulator set per transaction, since
-    // transactions are also associated with the thread they run on
-    private ThreadLocal<Set<DataChangedNotifier<?>>> notifierAccumulator
-            = new ThreadLocal<Set<DataChangedNotifier<?>>>() {
-        protected Set<DataChangedNotifier<?>> initialValue() {
-            return new HashSet<>();
-        }
-    };
-
     /**
      * Register a {@link DataChangedNotifier} to listen for database changes. The DataChangedNotifier object will be
      * notified whenever a table it is interested is modified, and can accumulate a set of notifications to send when
@@ -2205,7 +3237,8 @@ public abstract class SquidDatabase {
         if (notifier == null) {
             return;
         }
-        synchronized (notifiersLock) {
+        notifiersLock.lock();
+        try {
             Collection<SqlTable<?>> tables = notifier.whichTables();
             if (tables == null || tables.isEmpty()) {
                 globalNotifiers.add(notifier);
@@ -2219,6 +3252,8 @@ public abstract class SquidDatabase {
                     notifiersForTable.add(notifier);
                 }
             }
+        } finally {
+            notifiersLock.unlock();
         }
     }
 
@@ -2232,7 +3267,8 @@ public abstract class SquidDatabase {
         if (notifier == null) {
             return;
         }
-        synchronized (notifiersLock) {
+        notifiersLock.lock();
+        try {
             Collection<SqlTable<?>> tables = notifier.whichTables();
             if (tables == null || tables.isEmpty()) {
                 globalNotifiers.remove(notifier);
@@ -2244,6 +3280,8 @@ public abstract class SquidDatabase {
                     }
                 }
             }
+        } finally {
+            notifiersLock.unlock();
         }
     }
 
@@ -2252,9 +3290,12 @@ public abstract class SquidDatabase {
      * {@link #registerDataChangedNotifier(DataChangedNotifier)}
      */
     public void unregisterAllDataChangedNotifiers() {
-        synchronized (notifiersLock) {
+        notifiersLock.lock();
+        try {
             globalNotifiers.clear();
             tableNotifiers.clear();
+        } finally {
+            notifiersLock.unlock();
         }
     }
 
@@ -2278,33 +3319,64 @@ public abstract class SquidDatabase {
         if (!dataChangedNotificationsEnabled) {
             return;
         }
-        synchronized (notifiersLock) {
-            onDataChanged(globalNotifiers, op, modelValues, table, rowId);
-            onDataChanged(tableNotifiers.get(table), op, modelValues, table, rowId);
+        // Notifications are accumulated until the current transaction ends. A thread with no transaction state of
+        // its own is never in a transaction, so its notifications are sent right away; its accumulator is only
+        // created if some notifier actually accumulates something.
+        TransactionSuccessState successState = getTransactionState();
+        Map<DataChangedNotifier<?>, Set<Object>> accumulator = successState != null
+                ? successState.accumulatedNotifications : null;
+        notifiersLock.lock();
+        try {
+            accumulator = onDataChanged(accumulator, globalNotifiers, op, modelValues, table, rowId);
+            accumulator = onDataChanged(accumulator, tableNotifiers.get(table), op, modelValues, table, rowId);
+        } finally {
+            notifiersLock.unlock();
         }
-        if (!inTransaction()) {
-            flushAccumulatedNotifications(true);
+        if (accumulator != null && (successState == null || !inTransaction())) {
+            flushAccumulatedNotifications(accumulator, true);
         }
     }
 
-    private void onDataChanged(List<DataChangedNotifier<?>> notifiers, DataChangedNotifier.DBOperation op,
-            AbstractModel modelValues, SqlTable<?> table, long rowId) {
-        if (notifiers != null) {
-            for (DataChangedNotifier<?> notifier : notifiers) {
-                if (notifier.onDataChanged(table, this, op, modelValues, rowId)) {
-                    notifierAccumulator.get().add(notifier);
+    // Returns the accumulator, which is created on demand if it was null. A notifier that has nothing accumulated
+    // yet is handed a scratch set, which is only kept if the notifier adds to it and is otherwise reused for the next
+    // notifier, so notifiers that ignore a change don't cost an allocation each.
+    private Map<DataChangedNotifier<?>, Set<Object>> onDataChanged(
+            Map<DataChangedNotifier<?>, Set<Object>> accumulator, List<DataChangedNotifier<?>> notifiers,
+            DataChangedNotifier.DBOperation op, AbstractModel modelValues, SqlTable<?> table, long rowId) {
+        if (notifiers == null || notifiers.isEmpty()) {
+            return accumulator;
+        }
+        Set<Object> scratch = null;
+        for (DataChangedNotifier<?> notifier : notifiers) {
+            Set<Object> notifyObjects = accumulator != null ? accumulator.get(notifier) : null;
+            if (notifyObjects != null) {
+                notifier.onDataChanged(notifyObjects, table, this, op, modelValues, rowId);
+                continue;
+            }
+            if (scratch == null) {
+                scratch = new HashSet<>();
+            }
+            if (notifier.onDataChanged(scratch, table, this, op, modelValues, rowId)) {
+                if (accumulator == null) {
+                    accumulator = new HashMap<>();
                 }
+                accumulator.put(notifier, scratch);
+                scratch = null;
+            } else {
+                scratch.clear();
             }
         }
+        return accumulator;
     }
 
-    private void flushAccumulatedNotifications(boolean transactionSuccess) {
-        Set<DataChangedNotifier<?>> accumulatedNotifiers = notifierAccumulator.get();
-        if (!accumulatedNotifiers.isEmpty()) {
-            for (DataChangedNotifier<?> notifier : accumulatedNotifiers) {
-                notifier.flushAccumulatedNotifications(this, transactionSuccess && dataChangedNotificationsEnabled);
+    private void flushAccumulatedNotifications(Map<DataChangedNotifier<?>, Set<Object>> accumulator,
+            boolean transactionSuccess) {
+        if (!accumulator.isEmpty()) {
+            for (Map.Entry<DataChangedNotifier<?>, Set<Object>> entry : accumulator.entrySet()) {
+                entry.getKey().flushAccumulatedNotifications(entry.getValue(), this,
+                        transactionSuccess && dataChangedNotificationsEnabled);
             }
-            accumulatedNotifiers.clear();
+            accumulator.clear();
         }
     }
 
@@ -2326,6 +3398,22 @@ public abstract class SquidDatabase {
         }
     }
 
+    /**
+     * Directly analogous to {@link #query(Class, Query)}, but instead of returning a result, this method returns the
+     * output of EXPLAIN QUERY PLAN for the given query, parsed into a {@link QueryPlan}. The query is not executed.
+     */
+    @Beta
+    public QueryPlan getQueryPlan(Class<? extends AbstractModel> modelClass, Query query) {
+        query = inferTableForQuery(modelClass, query);
+        CompiledStatement compiled = query.compile(getCompileContext());
+        acquireNonExclusiveLock();
+        try {
+            return captureQueryPlan(compiled.sql, compiled.sqlArgs);
+        } finally {
+            releaseNonExclusiveLock();
+        }
+    }
+
     /**
      * Copies the database file and any supporting journal or WAL files needed to open the DB to the given directory.
      * This method acquires the exclusive lock on the database before copying, which will prevent any other threads
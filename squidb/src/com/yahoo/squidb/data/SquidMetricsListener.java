@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+/**
+ * Listener for timing and row count information about the work a {@link SquidDatabase} performs. Install one with
+ * {@link SquidDatabase#setMetricsListener(SquidMetricsListener)}. {@link HistogramMetricsListener} is a ready-made
+ * implementation that aggregates latencies into histograms.
+ * <p>
+ * Callbacks are invoked synchronously on the thread that performed the work, possibly while that thread holds the
+ * database lock or is inside a transaction. Implementations must be thread safe, should return quickly, and must not
+ * access the database.
+ */
+public interface SquidMetricsListener {
+
+    /**
+     * Called after a statement has been executed successfully
+     *
+     * @param database the database that executed the statement
+     * @param metrics information about the statement and its execution
+     */
+    void onStatementExecuted(SquidDatabase database, StatementMetrics metrics);
+
+    /**
+     * Called when an outermost transaction ends
+     *
+     * @param database the database the transaction was run on
+     * @param durationNanos time from the outermost begin to the end of the transaction, in nanoseconds
+     * @param successful true if the transaction was committed, false if it was rolled back
+     */
+    void onTransactionFinished(SquidDatabase database, long durationNanos, boolean successful);
+
+    /**
+     * Called when a thread had to wait to acquire one of the database's locks. Uncontended acquisitions are not
+     * reported.
+     *
+     * @param database the database whose lock was acquired
+     * @param exclusive true if the exclusive lock was acquired, false for the non-exclusive lock
+     * @param waitNanos how long the thread waited for the lock, in nanoseconds
+     */
+    void onLockContended(SquidDatabase database, boolean exclusive, long waitNanos);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+/**
+ * An immutable snapshot of the counters for a SquidDatabase's compiled statement cache
+ *
+ * @see SquidDatabase#getStatementCacheStats()
+ */
+public final class StatementCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+    private final int maxSize;
+
+    StatementCacheStats(long hitCount, long missCount, long evictionCount, int size, int maxSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the number of times a cached statement was reused
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of times a statement had to be prepared because no idle cached statement was available
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of statements closed to keep the cache within its maximum size
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of idle statements currently in the cache
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of statements the cache will hold
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCacheStats[hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+                + ", size=" + size + ", maxSize=" + maxSize + "]";
+    }
+}
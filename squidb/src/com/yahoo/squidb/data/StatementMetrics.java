@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.regex.Pattern;
+
+/**
+ * Information about a single statement executed by a {@link SquidDatabase}, passed to
+ * {@link SquidMetricsListener#onStatementExecuted(SquidDatabase, StatementMetrics)}
+ */
+public final class StatementMetrics {
+
+    public enum Type {
+        /**
+         * A query returning a cursor
+         */
+        QUERY,
+        /**
+         * A query returning a single long or String value, e.g. a count
+         */
+        SIMPLE_QUERY,
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Type type;
+    private final String sql;
+    private final long durationNanos;
+    private final long rowCount;
+    private final boolean fromStatementCache;
+    private String fingerprint = null;
+
+    StatementMetrics(Type type, String sql, long durationNanos, long rowCount, boolean fromStatementCache) {
+        this.type = type;
+        this.sql = sql;
+        this.durationNanos = durationNanos;
+        this.rowCount = rowCount;
+        this.fromStatementCache = fromStatementCache;
+    }
+
+    /**
+     * @return the kind of statement that was executed
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the SQL that was executed
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return a normalized form of the SQL with literal values and lists of arguments replaced by a single '?', so
+     * that statements differing only in their arguments can be grouped together
+     * @see #fingerprint(String)
+     */
+    public String getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = fingerprint(sql);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return how long the statement took to execute, in nanoseconds. This does not include time spent waiting for
+     * the database lock (see {@link SquidMetricsListener#onLockContended(SquidDatabase, boolean, long)})
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the number of rows returned by a query, or the number of rows inserted, updated or deleted
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return true if the statement was executed through one of SquidDatabase's prepared statement caches rather
+     * than being passed to the database as a SQL string
+     */
+    public boolean isFromStatementCache() {
+        return fromStatementCache;
+    }
+
+    /**
+     * Normalize a SQL string by replacing string and numeric literals with '?', collapsing lists of placeholders
+     * (e.g. in an IN clause) to a single '?', and collapsing whitespace
+     */
+    public static String fingerprint(String sql) {
+        String result = STRING_LITERAL.matcher(sql).replaceAll("?");
+        result = NUMERIC_LITERAL.matcher(result).replaceAll("?");
+        result = PLACEHOLDER_LIST.matcher(result).replaceAll("?");
+        return WHITESPACE.matcher(result).replaceAll(" ").trim();
+    }
+
+    @Override
+    public String toString() {
+        return type + " [" + sql + "] duration=" + durationNanos + "ns rows=" + rowCount
+                + (fromStatementCache ? " (cached)" : "");
+    }
+}
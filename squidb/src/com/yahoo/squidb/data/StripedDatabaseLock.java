@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// DatabaseLock that spreads non-exclusive holders across striped counters instead of a single shared count. With a
+// ReentrantReadWriteLock every non-exclusive acquire and release is a CAS on the same word, so that cache line bounces
+// between cores; here each thread increments the counter for its own stripe, and the stripes are padded onto separate
+// cache lines. Acquiring the exclusive lock is correspondingly more expensive: the writer announces itself, then waits
+// until the sum of all stripes reaches zero. This suits SquidDatabase, where the non-exclusive lock is taken by every
+// statement and the exclusive lock only by rare operations like close() and attachDatabase().
+//
+// A reader increments its stripe and then checks for an active writer; a writer sets the active flag and then sums
+// the stripes. Because both are volatile accesses, at least one of them sees the other, and a reader that sees the
+// writer backs out and waits for it to finish.
+//
+// Each thread's hold counts are normally kept in a ThreadLocal. When constructed to track holds by thread, they are
+// instead kept in a fixed table of preallocated slots that a thread claims for as long as it holds the lock, which
+// suits very large numbers of short-lived threads (e.g. virtual threads) that would otherwise each allocate
+// ThreadLocal entries. Claiming a slot is a CAS and allocates nothing; only when every slot a thread may probe is
+// taken does it fall back to allocating an entry in a concurrent overflow map.
+class StripedDatabaseLock extends DatabaseLock {
+
+    // 16 longs = 128 bytes, enough to keep adjacent stripes off each other's cache lines
+    private static final int PADDING = 16;
+
+    // Number of hold slots per stripe when tracking holds by thread, and how many slots a thread probes before
+    // falling back to the overflow map
+    private static final int SLOTS_PER_STRIPE = 8;
+    private static final int MAX_PROBES = 8;
+
+    private static class Holds {
+
+        final int stripeIndex;
+        int sharedHolds = 0;
+        boolean sharedCounted = false;
+        int exclusiveHolds = 0;
+
+        Holds(int stripeIndex) {
+            this.stripeIndex = stripeIndex;
+        }
+    }
+
+    private final int stripeMask;
+    private final AtomicLongArray counters;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final Condition readersDrained = writerLock.newCondition();
+    private final Condition writerFinished = writerLock.newCondition();
+    private volatile boolean writerActive = false;
+
+    // Exactly one of threadHolds and slotOwners is non-null. slotHolds and overflowHolds are only used with slotOwners.
+    private final ThreadLocal<Holds> threadHolds;
+    private final AtomicReferenceArray<Thread> slotOwners;
+    private final Holds[] slotHolds;
+    private final Map<Thread, Holds> overflowHolds;
+
+    StripedDatabaseLock() {
+        this(false);
+    }
+
+    StripedDatabaseLock(boolean trackHoldsByThread) {
+        this(Runtime.getRuntime().availableProcessors() * 2, trackHoldsByThread);
+    }
+
+    StripedDatabaseLock(int minStripes) {
+        this(minStripes, false);
+    }
+
+    StripedDatabaseLock(int minStripes, boolean trackHoldsByThread) {
+        int stripes = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        this.stripeMask = stripes - 1;
+        this.counters = new AtomicLongArray(stripes * PADDING);
+        if (trackHoldsByThread) {
+            int slots = stripes * SLOTS_PER_STRIPE;
+            this.threadHolds = null;
+            this.slotOwners = new AtomicReferenceArray<>(slots);
+            this.slotHolds = new Holds[slots];
+            for (int i = 0; i < slots; i++) {
+                slotHolds[i] = new Holds((i & stripeMask) * PADDING);
+            }
+            this.overflowHolds = new ConcurrentHashMap<>();
+        } else {
+            this.threadHolds = new ThreadLocal<Holds>() {
+                @Override
+                protected Holds initialValue() {
+                    return newHolds(Thread.currentThread());
+                }
+            };
+            this.slotOwners = null;
+            this.slotHolds = null;
+            this.overflowHolds = null;
+        }
+    }
+
+    private static int hash(Thread thread) {
+        // Spread sequential thread ids across the stripes
+        int hash = (int) (thread.getId() * 0x9E3779B9L);
+        return hash ^ (hash >>> 16);
+    }
+
+    private Holds newHolds(Thread thread) {
+        return new Holds((hash(thread) & stripeMask) * PADDING);
+    }
+
+    private Holds holds() {
+        if (threadHolds != null) {
+            return threadHolds.get();
+        }
+        // Only the current thread ever claims or frees a slot on its own behalf, and a thread never holds more than
+        // one slot or overflow entry, so finding an existing claim first and then claiming a free slot is race-free
+        Thread thread = Thread.currentThread();
+        int mask = slotOwners.length() - 1;
+        int start = hash(thread);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (slotOwners.get(slot) == thread) {
+                return slotHolds[slot];
+            }
+        }
+        Holds h = overflowHolds.get(thread);
+        if (h != null) {
+            return h;
+        }
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (slotOwners.get(slot) == null && slotOwners.compareAndSet(slot, null, thread)) {
+                return slotHolds[slot];
+            }
+        }
+        h = newHolds(thread);
+        overflowHolds.put(thread, h);
+        return h;
+    }
+
+    // Frees the current thread's slot or overflow entry once it holds nothing, so that only current holders occupy
+    // them. An idle slot's Holds is already zeroed and can be handed to the next thread as is.
+    private void releaseHoldsIfIdle(Holds h) {
+        if (slotOwners == null || h.sharedHolds != 0 || h.exclusiveHolds != 0) {
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        int mask = slotOwners.length() - 1;
+        int start = hash(thread);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (slotHolds[slot] == h) {
+                // Only the owner frees its slot; the volatile write publishes the zeroed Holds to the next owner
+                slotOwners.set(slot, null);
+                return;
+            }
+        }
+        overflowHolds.remove(thread);
+    }
+
+    @Override
+    void lockShared() {
+        Holds h = holds();
+        if (h.sharedHolds > 0 || h.exclusiveHolds > 0) {
+            // Reentrant acquire, or the writer itself; neither needs to touch the counters
+            h.sharedHolds++;
+            return;
+        }
+        while (!tryIncrement(h)) {
+            awaitWriterFinished();
+        }
+        h.sharedCounted = true;
+        h.sharedHolds = 1;
+    }
+
+    @Override
+    boolean tryLockShared() {
+        Holds h = holds();
+        if (h.sharedHolds > 0 || h.exclusiveHolds > 0) {
+            h.sharedHolds++;
+            return true;
+        }
+        if (writerActive || !tryIncrement(h)) {
+            releaseHoldsIfIdle(h);
+            return false;
+        }
+        h.sharedCounted = true;
+        h.sharedHolds = 1;
+        return true;
+    }
+
+    private boolean tryIncrement(Holds h) {
+        counters.incrementAndGet(h.stripeIndex);
+        if (!writerActive) {
+            return true;
+        }
+        decrement(h);
+        return false;
+    }
+
+    // The writer releases writerLock while it waits for readers to drain, so readers can't simply block on
+    // writerLock; they wait for the writer to clear its flag instead
+    private void awaitWriterFinished() {
+        writerLock.lock();
+        try {
+            while (writerActive) {
+                writerFinished.awaitUninterruptibly();
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void decrement(Holds h) {
+        counters.decrementAndGet(h.stripeIndex);
+        // Only the last reader out needs to wake a waiting writer. Each reader sums the stripes after its own
+        // decrement, so whichever reader decrements last is guaranteed to see zero.
+        if (writerActive && activeReaders() == 0) {
+            writerLock.lock();
+            try {
+                readersDrained.signalAll();
+            } finally {
+                writerLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    void unlockShared() {
+        Holds h = holds();
+        if (h.sharedHolds <= 0) {
+            releaseHoldsIfIdle(h);
+            throw new IllegalMonitorStateException("Non-exclusive lock is not held by the current thread");
+        }
+        if (--h.sharedHolds == 0 && h.sharedCounted) {
+            h.sharedCounted = false;
+            decrement(h);
+        }
+        releaseHoldsIfIdle(h);
+    }
+
+    @Override
+    void lockExclusive() {
+        Holds h = holds();
+        if (h.exclusiveHolds > 0) {
+            h.exclusiveHolds++;
+            return;
+        }
+        writerLock.lock();
+        writerActive = true;
+        while (activeReaders() > 0) {
+            readersDrained.awaitUninterruptibly();
+        }
+        h.exclusiveHolds = 1;
+    }
+
+    @Override
+    boolean tryLockExclusive() {
+        Holds h = holds();
+        if (h.exclusiveHolds > 0) {
+            h.exclusiveHolds++;
+            return true;
+        }
+        if (!writerLock.tryLock()) {
+            releaseHoldsIfIdle(h);
+            return false;
+        }
+        writerActive = true;
+        if (activeReaders() > 0) {
+            finishWriting();
+            releaseHoldsIfIdle(h);
+            return false;
+        }
+        h.exclusiveHolds = 1;
+        return true;
+    }
+
+    @Override
+    void unlockExclusive() {
+        Holds h = holds();
+        if (h.exclusiveHolds <= 0) {
+            releaseHoldsIfIdle(h);
+            throw new IllegalMonitorStateException("Exclusive lock is not held by the current thread");
+        }
+        if (--h.exclusiveHolds > 0) {
+            return;
+        }
+        if (h.sharedHolds > 0 && !h.sharedCounted) {
+            // Non-exclusive holds taken while exclusive must be counted before other writers can get in
+            counters.incrementAndGet(h.stripeIndex);
+            h.sharedCounted = true;
+        }
+        finishWriting();
+        releaseHoldsIfIdle(h);
+    }
+
+    private void finishWriting() {
+        writerActive = false;
+        writerFinished.signalAll();
+        writerLock.unlock();
+    }
+
+    @Override
+    boolean holdsOnlySharedLock() {
+        Holds h = holds();
+        boolean result = h.sharedHolds > 0 && h.exclusiveHolds == 0;
+        releaseHoldsIfIdle(h);
+        return result;
+    }
+
+    @Override
+    boolean isSharedContended() {
+        Holds h = holds();
+        boolean result = h.sharedHolds == 0 && h.exclusiveHolds == 0 && writerActive;
+        releaseHoldsIfIdle(h);
+        return result;
+    }
+
+    @Override
+    boolean isExclusiveContended() {
+        Holds h = holds();
+        boolean result = h.exclusiveHolds == 0 && (writerLock.isLocked() || activeReaders() > 0);
+        releaseHoldsIfIdle(h);
+        return result;
+    }
+
+    private long activeReaders() {
+        long sum = 0;
+        for (int i = 0; i < counters.length(); i += PADDING) {
+            sum += counters.get(i);
+        }
+        return sum;
+    }
+}
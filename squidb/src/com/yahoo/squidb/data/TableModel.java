@@ -6,7 +6,12 @@
 package com.yahoo.squidb.data;
 
 import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Property.BlobProperty;
+import com.yahoo.squidb.sql.Property.BooleanProperty;
+import com.yahoo.squidb.sql.Property.DoubleProperty;
+import com.yahoo.squidb.sql.Property.IntegerProperty;
 import com.yahoo.squidb.sql.Property.LongProperty;
+import com.yahoo.squidb.sql.Property.StringProperty;
 import com.yahoo.squidb.sql.Table;
 
 /**
@@ -102,6 +107,11 @@ public abstract class TableModel extends AbstractModel {
     }
 
     void bindValuesForInsert(Table table, ISQLitePreparedStatement preparedInsert) {
+        // Generated binders assume the statement's columns are the model's PROPERTIES, in order
+        if (table.getModelClass() == getClass() && bindForInsert(preparedInsert)) {
+            return;
+        }
+
         LongProperty rowidProperty = getRowIdProperty();
         Property<?>[] allProperties = table.getProperties();
 
@@ -121,6 +131,82 @@ public abstract class TableModel extends AbstractModel {
         }
     }
 
+    /**
+     * Hook for generated models to bind every property to a prepared insert statement using straight-line code rather
+     * than the generic per-property visitors. The statement's columns are the model's PROPERTIES, in order, so the
+     * value of properties[i] should be bound at index i + 1.
+     *
+     * @return true if the values were bound, false if the generic binding path should be used instead
+     */
+    protected boolean bindForInsert(ISQLitePreparedStatement statement) {
+        return false;
+    }
+
+    // --- helpers for generated bindForInsert implementations
+
+    protected final void bindRowIdForInsert(ISQLitePreparedStatement statement, int index) {
+        long rowid = getRowId();
+        if (rowid == TableModel.NO_ID) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, rowid);
+        }
+    }
+
+    protected final void bindValueForInsert(ISQLitePreparedStatement statement, int index, LongProperty property) {
+        Long val = get(property, false);
+        if (val == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, val);
+        }
+    }
+
+    protected final void bindValueForInsert(ISQLitePreparedStatement statement, int index, IntegerProperty property) {
+        Integer val = get(property, false);
+        if (val == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, val);
+        }
+    }
+
+    protected final void bindValueForInsert(ISQLitePreparedStatement statement, int index, DoubleProperty property) {
+        Double val = get(property, false);
+        if (val == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, val);
+        }
+    }
+
+    protected final void bindValueForInsert(ISQLitePreparedStatement statement, int index, BooleanProperty property) {
+        Boolean val = get(property, false);
+        if (val == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, val ? 1 : 0);
+        }
+    }
+
+    protected final void bindValueForInsert(ISQLitePreparedStatement statement, int index, StringProperty property) {
+        String val = get(property, false);
+        if (val == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, val);
+        }
+    }
+
+    protected final void bindValueForInsert(ISQLitePreparedStatement statement, int index, BlobProperty property) {
+        byte[] val = get(property, false);
+        if (val == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindBlob(index, val);
+        }
+    }
+
     private static final class ModelAndIndex {
 
         final TableModel model;
@@ -18,14 +18,23 @@ import java.util.Map;
  */
 public class CompileContext {
 
+    /** Default value for {@link Builder#setCollectionArgumentCacheSize(int)} */
+    public static final int DEFAULT_COLLECTION_ARGUMENT_CACHE_SIZE = 5;
+
     private final VersionCode versionCode;
     private final ArgumentResolver argumentResolver;
+    private final int jsonEachCollectionThreshold;
+    private final boolean padCollectionArguments;
+    private final int collectionArgumentCacheSize;
     private final Map<String, Object> extras;
 
     public static class Builder {
 
         private VersionCode versionCode;
         private ArgumentResolver argumentResolver = new DefaultArgumentResolver();
+        private int jsonEachCollectionThreshold = 0;
+        private boolean padCollectionArguments = false;
+        private int collectionArgumentCacheSize = DEFAULT_COLLECTION_ARGUMENT_CACHE_SIZE;
         private Map<String, Object> extras = new HashMap<>();
 
         public Builder(VersionCode versionCode) {
@@ -44,6 +53,60 @@ public class CompileContext {
             return this;
         }
 
+        /**
+         * Bind large collection arguments (e.g. from {@link Field#in(java.util.Collection)}) as a single JSON array
+         * argument that SQLite expands with json_each, rather than binding one variable per value. Collections with
+         * at least the given number of values are always bound this way; when a statement would otherwise exceed
+         * {@link SqlStatement#MAX_VARIABLE_NUMBER}, every collection in it is bound this way instead of being inlined
+         * into the SQL string. This keeps the SQL the same regardless of the size of the collection, so it can be
+         * cached and prepared once.
+         * <p>
+         * Requires SQLite 3.9.0 or later compiled with the JSON1 extension. Collections bound this way must not
+         * contain blobs, and their values are compared using the types they have in the JSON array without applying
+         * the column's affinity, so they should match the column's type. Pass 0 to disable, which is the default.
+         *
+         * @param threshold the minimum collection size to bind as a JSON array, or 0 to disable
+         */
+        public Builder setJsonEachCollectionThreshold(int threshold) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("Threshold must be non-negative, was " + threshold);
+            }
+            if (threshold > 0 && versionCode.isLessThan(VersionCode.V3_9_0)) {
+                throw new UnsupportedOperationException("json_each requires SQLite version " + VersionCode.V3_9_0
+                        + " or later, but this context is for version " + versionCode);
+            }
+            this.jsonEachCollectionThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Bind collection arguments (e.g. from {@link Field#in(java.util.Collection)}) to a number of variables
+         * rounded up to the next power of two, repeating the collection's last value to fill the extra variables.
+         * Without padding, every distinct collection size produces a distinct SQL string, so a statement run with
+         * collections of many different sizes rarely benefits from statement caching. With padding, collections of
+         * 1 to 500 values produce only 10 distinct SQL strings. Padding is skipped for any statement where it would
+         * exceed {@link SqlStatement#MAX_VARIABLE_NUMBER}. Disabled by default.
+         */
+        public Builder setPadCollectionArguments(boolean padCollectionArguments) {
+            this.padCollectionArguments = padCollectionArguments;
+            return this;
+        }
+
+        /**
+         * Set the number of compiled SQL strings and argument arrays cached for each statement with collection
+         * arguments, keyed by the number of variables each collection is bound to. Statements are usually run with
+         * collections of only a few different sizes (or size buckets, see
+         * {@link #setPadCollectionArguments(boolean)}), but a larger cache helps statements that aren't. Defaults to
+         * {@link #DEFAULT_COLLECTION_ARGUMENT_CACHE_SIZE}.
+         */
+        public Builder setCollectionArgumentCacheSize(int cacheSize) {
+            if (cacheSize < 1) {
+                throw new IllegalArgumentException("Cache size must be positive, was " + cacheSize);
+            }
+            this.collectionArgumentCacheSize = cacheSize;
+            return this;
+        }
+
         public Builder setExtra(String key, Object value) {
             this.extras.put(key, value);
             return this;
@@ -59,6 +122,9 @@ public class CompileContext {
     private CompileContext(Builder builder) {
         this.versionCode = builder.versionCode;
         this.argumentResolver = builder.argumentResolver;
+        this.jsonEachCollectionThreshold = builder.jsonEachCollectionThreshold;
+        this.padCollectionArguments = builder.padCollectionArguments;
+        this.collectionArgumentCacheSize = builder.collectionArgumentCacheSize;
         this.extras = new HashMap<>(builder.extras);
     }
 
@@ -80,6 +146,31 @@ public class CompileContext {
         return argumentResolver;
     }
 
+    /**
+     * @return the minimum size of a collection argument to bind as a JSON array expanded with json_each, or 0 if
+     * collections are always bound one value per variable
+     * @see Builder#setJsonEachCollectionThreshold(int)
+     */
+    public int getJsonEachCollectionThreshold() {
+        return jsonEachCollectionThreshold;
+    }
+
+    /**
+     * @return true if collection arguments are padded to a power of two number of variables
+     * @see Builder#setPadCollectionArguments(boolean)
+     */
+    public boolean shouldPadCollectionArguments() {
+        return padCollectionArguments;
+    }
+
+    /**
+     * @return the number of compiled variants cached for each statement with collection arguments
+     * @see Builder#setCollectionArgumentCacheSize(int)
+     */
+    public int getCollectionArgumentCacheSize() {
+        return collectionArgumentCacheSize;
+    }
+
     /**
      * @return the extra value set for the given key, or null if one does not exist
      */
@@ -8,113 +8,204 @@ package com.yahoo.squidb.sql;
 import com.yahoo.squidb.utility.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Resolves the SQL and arguments built for a statement into a {@link CompiledStatement}. The SQL template and
+ * arguments are fixed when the resolver is constructed; all state needed to resolve a single statement (collection
+ * snapshots, argument arrays) is local to each call. A resolver constructed as shared keeps its cache of expanded
+ * SQL strings in a concurrent map, so it can be used by many threads at once without locking; otherwise the cache is
+ * an LRU map and callers must synchronize.
+ */
 class CompiledArgumentResolver {
 
     private static final Pattern REPLACEABLE_ARRAY_PARAM_PATTERN =
             Pattern.compile(SqlStatement.REPLACEABLE_ARRAY_PARAMETER_REGEX);
 
+    private static final String JSON_EACH_SUBQUERY = "SELECT value FROM json_each(" +
+            SqlStatement.REPLACEABLE_PARAMETER + ")";
+
+    /** Marks a collection bound as a single JSON array in the per-call bound sizes */
+    private static final int BIND_AS_JSON = -1;
+
     private final String compiledSql;
-    private final List<Object> sqlArgs;
+    private final Object[] sqlArgs;
     private final CompileContext compileContext;
     private final boolean needsValidation;
+    private final int jsonEachThreshold;
+    private final boolean padCollectionArgs;
+    private final boolean shared;
 
-    private List<Collection<?>> collectionArgs;
-
-    private static final int CACHE_SIZE = 5;
-    private SimpleLruCache<String, String> compiledSqlCache;
-    private SimpleLruCache<String, Object[]> argArrayCache;
+    /** Positions in {@link #sqlArgs} of collection arguments, or null if there are none */
+    private final int[] collectionArgIndexes;
 
-    private Object[] compiledArgs = null;
+    private final int cacheSize;
+    private final Map<String, String> compiledSqlCache;
 
     public CompiledArgumentResolver(SqlBuilder builder) {
+        this(builder, false);
+    }
+
+    /**
+     * @param shared true if the resolver may be used by multiple threads concurrently
+     */
+    public CompiledArgumentResolver(SqlBuilder builder, boolean shared) {
         this.compiledSql = builder.getSqlString();
-        this.sqlArgs = builder.getBoundArguments();
+        List<Object> boundArgs = builder.getBoundArguments();
+        this.sqlArgs = boundArgs.toArray(new Object[boundArgs.size()]);
         this.compileContext = builder.compileContext;
         this.needsValidation = builder.needsValidation();
+        this.jsonEachThreshold = compileContext.getJsonEachCollectionThreshold();
+        this.padCollectionArgs = compileContext.shouldPadCollectionArguments();
+        this.shared = shared;
+        this.cacheSize = compileContext.getCollectionArgumentCacheSize();
         if (compiledSql.contains(SqlStatement.REPLACEABLE_ARRAY_PARAMETER)) {
-            collectionArgs = new ArrayList<>();
-            findCollectionArgs();
-            compiledSqlCache = new SimpleLruCache<>(CACHE_SIZE);
-            argArrayCache = new SimpleLruCache<>(CACHE_SIZE);
+            this.collectionArgIndexes = findCollectionArgs();
+            this.compiledSqlCache = shared ? new ConcurrentHashMap<String, String>()
+                    : new SimpleLruCache<String, String>(cacheSize);
+        } else {
+            this.collectionArgIndexes = null;
+            this.compiledSqlCache = null;
         }
     }
 
     private boolean hasCollectionArgs() {
-        return collectionArgs != null;
+        return collectionArgIndexes != null;
     }
 
-    private void findCollectionArgs() {
-        for (Object arg : sqlArgs) {
-            if (arg instanceof Collection<?>) {
-                collectionArgs.add((Collection<?>) arg);
+    private int[] findCollectionArgs() {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < sqlArgs.length; i++) {
+            if (sqlArgs[i] instanceof Collection<?>) {
+                indexes.add(i);
             }
         }
+        int[] result = new int[indexes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = indexes.get(i);
+        }
+        return result;
     }
 
     public CompiledStatement resolveToCompiledStatement() {
-        String cacheKey = hasCollectionArgs() ? getCacheKey() : null;
-        int totalArgSize = calculateArgsSizeWithCollectionArgs();
+        if (!hasCollectionArgs()) {
+            return new CompiledStatement(compiledSql, applyArgumentResolver(sqlArgs), needsValidation);
+        }
+
+        // Snapshot each collection once, so concurrent modification of a collection can't make the SQL and the
+        // arguments disagree
+        Object[][] collections = new Object[collectionArgIndexes.length][];
+        for (int i = 0; i < collections.length; i++) {
+            collections[i] = ((Collection<?>) sqlArgs[collectionArgIndexes[i]]).toArray();
+        }
+
+        int[] boundSizes = new int[collections.length];
+        int totalArgSize = calculateBoundSizes(collections, boundSizes, padCollectionArgs, false);
+        if (totalArgSize > SqlStatement.MAX_VARIABLE_NUMBER && padCollectionArgs) {
+            // Padding only improves cache reuse, so drop it rather than exceed the variable limit
+            totalArgSize = calculateBoundSizes(collections, boundSizes, false, false);
+        }
+        if (totalArgSize > SqlStatement.MAX_VARIABLE_NUMBER && jsonEachThreshold > 0) {
+            // Binding every collection as a single JSON array keeps the statement under the variable limit
+            // without inlining any values
+            totalArgSize = calculateBoundSizes(collections, boundSizes, false, true);
+        }
         boolean largeArgMode = totalArgSize > SqlStatement.MAX_VARIABLE_NUMBER;
-        return new CompiledStatement(resolveSqlString(cacheKey, largeArgMode),
-                resolveSqlArguments(cacheKey, totalArgSize, largeArgMode), needsValidation);
+        return new CompiledStatement(resolveSqlString(collections, boundSizes, largeArgMode),
+                resolveSqlArguments(collections, boundSizes, largeArgMode), needsValidation);
     }
 
-    private String getCacheKey() {
-        StringBuilder cacheKey = new StringBuilder();
-        if (hasCollectionArgs()) {
-            for (Collection<?> collection : collectionArgs) {
-                cacheKey.append(collection.size()).append(":");
+    // Fills boundSizes with the number of variables to bind for each collection, or BIND_AS_JSON for collections
+    // bound as a single JSON array and expanded by SQLite with json_each. When padding, sizes are rounded up to the
+    // next power of two, so that e.g. all collections of 5 to 8 values share the same SQL string and prepared
+    // statement; the extra variables are bound to the collection's last value, which doesn't change the result of
+    // either IN or NOT IN. Returns the total number of variables in the statement.
+    private int calculateBoundSizes(Object[][] collections, int[] boundSizes, boolean pad, boolean jsonForAll) {
+        int totalArgSize = sqlArgs.length;
+        for (int i = 0; i < collections.length; i++) {
+            int size = collections[i].length;
+            if (jsonEachThreshold > 0 && (jsonForAll || size >= jsonEachThreshold)) {
+                boundSizes[i] = BIND_AS_JSON;
+            } else {
+                boundSizes[i] = pad && size > 1 ? Integer.highestOneBit(size - 1) << 1 : size;
+                totalArgSize += boundSizes[i] - 1;
             }
         }
-        return cacheKey.toString();
+        return totalArgSize;
     }
 
-    private String resolveSqlString(String cacheKey, boolean largeArgMode) {
-        if (hasCollectionArgs()) {
-            if (!largeArgMode) {
-                String cachedResult = compiledSqlCache.get(cacheKey);
-                if (cachedResult != null) {
-                    return cachedResult;
-                }
+    private String getCacheKey(int[] boundSizes) {
+        StringBuilder cacheKey = new StringBuilder();
+        for (int boundSize : boundSizes) {
+            if (boundSize == BIND_AS_JSON) {
+                cacheKey.append("json:");
+            } else {
+                cacheKey.append(boundSize).append(":");
             }
+        }
+        return cacheKey.toString();
+    }
 
-            StringBuilder result = new StringBuilder(compiledSql.length());
-            Matcher m = REPLACEABLE_ARRAY_PARAM_PATTERN.matcher(compiledSql);
-            int index = 0;
-            int lastStringIndex = 0;
-            while (m.find()) {
-                result.append(compiledSql.substring(lastStringIndex, m.start()));
-                Collection<?> values = collectionArgs.get(index);
-                if (largeArgMode) {
-                    SqlUtils.addInlineCollectionToSqlString(result, compileContext.getArgumentResolver(), values);
-                } else {
-                    appendCollectionVariableStringForSize(result, values.size());
-                }
-                lastStringIndex = m.end();
-                index++;
+    private String resolveSqlString(Object[][] collections, int[] boundSizes, boolean largeArgMode) {
+        String cacheKey = null;
+        if (!largeArgMode) {
+            cacheKey = getCacheKey(boundSizes);
+            String cachedResult = compiledSqlCache.get(cacheKey);
+            if (cachedResult != null) {
+                return cachedResult;
             }
-            result.append(compiledSql.substring(lastStringIndex, compiledSql.length()));
+        }
 
-            String resultSql = result.toString();
-            if (!largeArgMode) {
-                compiledSqlCache.put(cacheKey, resultSql);
+        StringBuilder result = new StringBuilder(compiledSql.length());
+        Matcher m = REPLACEABLE_ARRAY_PARAM_PATTERN.matcher(compiledSql);
+        int index = 0;
+        int lastStringIndex = 0;
+        while (m.find()) {
+            result.append(compiledSql.substring(lastStringIndex, m.start()));
+            if (boundSizes[index] == BIND_AS_JSON) {
+                result.append(JSON_EACH_SUBQUERY);
+            } else if (largeArgMode) {
+                SqlUtils.addInlineCollectionToSqlString(result, compileContext.getArgumentResolver(),
+                        Arrays.asList(collections[index]));
             } else {
-                Logger.w(Logger.LOG_TAG,
-                        "The SQL statement \"" + resultSql.substring(0, Math.min(200, resultSql.length()))
-                                + " ...\" had too many arguments to bind, so arguments were inlined into the SQL "
-                                + "instead. Consider revising your statement to have fewer arguments.");
+                appendCollectionVariableStringForSize(result, boundSizes[index]);
             }
-            return resultSql;
+            lastStringIndex = m.end();
+            index++;
+        }
+        result.append(compiledSql.substring(lastStringIndex, compiledSql.length()));
+
+        String resultSql = result.toString();
+        if (!largeArgMode) {
+            cacheSqlString(cacheKey, resultSql);
         } else {
-            return compiledSql;
+            Logger.w(Logger.LOG_TAG,
+                    "The SQL statement \"" + resultSql.substring(0, Math.min(200, resultSql.length()))
+                            + " ...\" had too many arguments to bind, so arguments were inlined into the SQL "
+                            + "instead. Consider revising your statement to have fewer arguments, or binding large "
+                            + "collections with CompileContext.Builder#setJsonEachCollectionThreshold.");
         }
+        return resultSql;
+    }
+
+    private void cacheSqlString(String cacheKey, String sql) {
+        if (shared && compiledSqlCache.size() >= cacheSize) {
+            // The concurrent cache doesn't track access order, so evict an arbitrary entry to stay bounded
+            Iterator<String> keys = compiledSqlCache.keySet().iterator();
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        compiledSqlCache.put(cacheKey, sql);
     }
 
     private void appendCollectionVariableStringForSize(StringBuilder builder, int size) {
@@ -126,65 +217,49 @@ class CompiledArgumentResolver {
         }
     }
 
-    private Object[] resolveSqlArguments(String cacheKey, int totalArgSize, boolean largeArgMode) {
-        if (hasCollectionArgs()) {
-            Object[] cachedResult = argArrayCache.get(cacheKey);
-            if (cachedResult == null) {
-                int size = largeArgMode ? calculateArgsSizeWithoutCollectionArgs() : totalArgSize;
-                if (compiledArgs == null || compiledArgs.length != size) {
-                    cachedResult = new Object[size];
-                } else {
-                    cachedResult = compiledArgs;
-                }
-                argArrayCache.put(cacheKey, cachedResult);
-            }
-            compiledArgs = cachedResult;
-            populateCompiledArgs(largeArgMode);
-        } else {
-            if (compiledArgs == null) {
-                compiledArgs = sqlArgs.toArray(new Object[sqlArgs.size()]);
-            }
-        }
-        return applyArgumentResolver(compiledArgs);
-    }
-
-    private Object[] applyArgumentResolver(Object[] args) {
+    private Object[] resolveSqlArguments(Object[][] collections, int[] boundSizes, boolean largeArgMode) {
         ArgumentResolver resolver = compileContext.getArgumentResolver();
-        Object[] result = new Object[args.length];
-        for (int i = 0; i < args.length; i++) {
-            result[i] = resolver.resolveArgument(args[i]);
-        }
-        return result;
-    }
-
-    private int calculateArgsSizeWithCollectionArgs() {
-        int startSize = sqlArgs.size();
-        if (hasCollectionArgs()) {
-            for (Collection<?> collection : collectionArgs) {
-                startSize += (collection.size() - 1);
+        int size = sqlArgs.length;
+        for (int boundSize : boundSizes) {
+            if (boundSize != BIND_AS_JSON) {
+                // In large arg mode, collections not bound as a JSON array are inlined into the SQL
+                size += largeArgMode ? -1 : boundSize - 1;
             }
         }
-        return startSize;
-    }
-
-    private int calculateArgsSizeWithoutCollectionArgs() {
-        return sqlArgs.size() - (hasCollectionArgs() ? collectionArgs.size() : 0);
-    }
 
-    private void populateCompiledArgs(boolean largeArgMode) {
+        Object[] result = new Object[size];
         int i = 0;
+        int collectionIndex = 0;
         for (Object arg : sqlArgs) {
             if (arg instanceof Collection<?>) {
-                if (!largeArgMode) {
-                    Collection<?> values = (Collection<?>) arg;
-                    for (Object obj : values) {
-                        compiledArgs[i++] = obj;
+                Object[] values = collections[collectionIndex];
+                int boundSize = boundSizes[collectionIndex];
+                collectionIndex++;
+                if (boundSize == BIND_AS_JSON) {
+                    result[i++] = SqlUtils.toJsonArray(Arrays.asList(values), resolver);
+                } else if (!largeArgMode) {
+                    for (Object value : values) {
+                        result[i++] = resolver.resolveArgument(value);
+                    }
+                    for (int padding = boundSize - values.length; padding > 0; padding--) {
+                        result[i] = result[i - 1];
+                        i++;
                     }
                 }
             } else {
-                compiledArgs[i++] = arg;
+                result[i++] = resolver.resolveArgument(arg);
             }
         }
+        return result;
+    }
+
+    private Object[] applyArgumentResolver(Object[] args) {
+        ArgumentResolver resolver = compileContext.getArgumentResolver();
+        Object[] result = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            result[i] = resolver.resolveArgument(args[i]);
+        }
+        return result;
     }
 
     @SuppressWarnings("serial")
@@ -5,6 +5,14 @@
  */
 package com.yahoo.squidb.sql;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * A compiled SQLite statement
  */
@@ -23,4 +31,91 @@ public class CompiledStatement {
         this.sqlArgs = args;
         this.needsValidation = needsValidation;
     }
+
+    /**
+     * @return true if any of this statement's arguments is a {@link QueryParameter} that must be bound before the
+     * statement is run
+     */
+    public boolean hasParameters() {
+        for (Object arg : sqlArgs) {
+            if (arg instanceof QueryParameter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the names of the {@link QueryParameter QueryParameters} in this statement, in the order they first
+     * appear. This is the order in which values are expected by {@link #bindParameters(Object[], ArgumentResolver)}.
+     */
+    public List<String> getParameterNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Object arg : sqlArgs) {
+            if (arg instanceof QueryParameter) {
+                names.add(((QueryParameter) arg).getName());
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Create a copy of this statement with each {@link QueryParameter} replaced by the value for its name. The SQL
+     * string is unchanged.
+     *
+     * @param values values for each parameter, keyed by name
+     * @param argumentResolver resolver applied to each bound value, e.g. from {@link CompileContext}
+     * @return a new CompiledStatement with every parameter bound
+     * @throws IllegalArgumentException if a parameter has no value, or a value is given for a name that isn't a
+     * parameter of this statement
+     */
+    public CompiledStatement bindParameters(Map<String, ?> values, ArgumentResolver argumentResolver) {
+        Object[] boundArgs = new Object[sqlArgs.length];
+        int boundCount = 0;
+        Set<String> boundNames = new HashSet<>();
+        for (int i = 0; i < sqlArgs.length; i++) {
+            Object arg = sqlArgs[i];
+            if (arg instanceof QueryParameter) {
+                String name = ((QueryParameter) arg).getName();
+                if (!values.containsKey(name)) {
+                    throw new IllegalArgumentException("No value bound for query parameter " + name);
+                }
+                boundArgs[i] = argumentResolver.resolveArgument(values.get(name));
+                if (boundNames.add(name)) {
+                    boundCount++;
+                }
+            } else {
+                boundArgs[i] = arg;
+            }
+        }
+        if (boundCount != values.size()) {
+            Set<String> unknown = new HashSet<>(values.keySet());
+            unknown.removeAll(boundNames);
+            throw new IllegalArgumentException("Values given for unknown query parameters " + unknown);
+        }
+        return new CompiledStatement(sql, boundArgs, needsValidation);
+    }
+
+    /**
+     * Create a copy of this statement with each {@link QueryParameter} replaced by a positional value. Values are
+     * matched to parameters in the order given by {@link #getParameterNames()}, so a parameter used more than once
+     * takes a single value.
+     *
+     * @param values one value for each distinct parameter name
+     * @param argumentResolver resolver applied to each bound value, e.g. from {@link CompileContext}
+     * @return a new CompiledStatement with every parameter bound
+     * @throws IllegalArgumentException if the number of values doesn't match the number of parameters
+     */
+    public CompiledStatement bindParameters(Object[] values, ArgumentResolver argumentResolver) {
+        List<String> names = getParameterNames();
+        if (names.size() != values.length) {
+            throw new IllegalArgumentException("Expected " + names.size() + " query parameter values " + names
+                    + ", got " + values.length);
+        }
+        Map<String, Object> valuesByName = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            valuesByName.put(names.get(i), values[i]);
+        }
+        return bindParameters(valuesByName, argumentResolver);
+    }
 }
@@ -19,6 +19,12 @@ import java.util.Map;
  */
 public class Insert extends TableStatement {
 
+    /**
+     * The maximum number of rows in a single multi-row VALUES clause. SQLite versions before 3.8.8 implement multi-row
+     * VALUES as a compound SELECT, which is limited to 500 terms by SQLITE_MAX_COMPOUND_SELECT.
+     */
+    public static final int MAX_ROWS_PER_INSERT = 500;
+
     private final SqlTable<?> table;
     private ConflictAlgorithm conflictAlgorithm = ConflictAlgorithm.NONE;
     private final List<String> columns = new ArrayList<>();
@@ -137,6 +143,29 @@ public class Insert extends TableStatement {
         return this;
     }
 
+    /**
+     * Computes the number of rows a single multi-row INSERT ... VALUES statement can insert when every value is bound
+     * as an argument, without exceeding {@link SqlStatement#MAX_VARIABLE_NUMBER} arguments or
+     * {@link #MAX_ROWS_PER_INSERT} rows. For SQLite versions that don't support multi-row inserts, this returns 1.
+     *
+     * @param numColumns the number of columns being inserted into
+     * @param sqliteVersion the version of SQLite the statement will be executed on
+     * @return the maximum number of rows per INSERT statement
+     */
+    public static int getMaxRowsPerInsert(int numColumns, VersionCode sqliteVersion) {
+        if (numColumns <= 0) {
+            throw new IllegalArgumentException("Number of columns must be positive, was " + numColumns);
+        }
+        if (numColumns > SqlStatement.MAX_VARIABLE_NUMBER) {
+            throw new IllegalArgumentException("Can't bind " + numColumns + " columns in a single statement, the "
+                    + "maximum is " + SqlStatement.MAX_VARIABLE_NUMBER);
+        }
+        if (sqliteVersion.isLessThan(VersionCode.V3_7_11)) {
+            return 1;
+        }
+        return Math.min(SqlStatement.MAX_VARIABLE_NUMBER / numColumns, MAX_ROWS_PER_INSERT);
+    }
+
     /**
      * @return the number of rows to be inserted (i.e. the number of values sets provided)
      */
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.sql;
+
+import com.yahoo.squidb.Beta;
+import com.yahoo.squidb.data.AbstractModel;
+import com.yahoo.squidb.data.SquidCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pages through the results of a {@link Query} using keyset (or "seek") pagination rather than LIMIT/OFFSET. With
+ * an OFFSET, SQLite has to step through and discard every skipped row, so each page costs more than the last. A
+ * KeysetPager instead remembers the ORDER BY keys of the last row of the previous page and adds a criterion that
+ * seeks directly past it, so with an index on the ordering terms every page costs the same as the first.
+ * <p>
+ * The query's ORDER BY terms must be ascending or descending orders on {@link Property Properties}, and taken together
+ * they must uniquely identify a row (e.g. end with the table's rowid) and never be NULL; otherwise rows may be
+ * skipped or repeated at page boundaries. For ORDER BY a ASC, b DESC the seek criterion is
+ * <code>a &gt;= ? AND (a &gt; ? OR (a = ? AND b &lt; ?))</code>. The leading <code>a &gt;= ?</code> is implied by
+ * the rest, but unlike the OR it can be used directly as a range constraint on an index on (a, b DESC).
+ * <p>
+ * The page queries are built and frozen once when the pager is constructed. The key values of the last row are held
+ * in AtomicReferences that are resolved each time the query is compiled, so every page after the first runs exactly
+ * the same SQL with different arguments. The query should have a FROM clause; otherwise
+ * {@link com.yahoo.squidb.data.SquidDatabase#query(Class, Query) SquidDatabase.query} has to fork the frozen query to
+ * add one each time a page is read.
+ *
+ * <pre>
+ * KeysetPager pager = new KeysetPager(Query.select(Model.PROPERTIES).from(Model.TABLE)
+ *         .orderBy(Model.NAME.asc(), Model.ID.asc()), 50);
+ * do {
+ *     SquidCursor&lt;Model&gt; cursor = database.query(Model.class, pager.getPageQuery());
+ *     try {
+ *         // read the page...
+ *         pager.advance(cursor);
+ *     } finally {
+ *         cursor.close();
+ *     }
+ * } while (pager.hasMorePages());
+ * </pre>
+ *
+ * A KeysetPager is not thread safe; use one instance per pagination session.
+ */
+@Beta
+public class KeysetPager {
+
+    private final int pageSize;
+    private final List<Property<?>> keys;
+    private final List<AtomicReference<Object>> lastKeyValues;
+    private final Query firstPageQuery;
+    private final Query nextPageQuery;
+
+    private boolean hasLastRow = false;
+    private boolean hasMorePages = true;
+
+    /**
+     * @param query the query to page through. Must have at least one ORDER BY term, and every ORDER BY term must be
+     * an ascending or descending order on a Property. Any existing LIMIT or OFFSET on the query is replaced.
+     * @param pageSize the number of rows in each page
+     */
+    public KeysetPager(Query query, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive, was " + pageSize);
+        }
+        if (query.hasCompoundSelects()) {
+            throw new IllegalArgumentException("Keyset pagination is not supported for compound selects");
+        }
+        List<Order> orders = query.getOrders();
+        if (orders.isEmpty()) {
+            throw new IllegalArgumentException("Keyset pagination requires a query with an ORDER BY clause");
+        }
+
+        this.pageSize = pageSize;
+        List<Property<?>> keys = new ArrayList<>(orders.size());
+        List<AtomicReference<Object>> lastKeyValues = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            Object expression = order.getExpression();
+            if (order.isRaw() || !(expression instanceof Property<?>)) {
+                throw new IllegalArgumentException("Keyset pagination requires every ORDER BY term to be an ascending "
+                        + "or descending order on a Property, but found " + expression);
+            }
+            keys.add((Property<?>) expression);
+            lastKeyValues.add(new AtomicReference<>());
+        }
+        this.keys = Collections.unmodifiableList(keys);
+        this.lastKeyValues = lastKeyValues;
+
+        this.firstPageQuery = query.fork().limit(pageSize, 0).freeze();
+        this.nextPageQuery = query.fork().where(buildSeekCriterion(orders)).limit(pageSize, 0).freeze();
+    }
+
+    // For keys k1..kn, builds k1 >= ? AND (k1 > ? OR (k1 = ? AND k2 > ?) OR ... (k1 = ? AND ... AND kn > ?)), using
+    // <= and < for a descending k1. SQLite can't use an OR of row comparisons to bound an index range, so the
+    // redundant leading term is what lets it seek instead of scanning from the start of the index.
+    private Criterion buildSeekCriterion(List<Order> orders) {
+        List<Criterion> alternatives = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            List<Criterion> terms = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                terms.add(keys.get(j).eq(lastKeyValues.get(j)));
+            }
+            Property<?> key = keys.get(i);
+            AtomicReference<Object> value = lastKeyValues.get(i);
+            terms.add(orders.get(i).isDescending() ? key.lt(value) : key.gt(value));
+            alternatives.add(terms.size() == 1 ? terms.get(0) : Criterion.and(terms));
+        }
+        if (alternatives.size() == 1) {
+            return alternatives.get(0);
+        }
+        Property<?> leadingKey = keys.get(0);
+        AtomicReference<Object> leadingValue = lastKeyValues.get(0);
+        Criterion range = orders.get(0).isDescending() ? leadingKey.lte(leadingValue) : leadingKey.gte(leadingValue);
+        return range.and(Criterion.or(alternatives));
+    }
+
+    /**
+     * @return the query for the next page: the first page query until a last row has been recorded, and the seek
+     * query afterwards. Both queries are frozen and reused across calls.
+     */
+    public Query getPageQuery() {
+        return hasLastRow ? nextPageQuery : firstPageQuery;
+    }
+
+    /**
+     * @return the properties the query is ordered by, whose values identify the last row of a page
+     */
+    public List<Property<?>> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return the number of rows in each page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return false if the last page read with {@link #advance(SquidCursor)} had fewer than {@link #getPageSize()}
+     * rows, meaning there are no more pages to read
+     */
+    public boolean hasMorePages() {
+        return hasMorePages;
+    }
+
+    /**
+     * Record the last row of a page read from the given cursor, so that {@link #getPageQuery()} returns the following
+     * page. The cursor must have been returned by running {@link #getPageQuery()}, and must select every key
+     * property. The cursor's position is moved to its last row.
+     *
+     * @param cursor a cursor over the current page
+     */
+    public void advance(SquidCursor<?> cursor) {
+        int count = cursor.getCount();
+        if (count < pageSize) {
+            hasMorePages = false;
+        }
+        if (count > 0 && cursor.moveToLast()) {
+            Object[] values = new Object[keys.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = cursor.get(keys.get(i));
+            }
+            setLastRow(values);
+        }
+    }
+
+    /**
+     * Record the given model as the last row of the current page, so that {@link #getPageQuery()} returns the rows
+     * that follow it. The model must have a value for every key property.
+     *
+     * @param lastRow the last model read from the current page
+     */
+    public void advancePast(AbstractModel lastRow) {
+        Object[] values = new Object[keys.size()];
+        for (int i = 0; i < values.length; i++) {
+            Property<?> key = keys.get(i);
+            if (!lastRow.containsValue(key)) {
+                throw new IllegalArgumentException("Model has no value for key property " + key.getName());
+            }
+            values[i] = lastRow.get(key);
+        }
+        setLastRow(values);
+    }
+
+    /**
+     * Record the key values of the last row of the current page, in ORDER BY order, so that {@link #getPageQuery()}
+     * returns the rows that follow it
+     *
+     * @param keyValues the values of each key property in the last row
+     */
+    public void setLastRow(Object... keyValues) {
+        if (keyValues.length != keys.size()) {
+            throw new IllegalArgumentException("Expected " + keys.size() + " key values, got " + keyValues.length);
+        }
+        for (int i = 0; i < keyValues.length; i++) {
+            if (keyValues[i] == null) {
+                throw new IllegalArgumentException("Key property " + keys.get(i).getName() + " was null; keyset "
+                        + "pagination requires non-null keys");
+            }
+        }
+        for (int i = 0; i < keyValues.length; i++) {
+            lastKeyValues.get(i).set(keyValues[i]);
+        }
+        hasLastRow = true;
+    }
+
+    /**
+     * Start over from the first page
+     */
+    public void reset() {
+        for (AtomicReference<Object> value : lastKeyValues) {
+            value.set(null);
+        }
+        hasLastRow = false;
+        hasMorePages = true;
+    }
+}
@@ -74,6 +74,18 @@ public class Order extends CompilableWithArguments {
         }
     }
 
+    Object getExpression() {
+        return expression;
+    }
+
+    boolean isRaw() {
+        return orderType == OrderType.RAW;
+    }
+
+    boolean isDescending() {
+        return orderType == OrderType.DESC;
+    }
+
     /**
      * @return an Order term that is the reverse of this one
      */
@@ -5,10 +5,12 @@
  */
 package com.yahoo.squidb.sql;
 
+import com.yahoo.squidb.Beta;
 import com.yahoo.squidb.data.ViewModel;
 import com.yahoo.squidb.utility.SquidUtilities;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -51,6 +53,20 @@ public final class Query extends TableStatement {
         }
     }
 
+    /**
+     * Create a named placeholder for a value that is supplied when the query is run, e.g. with
+     * {@link com.yahoo.squidb.data.SquidDatabase#query(Class, Query, java.util.Map) SquidDatabase.query}. A query
+     * using parameters compiles once, and every execution reuses the same SQL string with different arguments.
+     *
+     * @param name the name of the parameter
+     * @return a {@link QueryParameter} that can be used anywhere a value is accepted
+     * @see QueryParameter
+     */
+    @Beta
+    public static QueryParameter param(String name) {
+        return new QueryParameter(name);
+    }
+
     /**
      * Construct a new Select statement that queries for the specified {@link Field Fields}
      *
@@ -615,6 +631,14 @@ public final class Query extends TableStatement {
         }
     }
 
+    List<Order> getOrders() {
+        return orders == null ? Collections.<Order>emptyList() : Collections.unmodifiableList(orders);
+    }
+
+    boolean hasCompoundSelects() {
+        return !isEmpty(compoundSelects);
+    }
+
     /**
      * @return the table being selected from
      */
@@ -712,6 +736,7 @@ public final class Query extends TableStatement {
     /**
      * @return true if {@link #freeze()} has been called on this object; false otherwise.
      */
+    @Override
     public boolean isImmutable() {
         return immutable;
     }
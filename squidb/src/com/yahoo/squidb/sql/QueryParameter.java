@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.sql;
+
+import com.yahoo.squidb.Beta;
+
+/**
+ * A named placeholder for a value that is supplied each time a statement is run, rather than when it is built.
+ * Create one with {@link Query#param(String)} and use it anywhere a value is accepted, e.g. as the argument to a
+ * {@link Criterion}:
+ *
+ * <pre>
+ * static final Query BY_OWNER = Query.select(Item.PROPERTIES).from(Item.TABLE)
+ *         .where(Item.OWNER_ID.eq(Query.param("ownerId"))).freeze();
+ * ...
+ * SquidCursor&lt;Item&gt; cursor = database.query(Item.class, BY_OWNER, Collections.singletonMap("ownerId", id));
+ * </pre>
+ *
+ * A statement containing parameters compiles once into a template whose arguments include the parameters
+ * themselves; values are substituted with {@link CompiledStatement#bindParameters(java.util.Map, ArgumentResolver)}
+ * without rebuilding the SQL, so every execution runs the same SQL string. Parameters stand for single values and
+ * can't be used inside collections passed to {@link Field#in(java.util.Collection)}.
+ */
+@Beta
+public final class QueryParameter {
+
+    private final String name;
+
+    QueryParameter(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Query parameter name can't be empty");
+        }
+        this.name = name;
+    }
+
+    /**
+     * @return the name of this parameter
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof QueryParameter && name.equals(((QueryParameter) o).name));
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return ":" + name;
+    }
+}
@@ -87,6 +87,9 @@ public final class SqlBuilder {
             ((CompilableWithArguments) value).appendToSqlBuilder(this, forSqlValidation);
         } else if (value instanceof Collection<?>) {
             addCollectionArg((Collection<?>) value);
+        } else if (value instanceof QueryParameter && args == null) {
+            // Parameters have no value until they are bound, so use SQLite's named parameter syntax in raw SQL
+            sql.append(value.toString());
         } else if (args == null) {
             sql.append(SqlUtils.toSanitizedString(value, compileContext.getArgumentResolver()));
         } else {
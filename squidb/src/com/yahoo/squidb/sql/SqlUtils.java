@@ -40,6 +40,58 @@ public class SqlUtils {
         }
     }
 
+    /**
+     * Encode the values of a collection as a JSON array, for expansion with SQLite's json_each function. Strings are
+     * escaped, booleans are encoded as 1 or 0 to match how SQLite stores them, and nulls as JSON null. Blobs can't be
+     * represented in JSON and cause an IllegalArgumentException.
+     */
+    static String toJsonArray(Collection<?> values, ArgumentResolver argResolver) {
+        StringBuilder json = new StringBuilder(values.size() * 8 + 2);
+        json.append('[');
+        boolean first = true;
+        for (Object value : values) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            value = argResolver.resolveArgument(value);
+            if (value == null) {
+                json.append("null");
+            } else if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    throw new IllegalArgumentException("Can't encode " + d + " in a JSON array");
+                }
+                json.append(Double.toString(d));
+            } else if (value instanceof Number) {
+                json.append(((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                json.append(((Boolean) value) ? '1' : '0');
+            } else if (value instanceof byte[]) {
+                throw new IllegalArgumentException("Can't encode blob values in a JSON array");
+            } else {
+                appendJsonString(json, String.valueOf(value));
+            }
+        }
+        json.append(']');
+        return json.toString();
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
     /**
      * Convert an arbitrary object to a string. If the object itself is a {@link String}, it will be sanitized.
      */
@@ -7,6 +7,8 @@ package com.yahoo.squidb.sql;
 
 import com.yahoo.squidb.utility.VersionCode;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * A statement that operates on a {@link SqlTable}
  */
@@ -49,24 +51,59 @@ public abstract class TableStatement extends CompilableWithArguments implements
         REPLACE
     }
 
-    private CompiledArgumentResolver compiledArgumentResolver = null;
+    // Guards compiledArgumentResolver. A j.u.c. lock rather than a monitor, so that threads contending to compile the
+    // same mutable statement can park instead of pinning a carrier thread when they are virtual threads.
+    private final ReentrantLock compileLock = new ReentrantLock();
+    private CompiledArgumentResolver compiledArgumentResolver = null; // guarded by compileLock
+
+    /** Thread-safe resolver used while this statement is {@link #isImmutable() immutable} */
+    private volatile CompiledArgumentResolver sharedArgumentResolver = null;
 
     /**
      * Deprecated, use {@link #compile(CompileContext)} instead
      */
     @Override
     @Deprecated
-    public final synchronized CompiledStatement compile(VersionCode sqliteVersion) {
+    public final CompiledStatement compile(VersionCode sqliteVersion) {
         return compile(CompileContext.defaultContextForVersionCode(sqliteVersion));
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Statements that are {@link #isImmutable() immutable}, such as frozen {@link Query Queries}, can be compiled by
+     * many threads at once without locking: the SQL template is built once and each call resolves its own arguments.
+     * Compiling a mutable statement holds a lock private to the statement.
+     */
     @Override
-    public final synchronized CompiledStatement compile(CompileContext compileContext) {
-        if (compiledArgumentResolver == null) {
-            SqlBuilder builder = buildSql(compileContext, true, false);
-            compiledArgumentResolver = new CompiledArgumentResolver(builder);
+    public final CompiledStatement compile(CompileContext compileContext) {
+        if (isImmutable()) {
+            CompiledArgumentResolver resolver = sharedArgumentResolver;
+            if (resolver == null) {
+                // Racing threads may each build a resolver; they are equivalent, so the last one written wins
+                resolver = new CompiledArgumentResolver(buildSql(compileContext, true, false), true);
+                sharedArgumentResolver = resolver;
+            }
+            return resolver.resolveToCompiledStatement();
+        }
+        compileLock.lock();
+        try {
+            if (compiledArgumentResolver == null) {
+                SqlBuilder builder = buildSql(compileContext, true, false);
+                compiledArgumentResolver = new CompiledArgumentResolver(builder);
+            }
+            return compiledArgumentResolver.resolveToCompiledStatement();
+        } finally {
+            compileLock.unlock();
         }
-        return compiledArgumentResolver.resolveToCompiledStatement();
+    }
+
+    /**
+     * @return true if this statement can no longer be changed, so that its compiled form can be shared between
+     * threads. Statements are mutable by default.
+     */
+    public boolean isImmutable() {
+        return false;
     }
 
     /**
@@ -87,7 +124,13 @@ public abstract class TableStatement extends CompilableWithArguments implements
     /**
      * Invalidate the compile cache for this statement
      */
-    protected final synchronized void invalidateCompileCache() {
-        compiledArgumentResolver = null;
+    protected final void invalidateCompileCache() {
+        compileLock.lock();
+        try {
+            compiledArgumentResolver = null;
+            sharedArgumentResolver = null;
+        } finally {
+            compileLock.unlock();
+        }
     }
 }
@@ -9,7 +9,7 @@ import com.yahoo.squidb.data.AbstractModel;
 import com.yahoo.squidb.data.ValuesStorage;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -21,7 +21,7 @@ public class Update extends TableStatement {
 
     private final SqlTable<?> table;
     private ConflictAlgorithm conflictAlgorithm = ConflictAlgorithm.NONE;
-    private final Map<String, Object> valuesToUpdate = new HashMap<>();
+    private final Map<String, Object> valuesToUpdate = new LinkedHashMap<>();
     private final List<Criterion> criterions = new ArrayList<>();
 
     protected Update(SqlTable<?> table) {